@@ -0,0 +1,80 @@
+package org.pharmgkb.account.csv;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading a data file with Commons CSV against {@link MappedCsvReader}. Every value of every record is
+ * checked by length and first char, which is about what validation needs from most values.
+ *
+ * The file is made of records as wide as the clopidogrel file, mostly filled with the short tokens real site exports
+ * are full of like "Checked" and "MD", with a few quoted values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CsvReadingBenchmark {
+  private static final int RECORD_COUNT = 2000;
+  private static final int COLUMN_COUNT = 234;
+  private static final String[] VALUES = new String[]{
+      "Checked", "Unchecked", "MD", "Y", "N", "0", "1", "12.5", "10/24/2019", "2:15 PM", "Complete", "a, b", "",
+  };
+
+  private Path file;
+
+  @Setup
+  public void setup() throws IOException {
+    file = Files.createTempFile("account-benchmark", ".csv");
+    Random random = new Random(RECORD_COUNT);
+    try (Writer writer = Files.newBufferedWriter(file); CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+      for (int i = 0; i < RECORD_COUNT; i++) {
+        printer.print("PA" + (1000 + i));
+        for (int c = 1; c < COLUMN_COUNT; c++) {
+          printer.print(VALUES[random.nextInt(VALUES.length)]);
+        }
+        printer.println();
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public void commonsCsv(Blackhole blackhole) throws IOException {
+    try (Reader reader = new FileReader(file.toFile())) {
+      for (CSVRecord record : CSVFormat.DEFAULT.parse(reader)) {
+        for (int i = 0; i < record.size(); i++) {
+          String value = record.get(i);
+          blackhole.consume(value.length() > 0 && value.charAt(0) == 'M');
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public void mappedCsv(Blackhole blackhole) throws IOException {
+    try (MappedCsvReader reader = new MappedCsvReader(file)) {
+      for (CsvRow row = reader.next(); row != null; row = reader.next()) {
+        for (int i = 0; i < row.size(); i++) {
+          CharSequence value = row.getChars(i);
+          blackhole.consume(value.length() > 0 && value.charAt(0) == 'M');
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.pharmgkb.account.data;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pharmgkb.account.DateUtils;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the date and date-time parsing used when making the TIME_TO_* columns of the processed files. The dates
+ * and times are valid ones made by {@link FieldValueGenerator} with a fixed seed so every run parses the same values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DateParsingBenchmark {
+  private static final int VALUE_COUNT = 64;
+  private static final LocalDate FIRST_ENROLLMENT = LocalDate.of(2015, 1, 1);
+  private static final int ENROLLMENT_DAYS = 1000;
+  private static final Field[] DATE_FIELDS = new Field[]{
+      Field.ENROLLMENT_DATE, Field.DATE_OF_BIRTH, Field.DATE_OF_BLOOD_DRAW, Field.DATE_OF_LAST_FOLLOW_UP
+  };
+
+  private final DateParser cachedParser = new DateParser(DateParser.DEFAULT_CACHE_SIZE);
+  private final DateParser uncachedParser = new DateParser(0);
+  private String[] dates;
+  private String[][] dateTimes;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(VALUE_COUNT);
+    FieldValueGenerator values = new FieldValueGenerator(random);
+    dates = new String[VALUE_COUNT];
+    dateTimes = new String[VALUE_COUNT][];
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      LocalDate enrollmentDate = FIRST_ENROLLMENT.plusDays(random.nextInt(ENROLLMENT_DAYS));
+      dates[i] = values.makeValid(DATE_FIELDS[i % DATE_FIELDS.length], enrollmentDate);
+      dateTimes[i] = new String[]{
+          values.makeValid(Field.DATE_OF_BLOOD_DRAW, enrollmentDate),
+          values.makeValid(Field.TIME_OF_BLOOD_DRAW, enrollmentDate)
+      };
+    }
+  }
+
+  @Benchmark
+  public void parseDate(Blackhole blackhole) {
+    for (String date : dates) {
+      blackhole.consume(FieldPattern.parseDate(date));
+    }
+  }
+
+  @Benchmark
+  public void parseLocalDate(Blackhole blackhole) {
+    for (String date : dates) {
+      blackhole.consume(uncachedParser.parse(date));
+    }
+  }
+
+  @Benchmark
+  public void parseLocalDateCached(Blackhole blackhole) {
+    for (String date : dates) {
+      blackhole.consume(cachedParser.parse(date));
+    }
+  }
+
+  @Benchmark
+  public void parseDateTime(Blackhole blackhole) {
+    for (String[] dateTime : dateTimes) {
+      try {
+        blackhole.consume(DateUtils.parseDateTime(dateTime[0], dateTime[1]));
+      } catch (DateTimeParseException ex) {
+        blackhole.consume(ex);
+      }
+    }
+  }
+
+  @Benchmark
+  public void formatHours(Blackhole blackhole) {
+    for (long seconds = -7200; seconds < 720000; seconds += 36011) {
+      blackhole.consume(DateUtils.formatHours(seconds));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package org.pharmgkb.account.data;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks {@link Field#validate(String)} for each kind of {@link FieldPattern}. Each invocation checks a mix of
+ * valid, missing, invalid and out of range values made by {@link FieldValueGenerator} with a fixed seed, in shares
+ * like the ones found in the consortium files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class FieldBenchmark {
+
+  private static final int VALUE_COUNT = 64;
+  private static final double MISSING_SHARE = 0.1;
+  private static final double INVALID_SHARE = 0.1;
+  private static final double OUT_OF_RANGE_SHARE = 0.05;
+  private static final LocalDate FIRST_ENROLLMENT = LocalDate.of(2015, 1, 1);
+  private static final int ENROLLMENT_DAYS = 1000;
+
+  @Param({"YESNONA", "CHECKED", "DECIMAL", "DECIMAL_RANGE", "INTEGER", "DATE", "DAYS", "TIME_OF_DAY", "ANY", "CUSTOM"})
+  public String patternType;
+
+  private Field field;
+  private String[] values;
+
+  @Setup
+  public void setup() {
+    switch (patternType) {
+      case "YESNONA":
+        field = Field.ACS_DURING_FOLLOW_UP;
+        break;
+      case "CHECKED":
+        field = Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_1;
+        break;
+      case "DECIMAL":
+        field = Field.BMI;
+        break;
+      case "DECIMAL_RANGE":
+        field = Field.TARGET_INR;
+        break;
+      case "INTEGER":
+        field = Field.AGE_AT_ENROLLMENT;
+        break;
+      case "DATE":
+        field = Field.ENROLLMENT_DATE;
+        break;
+      case "DAYS":
+        field = Field.DURATION_OF_FOLLOW_UP;
+        break;
+      case "TIME_OF_DAY":
+        field = Field.TIME_OF_BLOOD_DRAW;
+        break;
+      case "ANY":
+        field = Field.NOTES;
+        break;
+      case "CUSTOM":
+        field = Field.ALCOHOL;
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown pattern type " + patternType);
+    }
+
+    Random random = new Random(VALUE_COUNT);
+    FieldValueGenerator generator = new FieldValueGenerator(random);
+    values = new String[VALUE_COUNT];
+    for (int i = 0; i < VALUE_COUNT; i++) {
+      double roll = random.nextDouble();
+      String value = null;
+      if (roll < MISSING_SHARE) {
+        value = generator.makeMissing();
+      } else if (roll < MISSING_SHARE + INVALID_SHARE) {
+        value = generator.makeInvalid(field);
+      } else if (roll < MISSING_SHARE + INVALID_SHARE + OUT_OF_RANGE_SHARE) {
+        value = generator.makeOutOfRange(field);
+      }
+      if (value == null) {
+        value = generator.makeValid(field, FIRST_ENROLLMENT.plusDays(random.nextInt(ENROLLMENT_DAYS)));
+      }
+      values[i] = value;
+    }
+  }
+
+  @Benchmark
+  public void validate(Blackhole blackhole) {
+    for (String value : values) {
+      blackhole.consume(field.validate(value));
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.pharmgkb.account.data;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Benchmarks the range predicates made in the {@link Field} constructors against {@link Field#checkRange}, for a lower
+ * bound only, for lower and upper bounds and for lower and upper bounds on a field that allows a range of values like
+ * "2-3".
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class RangeTestBenchmark {
+
+  @Param({"LOWER_BOUND", "BOUNDED", "BOUNDED_RANGE"})
+  public String rangeType;
+
+  private Field field;
+  private Predicate<String> rangeTest;
+  private String[] values;
+
+  @Setup
+  public void setup() {
+    switch (rangeType) {
+      case "LOWER_BOUND":
+        field = Field.AGE_AT_ENROLLMENT;
+        values = new String[]{"54", "71", "18", "17", "1,200", "90"};
+        break;
+      case "BOUNDED":
+        field = Field.PLATELET_COUNT_X10_3_UL;
+        values = new String[]{"250", "100", "450", "99", "451", "1,000"};
+        break;
+      case "BOUNDED_RANGE":
+        field = Field.TARGET_INR;
+        values = new String[]{"2.5", "2-3", "2.0 - 3.0", "1.0-4.0", "1.4", "2-3-4"};
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown range type " + rangeType);
+    }
+    rangeTest = field.getRangeTest();
+  }
+
+  @Benchmark
+  public void rangeTest(Blackhole blackhole) {
+    // bad numbers are reported by validateRow when the predicate throws, so they're part of the measured cost
+    for (String value : values) {
+      try {
+        blackhole.consume(rangeTest.test(value));
+      } catch (RuntimeException ex) {
+        blackhole.consume(ex);
+      }
+    }
+  }
+
+  @Benchmark
+  public void checkRange(Blackhole blackhole) {
+    for (String value : values) {
+      blackhole.consume(field.checkRange(value));
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package org.pharmgkb.account.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.pharmgkb.account.csv.CopiedCsvRow;
+import org.pharmgkb.account.csv.CsvRow;
+import org.pharmgkb.account.csv.MappedCsvReader;
+import org.pharmgkb.account.data.Field;
+import org.pharmgkb.account.data.FieldValueGenerator;
+import org.pharmgkb.account.validation.ValidationResults;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks validating and transforming whole records with
+ * {@link AbstractDataFile#validateRow(RecordContext, int, ValidationResults)} and
+ * {@link AbstractDataFile#makeOutputRow(RecordContext, String[])} for each kind of data file.
+ *
+ * The records are made up by {@link FieldValueGenerator} with a fixed seed, values that pass each column's validation
+ * and range with a few missing, invalid and out of range ones mixed in, so they exercise the same paths real site
+ * exports do. They're read back with a
+ * {@link MappedCsvReader} and copied, like the parallel mode does, so the benchmark works on the same rows as the data
+ * files.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class DataFileBenchmark {
+  private static final int RECORD_COUNT = 64;
+  private static final Map<String, String> SITE_KEYS = ImmutableMap.of("UofC", "1", "UIC", "2");
+  private static final double MISSING_SHARE = 0.05;
+  private static final double INVALID_SHARE = 0.02;
+  private static final double OUT_OF_RANGE_SHARE = 0.02;
+  private static final LocalDate FIRST_ENROLLMENT = LocalDate.of(2015, 1, 1);
+  private static final int ENROLLMENT_DAYS = 1000;
+
+  @Param({"clopidogrel", "noac", "warfarin"})
+  public String dataFileType;
+
+  private AbstractDataFile dataFile;
+  private CsvRow[] records;
+  private String[] row;
+  private RecordContext context;
+  private ValidationResults results;
+
+  @Setup
+  public void setup() throws IOException {
+    switch (dataFileType) {
+      case "clopidogrel":
+        dataFile = new ClopidogrelDataFile(Paths.get("clopidogrel.csv"), SITE_KEYS);
+        break;
+      case "noac":
+        dataFile = new NOACDataFile(Paths.get("noac.csv"), SITE_KEYS);
+        break;
+      case "warfarin":
+        dataFile = new WarfarinDataFile(Paths.get("warfarin.csv"), SITE_KEYS);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown data file type " + dataFileType);
+    }
+
+    Random random = new Random(RECORD_COUNT);
+    FieldValueGenerator values = new FieldValueGenerator(random);
+    Path csvFile = Files.createTempFile(dataFileType, ".csv");
+    try {
+      try (Writer writer = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+           CSVPrinter printer = new CSVPrinter(writer, CSVFormat.DEFAULT)) {
+        for (int i = 0; i < RECORD_COUNT; i++) {
+          printer.printRecord(makeRow(dataFile.getExpectedFields(), i, random, values));
+        }
+      }
+      List<CsvRow> parsed = new ArrayList<>();
+      try (MappedCsvReader reader = new MappedCsvReader(csvFile)) {
+        for (CsvRow record = reader.next(); record != null; record = reader.next()) {
+          parsed.add(CopiedCsvRow.copyOf(record));
+        }
+      }
+      records = parsed.toArray(new CsvRow[0]);
+    } finally {
+      Files.delete(csvFile);
+    }
+    row = new String[dataFile.getOutputFields().length];
+    context = new RecordContext();
+    results = new ValidationResults(dataFileType, dataFile.getExpectedFields().length);
+  }
+
+  @Benchmark
+  public void validateRow(Blackhole blackhole) {
+    results.clear();
+    for (int i = 0; i < records.length; i++) {
+      blackhole.consume(dataFile.validateRow(context.reset(records[i]), i + 2, results));
+    }
+  }
+
+  @Benchmark
+  public void makeOutputRow(Blackhole blackhole) {
+    for (CsvRow record : records) {
+      blackhole.consume(dataFile.makeOutputRow(context.reset(record), row));
+    }
+  }
+
+  private static List<String> makeRow(Field[] fields, int subject, Random random, FieldValueGenerator values) {
+    LocalDate enrollmentDate = FIRST_ENROLLMENT.plusDays(random.nextInt(ENROLLMENT_DAYS));
+    List<String> row = new ArrayList<>();
+    for (int i = 0; i < fields.length; i++) {
+      Field field = fields[i];
+      if (i == 0) {
+        row.add("PA" + (1000 + subject));
+      } else if (field == Field.PROJECT_SITE) {
+        row.add(subject % 2 == 0 ? "UofC" : "UIC");
+      } else {
+        double roll = random.nextDouble();
+        String value = null;
+        if (roll < MISSING_SHARE) {
+          value = values.makeMissing();
+        } else if (roll < MISSING_SHARE + INVALID_SHARE) {
+          value = values.makeInvalid(field);
+        } else if (roll < MISSING_SHARE + INVALID_SHARE + OUT_OF_RANGE_SHARE) {
+          value = values.makeOutOfRange(field);
+        }
+        row.add(value == null ? values.makeValid(field, enrollmentDate) : value);
+      }
+    }
+    return row;
+  }
+}
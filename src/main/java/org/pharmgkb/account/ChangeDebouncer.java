@@ -0,0 +1,59 @@
+package org.pharmgkb.account;
+
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of things that have changed and hands each one back once it's gone a quiet period without changing
+ * again, so a data file that's still being copied in is only run once it's all there. Every change starts the quiet
+ * period of its item over.
+ */
+class ChangeDebouncer<T> {
+  private final long quietNanos;
+  /** the items that have changed and when each last changed */
+  private final Map<T, Long> changed = new HashMap<>();
+
+  /**
+   * @param quietNanos how long an item has to go without changes before it's settled
+   */
+  ChangeDebouncer(long quietNanos) {
+    this.quietNanos = quietNanos;
+  }
+
+  /**
+   * Notes that an item changed
+   * @param item the item
+   * @param now the time of the change from {@link System#nanoTime()}
+   */
+  void changed(@Nonnull T item, long now) {
+    this.changed.put(item, now);
+  }
+
+  /**
+   * @return true if no items are waiting to settle
+   */
+  boolean isEmpty() {
+    return this.changed.isEmpty();
+  }
+
+  /**
+   * Takes the items that have settled, they're forgotten until they change again
+   * @param items every item that can change, in the order settled items are given back in
+   * @param now the time now from {@link System#nanoTime()}
+   * @return the settled items
+   */
+  List<T> takeSettled(@Nonnull List<T> items, long now) {
+    List<T> settled = new ArrayList<>();
+    for (T item : items) {
+      Long changedAt = this.changed.get(item);
+      if (changedAt != null && now - changedAt >= this.quietNanos) {
+        this.changed.remove(item);
+        settled.add(item);
+      }
+    }
+    return settled;
+  }
+}
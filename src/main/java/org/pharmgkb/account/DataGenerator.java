@@ -0,0 +1,170 @@
+package org.pharmgkb.account;
+
+import com.google.common.base.Preconditions;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.lang3.StringUtils;
+import org.pharmgkb.account.data.Field;
+import org.pharmgkb.account.data.FieldValueGenerator;
+import org.pharmgkb.account.file.ClopidogrelDataFile;
+import org.pharmgkb.account.file.NOACDataFile;
+import org.pharmgkb.account.file.WarfarinDataFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds synthetic Clopidogrel, NOAC and Warfarin data files of any size for load testing. Values are made from each
+ * data file's FIELDS and each {@link Field}'s validation pattern and range, with a configurable share of invalid,
+ * out of range and missing values mixed in.
+ */
+public class DataGenerator {
+  private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final int PROGRESS_INTERVAL = 100_000;
+  private static final LocalDate FIRST_ENROLLMENT = LocalDate.of(2010, 1, 1);
+  private static final int ENROLLMENT_DAYS = 3650;
+
+  private final List<String> sites;
+  private final double missingShare;
+  private final double invalidShare;
+  private final double outOfRangeShare;
+  private final Random random;
+  private final FieldValueGenerator valueGenerator;
+
+  public static void main(String[] args) {
+    CommandLineParser cliParser = new DefaultParser();
+    Options o = new Options();
+    o.addOption("t", "type", true, "Type of data file to make: clopidogrel, noac, warfarin or all (default all)");
+    o.addOption("r", "rows", true, "Number of subject rows to make in each file");
+    o.addOption("s", "site-key", true, "File of SITE=ID keys, the sites are assigned to subjects in turn");
+    o.addOption("o", "output-dir", true, "Directory to write the files to (default out)");
+    o.addOption("m", "missing", true, "Share of values that are missing data like \"unk\" or \"n/a\" (default 0.05)");
+    o.addOption("i", "invalid", true, "Share of values that fail validation (default 0.01)");
+    o.addOption("x", "out-of-range", true, "Share of values that are outside the field range (default 0.01)");
+    o.addOption("e", "seed", true, "Seed for the random values, the same seed makes the same files (default 1)");
+
+    try {
+      CommandLine cli = cliParser.parse(o, args);
+      Preconditions.checkArgument(cli.hasOption("r"), "Number of rows is required");
+      Preconditions.checkArgument(cli.hasOption("s"), "Site key file is required");
+
+      DataGenerator generator = new DataGenerator(
+          readSites(Paths.get(cli.getOptionValue("s"))),
+          Double.parseDouble(cli.getOptionValue("m", "0.05")),
+          Double.parseDouble(cli.getOptionValue("i", "0.01")),
+          Double.parseDouble(cli.getOptionValue("x", "0.01")),
+          Long.parseLong(cli.getOptionValue("e", "1"))
+      );
+
+      long rows = Long.parseLong(cli.getOptionValue("r"));
+      Path outputDir = Paths.get(cli.getOptionValue("o", "out"));
+      Files.createDirectories(outputDir);
+      String type = cli.getOptionValue("t", "all");
+
+      if (type.equals("all") || type.equals("clopidogrel")) {
+        generator.write(ClopidogrelDataFile.FIELDS, rows, outputDir.resolve("clopidogrel_synthetic.csv"));
+      }
+      if (type.equals("all") || type.equals("noac")) {
+        generator.write(NOACDataFile.FIELDS, rows, outputDir.resolve("noac_synthetic.csv"));
+      }
+      if (type.equals("all") || type.equals("warfarin")) {
+        generator.write(WarfarinDataFile.FIELDS, rows, outputDir.resolve("warfarin_synthetic.csv"));
+      }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  private DataGenerator(List<String> sites, double missingShare, double invalidShare, double outOfRangeShare, long seed) {
+    Preconditions.checkArgument(sites.size() > 0, "No site keys specified");
+    Preconditions.checkArgument(missingShare + invalidShare + outOfRangeShare <= 1, "Shares add up to more than 1");
+
+    this.sites = sites;
+    this.missingShare = missingShare;
+    this.invalidShare = invalidShare;
+    this.outOfRangeShare = outOfRangeShare;
+    this.random = new Random(seed);
+    this.valueGenerator = new FieldValueGenerator(this.random);
+  }
+
+  private static List<String> readSites(Path siteKeyPath) throws IOException {
+    List<String> sites = new ArrayList<>();
+    for (String line : Files.readAllLines(siteKeyPath)) {
+      if (StringUtils.isNotBlank(line)) {
+        sites.add(line.split("=")[0]);
+      }
+    }
+    return sites;
+  }
+
+  /**
+   * Writes a data file with a header row of field display names followed by the given number of subject rows
+   */
+  private void write(Field[] fields, long rows, Path outputPath) throws IOException {
+    sf_logger.info("Writing {} rows to {}", rows, outputPath);
+
+    try (
+        Writer writer = new BufferedWriter(Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8));
+        CSVPrinter csv = new CSVPrinter(writer, CSVFormat.EXCEL)
+    ) {
+      for (Field field : fields) {
+        csv.print(field.getDisplayName());
+      }
+      csv.println();
+
+      for (long n = 0; n < rows; n++) {
+        LocalDate enrollmentDate = FIRST_ENROLLMENT.plusDays(random.nextInt(ENROLLMENT_DAYS));
+        for (int i = 0; i < fields.length; i++) {
+          csv.print(makeValue(fields[i], i, n, enrollmentDate));
+        }
+        csv.println();
+
+        if ((n + 1) % PROGRESS_INTERVAL == 0) {
+          sf_logger.info("wrote {} rows", n + 1);
+        }
+      }
+    }
+  }
+
+  private String makeValue(Field field, int column, long subject, LocalDate enrollmentDate) {
+    if (column == 0) {
+      return "PA" + (100000 + subject);
+    }
+    if (field == Field.PROJECT_SITE) {
+      return this.sites.get((int)(subject % this.sites.size()));
+    }
+    if (field == Field.COMPLETE) {
+      return "Complete";
+    }
+
+    double roll = random.nextDouble();
+    String value = null;
+    if (roll < missingShare) {
+      value = valueGenerator.makeMissing();
+    } else if (roll < missingShare + invalidShare) {
+      value = valueGenerator.makeInvalid(field);
+    } else if (roll < missingShare + invalidShare + outOfRangeShare) {
+      value = valueGenerator.makeOutOfRange(field);
+    }
+    if (value == null) {
+      value = valueGenerator.makeValid(field, enrollmentDate);
+    }
+    return value;
+  }
+}
@@ -2,6 +2,8 @@ package org.pharmgkb.account;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
 import java.time.format.DateTimeFormatter;
 
 /**
@@ -21,6 +23,11 @@ public class DateUtils {
    * @throws java.time.format.DateTimeParseException if the strings can't be parsed
    */
   public static LocalDateTime parseDateTime(String date, String time) {
+    LocalDateTime dateTime = parseCommonDateTime(date, time);
+    if (dateTime != null) {
+      return dateTime;
+    }
+
     return LocalDateTime.parse(
         (date + " " + time)                            // combine date-time into one string
             .replaceAll("/", "-")    // standardize on dashes
@@ -29,6 +36,75 @@ public class DateUtils {
         DATETIME_FORMAT);
   }
 
+  /**
+   * Reads the date and time shapes the consortium sites actually send, like "1/2/2019" and "2:00 pm", straight from the
+   * characters. Anything else, including dates that would need adjusting, is left to the formatter.
+   * @return the date-time or null if the values aren't in one of the common shapes
+   */
+  private static LocalDateTime parseCommonDateTime(String date, String time) {
+    if (date == null || time == null) {
+      return null;
+    }
+
+    // month and day of 1 or 2 digits and a 4 digit year, split by slashes or dashes
+    int monthEnd = scanDigits(date, 0);
+    if (monthEnd < 1 || monthEnd > 2 || !isDateSeparator(date, monthEnd)) return null;
+    int dayEnd = scanDigits(date, monthEnd + 1);
+    if (dayEnd - monthEnd - 1 < 1 || dayEnd - monthEnd - 1 > 2 || !isDateSeparator(date, dayEnd)) return null;
+    int yearEnd = scanDigits(date, dayEnd + 1);
+    if (yearEnd - dayEnd - 1 != 4 || yearEnd != date.length()) return null;
+
+    // hours of 1 or 2 digits, 2 digits of minutes, optional whitespace then am or pm in any case
+    int hourEnd = scanDigits(time, 0);
+    if (hourEnd < 1 || hourEnd > 2 || hourEnd == time.length() || time.charAt(hourEnd) != ':') return null;
+    int minuteEnd = scanDigits(time, hourEnd + 1);
+    if (minuteEnd - hourEnd - 1 != 2) return null;
+    int markerStart = minuteEnd;
+    while (markerStart < time.length() && isWhitespace(time.charAt(markerStart))) {
+      markerStart += 1;
+    }
+    if (time.length() - markerStart != 2) return null;
+    char marker = Character.toUpperCase(time.charAt(markerStart));
+    if ((marker != 'A' && marker != 'P') || Character.toUpperCase(time.charAt(markerStart + 1)) != 'M') return null;
+
+    int month = readNumber(date, 0, monthEnd);
+    int day = readNumber(date, monthEnd + 1, dayEnd);
+    int year = readNumber(date, dayEnd + 1, yearEnd);
+    int hour = readNumber(time, 0, hourEnd);
+    int minute = readNumber(time, hourEnd + 1, minuteEnd);
+    if (year < 1 || month < 1 || month > 12 || day < 1 || day > Month.of(month).length(Year.isLeap(year))) return null;
+    if (hour < 1 || hour > 12 || minute > 59) return null;
+
+    return LocalDateTime.of(year, month, day, (hour % 12) + (marker == 'P' ? 12 : 0), minute);
+  }
+
+  private static int scanDigits(String value, int position) {
+    int i = position;
+    while (i < value.length() && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+      i += 1;
+    }
+    return i;
+  }
+
+  private static int readNumber(String value, int start, int end) {
+    int number = 0;
+    for (int i = start; i < end; i++) {
+      number = number * 10 + (value.charAt(i) - '0');
+    }
+    return number;
+  }
+
+  private static boolean isDateSeparator(String value, int position) {
+    return position < value.length() && (value.charAt(position) == '/' || value.charAt(position) == '-');
+  }
+
+  /**
+   * The characters matched by the regex "\s"
+   */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
   /**
    * Calculates the hours difference between two {@link LocalDateTime} objects and outputs the result in as a decimal to
    * two significant digits. This will accommodate negative time frames if the "to" time is before the "from" time.
@@ -37,8 +113,29 @@ public class DateUtils {
    * @return a String of the time frame length in hours to two decimal places
    */
   public static String diff(LocalDateTime fromDt, LocalDateTime toDt) {
-    double hours = Duration.between(fromDt, toDt).getSeconds() / (60f * 60f);
-    
-    return String.format("%.2f", hours);
+    return formatHours(Duration.between(fromDt, toDt).getSeconds());
+  }
+
+  /**
+   * Formats a time frame given in seconds as hours to two decimal places, the same way as {@link #diff}. The hours are
+   * rounded half up like "%.2f" would but always with a "." no matter what the default locale is.
+   * @param seconds the length of the time frame in seconds, negative if it runs backwards
+   * @return a String of the time frame length in hours to two decimal places
+   */
+  public static String formatHours(long seconds) {
+    float hours = seconds / (60f * 60f);
+
+    // a float has a 24 bit mantissa so multiplying it by 100 as a double is exact and rounds like the formatter does
+    long hundredths = (long)Math.floor(Math.abs((double)hours) * 100 + 0.5);
+    StringBuilder formatted = new StringBuilder(12);
+    if (hours < 0) {
+      formatted.append('-');
+    }
+    formatted.append(hundredths / 100).append('.');
+    long fraction = hundredths % 100;
+    if (fraction < 10) {
+      formatted.append('0');
+    }
+    return formatted.append(fraction).toString();
   }
 }
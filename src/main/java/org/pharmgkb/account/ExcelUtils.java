@@ -1,14 +1,19 @@
 package org.pharmgkb.account;
 
-import java.util.ArrayList;
-import java.util.List;
-
 /**
  * Methods to help with Excel-related tasks
  *
  * @author Ryan Whaley
  */
 public class ExcelUtils {
+  /** every one and two letter column name, "A" to "ZZ", which covers the widest data file several times over */
+  private static final int PRECOMPUTED_COLUMNS = 26 + 26 * 26;
+  private static final String[] sf_columnNames = new String[PRECOMPUTED_COLUMNS];
+  static {
+    for (int i = 0; i < PRECOMPUTED_COLUMNS; i++) {
+      sf_columnNames[i] = makeExcelColumnName(i + 1);
+    }
+  }
 
   /**
    * Takes an integer and gives the equivalent Excel column name. For example, 1 gives "A", 2 gives "B", 27 gives "AA"
@@ -17,16 +22,70 @@ public class ExcelUtils {
    */
   public static String getExcelColumnName(int columnNumber)
   {
+    if (columnNumber > 0 && columnNumber <= PRECOMPUTED_COLUMNS) {
+      return sf_columnNames[columnNumber - 1];
+    }
+    return makeExcelColumnName(columnNumber);
+  }
+
+  private static String makeExcelColumnName(int columnNumber)
+  {
+    char[] name = new char[7];
+    int start = name.length;
     int dividend = columnNumber;
-    List<String> names = new ArrayList<>();
 
     while (dividend > 0)
     {
       int modulo = (dividend - 1) % 26;
-      names.add(0, String.valueOf((char)(modulo+65)));
+      start -= 1;
+      name[start] = (char)(modulo+65);
       dividend = (dividend - modulo) / 26;
     }
 
-    return String.join("", names);
+    return new String(name, start, name.length - start);
+  }
+
+  /**
+   * Packs the location of a cell into one long so it can be kept without making the "CA123" style address until it's
+   * needed, see {@link #formatCellLocation(long)}
+   * @param columnIndex the 0-based index of the column
+   * @param lineNumber the 1-based line number in the file
+   * @return the packed location
+   */
+  public static long cellLocation(int columnIndex, int lineNumber) {
+    return ((long)columnIndex << 32) | (lineNumber & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Gets the 0-based column index from a location made by {@link #cellLocation(int, int)}
+   */
+  public static int getColumnIndex(long location) {
+    return (int)(location >>> 32);
+  }
+
+  /**
+   * Gets the 1-based line number from a location made by {@link #cellLocation(int, int)}
+   */
+  public static int getLineNumber(long location) {
+    return (int)location;
+  }
+
+  /**
+   * Makes the Excel style address of a cell, like "CA123"
+   * @param location a location made by {@link #cellLocation(int, int)}
+   * @return the column name followed by the line number
+   */
+  public static String formatCellLocation(long location) {
+    return appendCellLocation(new StringBuilder(10), location).toString();
+  }
+
+  /**
+   * Appends the Excel style address of a cell, like "CA123", to a builder
+   * @param builder the builder to append to
+   * @param location a location made by {@link #cellLocation(int, int)}
+   * @return the given builder
+   */
+  public static StringBuilder appendCellLocation(StringBuilder builder, long location) {
+    return builder.append(getExcelColumnName(getColumnIndex(location) + 1)).append(getLineNumber(location));
   }
 }
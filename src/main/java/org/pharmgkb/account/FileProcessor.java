@@ -1,29 +1,56 @@
 package org.pharmgkb.account;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.lang3.StringUtils;
+import org.pharmgkb.account.columnar.ColumnarWriter;
+import org.pharmgkb.account.data.DateParser;
 import org.pharmgkb.account.data.Field;
 import org.pharmgkb.account.file.AbstractDataFile;
 import org.pharmgkb.account.file.ClopidogrelDataFile;
 import org.pharmgkb.account.file.NOACDataFile;
 import org.pharmgkb.account.file.WarfarinDataFile;
+import org.pharmgkb.account.output.FileOutputSink;
+import org.pharmgkb.account.output.OutputSink;
+import org.pharmgkb.account.report.FieldProfiler;
+import org.pharmgkb.account.report.FileReport;
+import org.pharmgkb.account.report.Phase;
+import org.pharmgkb.account.report.PhaseTimer;
+import org.pharmgkb.account.report.ProgressReporter;
+import org.pharmgkb.account.report.RunReport;
+import org.pharmgkb.account.validation.ValidationErrorKind;
+import org.pharmgkb.account.validation.ValidationFormat;
+import org.pharmgkb.account.validation.ValidationResults;
+import org.pharmgkb.account.validation.ValidationSink;
+import org.pharmgkb.account.validation.ValidationSinks;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This App validates CSV data files from the account consortium
@@ -32,9 +59,35 @@ import java.util.Map;
  */
 class FileProcessor {
   private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
-  private static final String VALIDATION_HEADER = "Site\tSubject ID\tCell Address\tField Name\tBad Value\n";
+  private static final String LOG_CONTEXT_KEY = "dataFile";
+  private static final String ROW_CACHE_EXTENSION = ".rowcache";
+  private static final int PROFILE_LOG_SIZE = 10;
+  private static final int DEFAULT_PROGRESS_INTERVAL = 30;
+  /** how long a changed data file has to go without more changes before it's run again in watch mode */
+  private static final long WATCH_QUIET_MILLIS = 1000;
+  private static final long WATCH_POLL_MILLIS = 200;
 
   private final List<AbstractDataFile> dataFiles = new ArrayList<>();
+  private boolean streaming = false;
+  private boolean incremental = false;
+  private int threads = 1;
+  private int parallelism = 1;
+  private int chunkSize = AbstractDataFile.DEFAULT_CHUNK_SIZE;
+  private long dateCacheSize = DateParser.DEFAULT_CACHE_SIZE;
+  private Set<ValidationFormat> validationFormats = EnumSet.of(ValidationFormat.TSV);
+  private Path outputDir = FileOutputSink.DEFAULT.getDirectory();
+  private int bufferSize = FileOutputSink.DEFAULT_BUFFER_SIZE;
+  private boolean gzip = false;
+  private boolean columnar = false;
+  private boolean profileFields = false;
+  private int progressInterval = DEFAULT_PROGRESS_INTERVAL;
+  private boolean watch = false;
+  private OutputSink outputSink;
+  private ForkJoinPool recordPool;
+  private RunReport runReport;
+  private FieldProfiler fieldProfiler;
+  /** counted down once the data files are being watched for changes */
+  private final CountDownLatch watching = new CountDownLatch(1);
 
   public static void main(String[] args) {
     CommandLineParser cliParser = new DefaultParser();
@@ -43,6 +96,20 @@ class FileProcessor {
     o.addOption("n", "noac-file", true, "File of NOAC field names");
     o.addOption("w", "warfarin-file", true, "File of warfarin field names");
     o.addOption("s", "site-key", true, "File of SITE=ID keys");
+    o.addOption("S", "streaming", false, "Validate and process each file in one pass without holding records in memory");
+    o.addOption("i", "incremental", false, "Only validate and process records that changed since the last run, implies streaming");
+    o.addOption("t", "threads", true, "Number of data files to process at the same time (default 1)");
+    o.addOption("p", "parallelism", true, "Number of threads to validate the records of each file on (default 1)");
+    o.addOption("k", "chunk-size", true, "Number of records per chunk when validating in parallel (default " + AbstractDataFile.DEFAULT_CHUNK_SIZE + ")");
+    o.addOption("d", "date-cache", true, "Number of parsed date values to remember, 0 to turn off (default " + DateParser.DEFAULT_CACHE_SIZE + ")");
+    o.addOption("f", "validation-format", true, "Comma-separated validation report formats: tsv, jsonl, summary (default tsv)");
+    o.addOption("o", "output-dir", true, "Directory to write the processed files and validation reports to (default out)");
+    o.addOption("b", "buffer-size", true, "Number of bytes to buffer for each output file (default " + FileOutputSink.DEFAULT_BUFFER_SIZE + ")");
+    o.addOption("z", "gzip", false, "Gzip the processed files and validation reports");
+    o.addOption("C", "columnar", false, "Also write each processed file in the binary columnar format (" + ColumnarWriter.EXTENSION + ")");
+    o.addOption("P", "progress", true, "Seconds between progress lines while files are read, 0 to turn off (default " + DEFAULT_PROGRESS_INTERVAL + ")");
+    o.addOption("W", "watch", false, "Keep running and validate and process a data file again whenever it changes");
+    o.addOption("F", "profile-fields", false, "Count and time the checks of each field and write a ranked table (" + FieldProfiler.FILENAME + ")");
 
     try {
       CommandLine cli = cliParser.parse(o, args);
@@ -52,13 +119,27 @@ class FileProcessor {
           Paths.get(cli.getOptionValue("w")),
           Paths.get(cli.getOptionValue("s"))
       );
+      app.setStreaming(cli.hasOption("S"));
+      app.setIncremental(cli.hasOption("i"));
+      app.setThreads(Integer.parseInt(cli.getOptionValue("t", "1")));
+      app.setParallelism(Integer.parseInt(cli.getOptionValue("p", "1")));
+      app.setChunkSize(Integer.parseInt(cli.getOptionValue("k", String.valueOf(AbstractDataFile.DEFAULT_CHUNK_SIZE))));
+      app.setDateCacheSize(Long.parseLong(cli.getOptionValue("d", String.valueOf(DateParser.DEFAULT_CACHE_SIZE))));
+      app.setValidationFormats(cli.getOptionValue("f", "tsv"));
+      app.setOutputDir(Paths.get(cli.getOptionValue("o", "out")));
+      app.setBufferSize(Integer.parseInt(cli.getOptionValue("b", String.valueOf(FileOutputSink.DEFAULT_BUFFER_SIZE))));
+      app.setGzip(cli.hasOption("z"));
+      app.setColumnar(cli.hasOption("C"));
+      app.setProfileFields(cli.hasOption("F"));
+      app.setWatch(cli.hasOption("W"));
+      app.setProgressInterval(Integer.parseInt(cli.getOptionValue("P", String.valueOf(DEFAULT_PROGRESS_INTERVAL))));
       app.validate();
     } catch (Exception ex) {
       ex.printStackTrace();
     }
   }
 
-  private FileProcessor(Path clopidogrelPath, Path noacPath, Path warfarinPath, Path siteKeyPath) throws IOException {
+  FileProcessor(Path clopidogrelPath, Path noacPath, Path warfarinPath, Path siteKeyPath) throws IOException {
     Preconditions.checkArgument(clopidogrelPath.toFile().exists(), "Clopidogrel file not found");
     Preconditions.checkArgument(noacPath.toFile().exists(), "NOAC file not found");
     Preconditions.checkArgument(warfarinPath.toFile().exists(), "Warfarin file not found");
@@ -84,28 +165,476 @@ class FileProcessor {
     this.dataFiles.add(new WarfarinDataFile(warfarinPath, siteKeyMap));
   }
 
-  private void validate() throws Exception {
+  void validate() throws Exception {
     sf_logger.info("Starting validation");
+    Preconditions.checkState(!(this.incremental && this.columnar), "The columnar export can't be used with the incremental mode");
 
     for (Field field : Field.values()) {
       if (field.isUnvalidated()) {
         sf_logger.warn("WARNING: The field \"{}\" will NOT be checked for validation", field.getDisplayName());
       }
     }
-    
+
+    // one parser for every file so dates repeated across the files are only parsed once
+    DateParser dateParser = new DateParser(this.dateCacheSize);
+    Files.createDirectories(this.outputDir);
+    this.outputSink = new FileOutputSink(this.outputDir, this.bufferSize, this.gzip);
+    for (AbstractDataFile dataFile : this.dataFiles) {
+      dataFile.setDateParser(dateParser);
+      dataFile.setOutputSink(this.outputSink);
+      dataFile.setColumnarExport(this.columnar);
+    }
+
+    if (this.parallelism > 1) {
+      this.recordPool = new ForkJoinPool(this.parallelism);
+    }
+    try {
+      run(this.dataFiles);
+      if (this.watch) {
+        watch();
+      }
+    } finally {
+      if (this.recordPool != null) {
+        this.recordPool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Validates and processes the given data files and writes the run report, and the field profile if it's on, for them
+   */
+  private void run(List<AbstractDataFile> dataFiles) throws Exception {
+    this.runReport = makeRunReport();
+    // one profiler for every file so a field's checks are added up across the files it's in
+    this.fieldProfiler = this.profileFields ? new FieldProfiler() : null;
+    for (AbstractDataFile dataFile : dataFiles) {
+      dataFile.resetReport();
+      dataFile.setFieldProfiler(this.fieldProfiler);
+    }
+
+    ProgressReporter progressReporter = null;
+    if (this.progressInterval > 0) {
+      progressReporter = new ProgressReporter(this.progressInterval * 1000L);
+      for (AbstractDataFile dataFile : dataFiles) {
+        progressReporter.add(dataFile.getFilename(), dataFile.getFileSize(), dataFile.getProgress());
+      }
+      progressReporter.start();
+    }
+    try {
+      if (this.threads <= 1 || dataFiles.size() == 1) {
+        for (AbstractDataFile dataFile : dataFiles) {
+          process(dataFile);
+        }
+      } else {
+        validateConcurrently(dataFiles);
+      }
+    } finally {
+      if (progressReporter != null) {
+        progressReporter.close();
+      }
+    }
+
+    for (AbstractDataFile dataFile : dataFiles) {
+      this.runReport.addFile(dataFile.getFilename(), dataFile.getReport());
+    }
+    try (Writer writer = this.outputSink.open(RunReport.FILENAME)) {
+      this.runReport.write(writer);
+    }
+    sf_logger.info("Wrote {}", this.outputSink.getPath(RunReport.FILENAME));
+
+    if (this.fieldProfiler != null) {
+      writeFieldProfile();
+    }
+  }
+
+  /**
+   * Watches the directories of the data files and validates and processes a data file again each time it's changed or
+   * replaced, until the process is stopped. Only the files that changed are run, in the same JVM, so the fields, site
+   * keys, date cache, record pool and compiled code are all already warmed up. A file is run once it's gone
+   * {@link #WATCH_QUIET_MILLIS} without changes so a file that's still being copied in isn't read half-written.
+   * Failures are logged and watching goes on until the thread is interrupted.
+   */
+  private void watch() throws IOException {
+    Map<Path, AbstractDataFile> filesByPath = new HashMap<>();
+    Set<Path> directories = new LinkedHashSet<>();
     for (AbstractDataFile dataFile : this.dataFiles) {
-      Path validationFilePath = Paths.get("out", dataFile.getFilename() + ".validation.tsv");
-      try (FileWriter fileWriter = new FileWriter(validationFilePath.toFile())) {
-        fileWriter.write(VALIDATION_HEADER);
-        for (String m : dataFile.validate()) {
-          fileWriter.write(m);
+      Path path = dataFile.getFilePath().toAbsolutePath().normalize();
+      filesByPath.put(path, dataFile);
+      directories.add(path.getParent());
+    }
+
+    try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+      int watchedDirectories = 0;
+      for (Path directory : directories) {
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories += 1;
+      }
+      sf_logger.info("Watching {} for changes to the data files", directories);
+      this.watching.countDown();
+
+      ChangeDebouncer<AbstractDataFile> changed = new ChangeDebouncer<>(TimeUnit.MILLISECONDS.toNanos(WATCH_QUIET_MILLIS));
+      while (watchedDirectories > 0) {
+        WatchKey key;
+        try {
+          key = changed.isEmpty() ? watcher.take() : watcher.poll(WATCH_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+          sf_logger.info("Stopped watching the data files");
+          Thread.currentThread().interrupt();
+          return;
+        }
+        if (key != null) {
+          Path directory = (Path)key.watchable();
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+              // events were dropped so any of the files could have changed
+              for (AbstractDataFile dataFile : this.dataFiles) {
+                changed.changed(dataFile, System.nanoTime());
+              }
+            } else {
+              AbstractDataFile dataFile = filesByPath.get(directory.resolve((Path)event.context()));
+              if (dataFile != null) {
+                changed.changed(dataFile, System.nanoTime());
+              }
+            }
+          }
+          if (!key.reset()) {
+            sf_logger.warn("Stopped watching {}, it can't be watched anymore", directory);
+            watchedDirectories -= 1;
+          }
+        }
+
+        // run the files that have settled, in the usual file order
+        List<AbstractDataFile> settled = new ArrayList<>();
+        for (AbstractDataFile dataFile : changed.takeSettled(this.dataFiles, System.nanoTime())) {
+          if (Files.exists(dataFile.getFilePath())) {
+            settled.add(dataFile);
+          } else {
+            sf_logger.warn("{} is gone, it'll be run when it's back", dataFile.getFilename());
+          }
+        }
+        if (!settled.isEmpty()) {
+          rerun(settled);
+        }
+      }
+    }
+  }
+
+  private void rerun(List<AbstractDataFile> dataFiles) {
+    long start = System.nanoTime();
+    try {
+      for (AbstractDataFile dataFile : dataFiles) {
+        sf_logger.info("{} changed, running it again", dataFile.getFilename());
+      }
+      run(dataFiles);
+      sf_logger.info("Done in {} ms, watching for more changes", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    } catch (Exception ex) {
+      sf_logger.error("Couldn't validate and process the changed files, watching for more changes", ex);
+    }
+  }
+
+  /**
+   * Writes the ranked table of field check costs and logs the fields at the top of it
+   */
+  private void writeFieldProfile() throws IOException {
+    try (Writer writer = this.outputSink.open(FieldProfiler.FILENAME)) {
+      this.fieldProfiler.write(writer);
+    }
+    sf_logger.info("Wrote {}", this.outputSink.getPath(FieldProfiler.FILENAME));
+
+    List<Field> ranking = this.fieldProfiler.getRanking();
+    for (int i = 0; i < Math.min(PROFILE_LOG_SIZE, ranking.size()); i++) {
+      Field field = ranking.get(i);
+      long checked = this.fieldProfiler.getChecked(field);
+      sf_logger.info("{}. {}: {} cells in {} ms, {} ns mean, {} invalid, {} out of range, {} bad numbers",
+          i + 1, field.name(), checked, this.fieldProfiler.getTotalNanos(field) / 1000000,
+          this.fieldProfiler.getTotalNanos(field) / checked,
+          this.fieldProfiler.getFailures(field, ValidationErrorKind.INVALID),
+          this.fieldProfiler.getFailures(field, ValidationErrorKind.OUT_OF_RANGE),
+          this.fieldProfiler.getFailures(field, ValidationErrorKind.BAD_NUMBER));
+    }
+  }
+
+  private RunReport makeRunReport() {
+    RunReport report = new RunReport();
+    String mode;
+    if (this.incremental) {
+      mode = "incremental";
+    } else if (this.parallelism > 1) {
+      mode = "parallel";
+    } else if (this.streaming) {
+      mode = "streaming";
+    } else {
+      mode = "in-memory";
+    }
+    report.setOption("mode", mode);
+    report.setOption("threads", this.threads);
+    report.setOption("parallelism", this.parallelism);
+    report.setOption("chunkSize", this.chunkSize);
+    report.setOption("dateCacheSize", this.dateCacheSize);
+    report.setOption("validationFormats", StringUtils.join(this.validationFormats, ",").toLowerCase());
+    report.setOption("bufferSize", this.bufferSize);
+    report.setOption("gzip", this.gzip);
+    report.setOption("columnar", this.columnar);
+    report.setOption("profileFields", this.profileFields);
+    report.setOption("progressInterval", this.progressInterval);
+    return report;
+  }
+
+  /**
+   * Runs the validate and process pipeline for each data file on its own worker. The files share nothing but the
+   * read-only site key map and each one writes to its own output files, so the outputs are the same as a sequential
+   * run. The largest files are started first so the run takes about as long as the largest file.
+   */
+  private void validateConcurrently(List<AbstractDataFile> dataFiles) throws Exception {
+    sf_logger.info("Processing {} data files with {} workers", dataFiles.size(), this.threads);
+
+    List<AbstractDataFile> largestFirst = new ArrayList<>(dataFiles);
+    largestFirst.sort(Comparator.comparingLong(AbstractDataFile::getFileSize).reversed());
+
+    ExecutorService executor = Executors.newFixedThreadPool(
+        Math.min(this.threads, dataFiles.size()),
+        new ThreadFactoryBuilder().setNameFormat("data-file-%d").build()
+    );
+    try {
+      Map<AbstractDataFile, Future<Void>> futures = new HashMap<>();
+      for (AbstractDataFile dataFile : largestFirst) {
+        futures.put(dataFile, executor.submit(() -> {
+          process(dataFile);
+          return null;
+        }));
+      }
+
+      // wait in the original file order so failures are reported the same way as a sequential run
+      for (AbstractDataFile dataFile : dataFiles) {
+        try {
+          futures.get(dataFile).get();
+        } catch (ExecutionException ex) {
+          if (ex.getCause() instanceof Exception) {
+            throw (Exception)ex.getCause();
+          }
+          throw ex;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void process(AbstractDataFile dataFile) throws Exception {
+    MDC.put(LOG_CONTEXT_KEY, dataFile.getFilename());
+    // the heap is only the file's own when files are worked on one at a time
+    boolean ownHeap = this.threads <= 1;
+    if (ownHeap) {
+      RunReport.resetPeakHeap();
+    }
+    long start = System.nanoTime();
+    FileReport report = dataFile.getReport();
+    Path rowCachePath = this.outputDir.resolve(dataFile.getFilename() + ROW_CACHE_EXTENSION);
+    try {
+      Path processedFile;
+      try (ValidationSink validationSink = openValidationSink(dataFile)) {
+        if (this.incremental) {
+          processedFile = dataFile.validateAndProcess(validationSink, rowCachePath);
+        } else if (this.recordPool != null) {
+          processedFile = dataFile.validateAndProcess(validationSink, this.recordPool, this.chunkSize);
+        } else if (this.streaming) {
+          processedFile = dataFile.validateAndProcess(validationSink);
+        } else {
+          ValidationResults results = dataFile.validate();
+          // the other modes time their writes to the sink as they go
+          PhaseTimer timer = new PhaseTimer();
+          timer.start(Phase.WRITE);
+          try {
+            validationSink.write(results);
+          } finally {
+            timer.stop();
+            report.addPhases(timer);
+          }
+          processedFile = dataFile.makeProcessedFile();
         }
-        fileWriter.write("\n");
-        
-        Path processedFile = dataFile.makeProcessedFile();
         sf_logger.info("Wrote {}", processedFile);
       }
-      sf_logger.info("Wrote validation to {}", validationFilePath);
+      sf_logger.info("Wrote validation for {}", dataFile.getFilename());
+
+      report.setWallNanos(System.nanoTime() - start);
+      if (ownHeap) {
+        report.setPeakHeapBytes(RunReport.getPeakHeapBytes());
+      }
+      report.setBytesRead(dataFile.getFileSize());
+      addOutput(report, processedFile);
+      if (this.columnar) {
+        addOutput(report, this.outputSink.getPath(dataFile.getColumnarFilename()));
+      }
+      for (ValidationFormat format : this.validationFormats) {
+        addOutput(report, this.outputSink.getPath(getValidationFilename(dataFile, format)));
+      }
+      if (this.incremental) {
+        addOutput(report, rowCachePath);
+      }
+    } finally {
+      MDC.remove(LOG_CONTEXT_KEY);
+    }
+  }
+
+  private static String getValidationFilename(AbstractDataFile dataFile, ValidationFormat format) {
+    return dataFile.getFilename() + ".validation." + format.getExtension();
+  }
+
+  private static void addOutput(FileReport report, Path path) throws IOException {
+    report.addOutput(path.getFileName().toString(), Files.size(path));
+  }
+
+  /**
+   * Opens a report file for each validation format, named after the data file
+   */
+  private ValidationSink openValidationSink(AbstractDataFile dataFile) throws IOException {
+    List<ValidationSink> sinks = new ArrayList<>();
+    try {
+      for (ValidationFormat format : this.validationFormats) {
+        sinks.add(format.makeSink(this.outputSink.open(getValidationFilename(dataFile, format))));
+      }
+    } catch (IOException ex) {
+      new ValidationSinks(sinks).close();
+      throw ex;
     }
+    return new ValidationSinks(sinks);
+  }
+
+  /**
+   * Sets whether each data file is validated and processed in a single streaming pass instead of reading all records
+   * into memory before writing the processed file
+   * @param streaming true to use the single-pass streaming mode
+   */
+  void setStreaming(boolean streaming) {
+    this.streaming = streaming;
+  }
+
+  /**
+   * Sets whether only the records that changed since the last run are validated and processed. A row cache of record
+   * fingerprints and results is kept next to the outputs for the next run. This uses the single-pass streaming mode,
+   * records aren't split across threads.
+   * @param incremental true to reuse the results of unchanged records
+   */
+  void setIncremental(boolean incremental) {
+    this.incremental = incremental;
+  }
+
+  /**
+   * Sets the number of data files that can be validated and processed at the same time
+   * @param threads the number of workers, 1 or less processes the files one after another
+   */
+  void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * Sets the number of threads the records of each data file are validated and transformed on. More than 1 splits
+   * each file into chunks that are worked on in parallel and implies the streaming mode.
+   * @param parallelism the size of the fork-join pool to use for records
+   */
+  void setParallelism(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Sets the number of records read into each chunk when records are validated in parallel
+   * @param chunkSize the number of records per chunk
+   */
+  void setChunkSize(int chunkSize) {
+    Preconditions.checkArgument(chunkSize > 0, "Chunk size must be positive");
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Sets the number of parsed date values that are remembered so repeated dates aren't parsed again
+   * @param dateCacheSize the most dates to remember, 0 to not remember any
+   */
+  void setDateCacheSize(long dateCacheSize) {
+    Preconditions.checkArgument(dateCacheSize >= 0, "Date cache size can't be negative");
+    this.dateCacheSize = dateCacheSize;
+  }
+
+  /**
+   * Sets the formats of the validation report written for each data file
+   * @param formats a comma-separated list of format names like "tsv,summary"
+   */
+  void setValidationFormats(String formats) {
+    Set<ValidationFormat> parsed = EnumSet.noneOf(ValidationFormat.class);
+    for (String format : formats.split(",")) {
+      parsed.add(ValidationFormat.valueOf(StringUtils.strip(format).toUpperCase()));
+    }
+    Preconditions.checkArgument(parsed.size() > 0, "No validation formats specified");
+    this.validationFormats = parsed;
+  }
+
+  /**
+   * Sets the directory the processed files and validation reports are written to, it's made if it doesn't exist
+   * @param outputDir the output directory, defaults to "out"
+   */
+  void setOutputDir(Path outputDir) {
+    this.outputDir = outputDir;
+  }
+
+  /**
+   * Sets the number of bytes held for each output file before they're written out
+   * @param bufferSize the buffer size in bytes
+   */
+  void setBufferSize(int bufferSize) {
+    Preconditions.checkArgument(bufferSize > 0, "Buffer size must be positive");
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * Sets whether the processed files and validation reports are gzipped as they're written, adding ".gz" to their names
+   * @param gzip true to gzip the outputs
+   */
+  void setGzip(boolean gzip) {
+    this.gzip = gzip;
+  }
+
+  /**
+   * Sets whether each processed file is also written in the binary columnar format, next to the CSV with
+   * {@link ColumnarWriter#EXTENSION} in place of ".csv". Can't be used with the incremental mode.
+   * @param columnar true to write the columnar exports
+   */
+  void setColumnar(boolean columnar) {
+    this.columnar = columnar;
+  }
+
+  /**
+   * Sets whether each field's checks are counted and timed, the ranked table is written to
+   * {@link FieldProfiler#FILENAME} at the end of the run. Timing every cell slows validation down.
+   * @param profileFields true to profile the field checks
+   */
+  void setProfileFields(boolean profileFields) {
+    this.profileFields = profileFields;
+  }
+
+  /**
+   * Sets how often progress is logged while the data files are read, see {@link ProgressReporter}
+   * @param progressInterval the seconds between progress lines, 0 to not log progress
+   */
+  void setProgressInterval(int progressInterval) {
+    Preconditions.checkArgument(progressInterval >= 0, "Progress interval can't be negative");
+    this.progressInterval = progressInterval;
+  }
+
+  /**
+   * Sets whether to keep running after the first run and validate and process each data file again when it changes
+   * @param watch true to watch the data files
+   */
+  void setWatch(boolean watch) {
+    this.watch = watch;
+  }
+
+  /**
+   * Waits for the first run to finish and the data files to be watched for changes, changes made before then might
+   * not be seen
+   * @param timeoutMillis the longest to wait
+   * @return true if the files are being watched, false if the time ran out
+   */
+  @VisibleForTesting
+  boolean awaitWatching(long timeoutMillis) throws InterruptedException {
+    return this.watching.await(timeoutMillis, TimeUnit.MILLISECONDS);
   }
 }
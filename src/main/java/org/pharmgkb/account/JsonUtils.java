@@ -0,0 +1,45 @@
+package org.pharmgkb.account;
+
+/**
+ * Methods to help with writing JSON by hand, the reports that use it are flat enough not to need a JSON library
+ */
+public class JsonUtils {
+
+  /**
+   * Appends a value as a JSON string, or null
+   */
+  public static void appendString(StringBuilder line, String value) {
+    if (value == null) {
+      line.append("null");
+      return;
+    }
+    line.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          line.append("\\\"");
+          break;
+        case '\\':
+          line.append("\\\\");
+          break;
+        case '\n':
+          line.append("\\n");
+          break;
+        case '\r':
+          line.append("\\r");
+          break;
+        case '\t':
+          line.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            line.append(String.format("\\u%04x", (int)c));
+          } else {
+            line.append(c);
+          }
+      }
+    }
+    line.append('"');
+  }
+}
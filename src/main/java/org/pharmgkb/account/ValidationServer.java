@@ -0,0 +1,417 @@
+package org.pharmgkb.account;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.Options;
+import org.pharmgkb.account.file.AbstractDataFile;
+import org.pharmgkb.account.file.ClopidogrelDataFile;
+import org.pharmgkb.account.file.NOACDataFile;
+import org.pharmgkb.account.file.WarfarinDataFile;
+import org.pharmgkb.account.validation.ValidationFormat;
+import org.pharmgkb.account.validation.ValidationSink;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTP service that validates data files sent to it, so a site's file can be checked without running
+ * {@link FileProcessor} by hand. It uses the JDK's built-in HTTP server and needs nothing outside this machine.
+ *
+ * A file is validated by posting its CSV to <code>/validate/{type}</code>, where the type is clopidogrel, noac or
+ * warfarin. The validation report comes back in the body of the response, as TSV unless a <code>format</code> of jsonl
+ * or summary is asked for, and a <code>filename</code> can be given for the reports that name the file.
+ *
+ * Requests are validated on a fixed number of worker threads with a bounded queue, requests past that get a 503. Each
+ * request's body is spooled to a temp file, up to a size limit past which it gets a 413, and read from there in a
+ * single pass with the results streamed back in batches, so each request only holds a batch of results in memory.
+ */
+public class ValidationServer implements Closeable {
+  private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  public static final String CONTEXT_PATH = "/validate/";
+  public static final int DEFAULT_PORT = 8484;
+  public static final int DEFAULT_THREADS = 2;
+  public static final int DEFAULT_QUEUE_SIZE = 8;
+  public static final long DEFAULT_MAX_BODY_BYTES = 512L << 20;
+  private static final int HTTP_THREADS = 2;
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final String RETRY_AFTER_SECONDS = "5";
+  /** starts the line that ends a tsv or summary report that failed after it started going out */
+  public static final String ERROR_MARKER = "ERROR: ";
+  private static final Set<String> TYPES = ImmutableSet.of("clopidogrel", "noac", "warfarin");
+  /** plain file names only, so a name from a request can't point anywhere else */
+  private static final Pattern FILENAME = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]{0,127}");
+
+  private final HttpServer server;
+  private final ExecutorService httpExecutor;
+  private final ThreadPoolExecutor workers;
+  private final long maxBodyBytes;
+
+  public static void main(String[] args) {
+    CommandLineParser cliParser = new DefaultParser();
+    Options o = new Options();
+    o.addOption("a", "address", true, "Address to listen on (default 127.0.0.1, only this machine)");
+    o.addOption("p", "port", true, "Port to listen on (default " + DEFAULT_PORT + ")");
+    o.addOption("t", "threads", true, "Number of requests to validate at the same time (default " + DEFAULT_THREADS + ")");
+    o.addOption("q", "queue-size", true, "Number of requests that can wait for a thread before getting a 503 (default " + DEFAULT_QUEUE_SIZE + ")");
+    o.addOption("m", "max-body", true, "Largest data file accepted, in megabytes, bigger ones get a 413 (default " + (DEFAULT_MAX_BODY_BYTES >> 20) + ")");
+
+    try {
+      CommandLine cli = cliParser.parse(o, args);
+      InetAddress address = cli.hasOption("a")
+          ? InetAddress.getByName(cli.getOptionValue("a"))
+          : InetAddress.getLoopbackAddress();
+      ValidationServer server = new ValidationServer(
+          new InetSocketAddress(address, Integer.parseInt(cli.getOptionValue("p", String.valueOf(DEFAULT_PORT)))),
+          Integer.parseInt(cli.getOptionValue("t", String.valueOf(DEFAULT_THREADS))),
+          Integer.parseInt(cli.getOptionValue("q", String.valueOf(DEFAULT_QUEUE_SIZE))),
+          Long.parseLong(cli.getOptionValue("m", String.valueOf(DEFAULT_MAX_BODY_BYTES >> 20))) << 20
+      );
+      server.start();
+    } catch (Exception ex) {
+      ex.printStackTrace();
+    }
+  }
+
+  /**
+   * Makes a server, it doesn't take requests until it's started
+   * @param address the address and port to listen on, port 0 picks a free port
+   * @param threads the number of requests validated at the same time
+   * @param queueSize the number of requests that can wait for a thread, 0 to turn away any request that can't start
+   * right away
+   * @param maxBodyBytes the largest data file accepted
+   * @throws IOException can occur when the address can't be bound
+   */
+  public ValidationServer(@Nonnull InetSocketAddress address, int threads, int queueSize, long maxBodyBytes)
+      throws IOException {
+    Preconditions.checkArgument(threads > 0, "Threads must be positive");
+    Preconditions.checkArgument(queueSize >= 0, "Queue size can't be negative");
+    Preconditions.checkArgument(maxBodyBytes > 0, "Max body size must be positive");
+    this.maxBodyBytes = maxBodyBytes;
+
+    BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+    this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+        new ThreadFactoryBuilder().setNameFormat("validation-%d").build());
+    // requests are only looked over on these threads and then handed to the workers
+    this.httpExecutor = Executors.newFixedThreadPool(HTTP_THREADS,
+        new ThreadFactoryBuilder().setNameFormat("validation-http-%d").build());
+
+    this.server = HttpServer.create(address, 0);
+    this.server.setExecutor(this.httpExecutor);
+    this.server.createContext(CONTEXT_PATH, this::handle);
+  }
+
+  public void start() {
+    this.server.start();
+    sf_logger.info("Validating data files posted to http://{}:{}{}<type>",
+        this.server.getAddress().getHostString(), getPort(), CONTEXT_PATH);
+  }
+
+  /**
+   * Gets the port the server is listening on, the one picked if it was made with port 0
+   */
+  public int getPort() {
+    return this.server.getAddress().getPort();
+  }
+
+  /**
+   * The number of requests being validated right now
+   */
+  int getActiveRequests() {
+    return this.workers.getActiveCount();
+  }
+
+  /**
+   * Stops taking requests and stops the requests being validated
+   */
+  @Override
+  public void close() {
+    this.server.stop(0);
+    this.workers.shutdownNow();
+    this.httpExecutor.shutdownNow();
+  }
+
+  /**
+   * Checks a request and hands it to a worker, anything that can be turned away without reading the body is turned
+   * away here
+   */
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!exchange.getRequestMethod().equals("POST")) {
+        exchange.getResponseHeaders().set("Allow", "POST");
+        sendText(exchange, 405, "Data files have to be POSTed");
+        return;
+      }
+      String type = exchange.getRequestURI().getPath().substring(CONTEXT_PATH.length());
+      if (!TYPES.contains(type)) {
+        sendText(exchange, 404, "Unknown data file type \"" + type + "\", use clopidogrel, noac or warfarin");
+        return;
+      }
+      Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+      ValidationFormat format;
+      try {
+        format = ValidationFormat.valueOf(query.getOrDefault("format", "tsv").toUpperCase());
+      } catch (IllegalArgumentException ex) {
+        sendText(exchange, 400, "Unknown format \"" + query.get("format") + "\", use tsv, jsonl or summary");
+        return;
+      }
+      String filename = query.getOrDefault("filename", type + ".csv");
+      if (!FILENAME.matcher(filename).matches()) {
+        sendText(exchange, 400, "The filename can only have letters, numbers, \".\", \"_\" and \"-\"");
+        return;
+      }
+      String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+      if (contentLength != null && Long.parseLong(contentLength) > this.maxBodyBytes) {
+        sendText(exchange, 413, "Data files can't be bigger than " + this.maxBodyBytes + " bytes");
+        return;
+      }
+
+      try {
+        this.workers.execute(() -> validate(exchange, type, format, filename));
+      } catch (RejectedExecutionException ex) {
+        exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+        sendText(exchange, 503, "Too many data files are being validated, try again later");
+      }
+    } catch (NumberFormatException ex) {
+      sendText(exchange, 400, "Bad Content-Length");
+    }
+  }
+
+  /**
+   * Validates a request's data file and streams the report back, run on a worker
+   */
+  private void validate(HttpExchange exchange, String type, ValidationFormat format, String filename) {
+    Path directory = null;
+    Path file = null;
+    ResponseStream response = new ResponseStream(exchange);
+    Writer writer = new BufferedWriter(new OutputStreamWriter(response, StandardCharsets.UTF_8), BUFFER_SIZE);
+    try {
+      directory = Files.createTempDirectory("account-validation");
+      file = directory.resolve(filename);
+      if (!spool(exchange.getRequestBody(), file)) {
+        sendText(exchange, 413, "Data files can't be bigger than " + this.maxBodyBytes + " bytes");
+        return;
+      }
+
+      AbstractDataFile dataFile = makeDataFile(type, file);
+      exchange.getResponseHeaders().set("Content-Type", getContentType(format));
+      // the sink is only closed when validation finishes, closing it on a failure would send what's buffered as a 200
+      ValidationSink sink = format.makeSink(writer);
+      dataFile.validate(sink);
+      sink.close();
+    } catch (IOException ex) {
+      // the file couldn't be read as CSV, which is only worth a 400 if none of the report has gone out yet
+      sf_logger.warn("Couldn't validate posted {} file", type, ex);
+      if (!response.isCommitted()) {
+        sendQuietly(exchange, 400, "Couldn't validate the data file: " + ex.getMessage());
+      } else {
+        endWithError(writer, format, "Couldn't validate the data file: " + ex.getMessage());
+      }
+    } catch (RuntimeException ex) {
+      sf_logger.error("Failed validating posted {} file", type, ex);
+      if (!response.isCommitted()) {
+        sendQuietly(exchange, 500, "Failed validating the data file");
+      } else {
+        endWithError(writer, format, "Failed validating the data file");
+      }
+    } finally {
+      exchange.close();
+      deleteQuietly(file);
+      deleteQuietly(directory);
+    }
+  }
+
+  /**
+   * Copies a request body to a file, stopping once it's bigger than the limit
+   * @return true if the whole body was copied, false if it was too big
+   */
+  private boolean spool(InputStream body, Path file) throws IOException {
+    long size = 0;
+    byte[] buffer = new byte[BUFFER_SIZE];
+    try (InputStream in = body; OutputStream out = Files.newOutputStream(file)) {
+      for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+        size += n;
+        if (size > this.maxBodyBytes) {
+          return false;
+        }
+        out.write(buffer, 0, n);
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Makes the data file of a type
+   * @param type clopidogrel, noac or warfarin
+   * @param file the file it reads
+   */
+  private static AbstractDataFile makeDataFile(String type, Path file) {
+    // site keys only go into the processed file, which isn't made here
+    Map<String, String> siteKeyMap = Collections.emptyMap();
+    switch (type) {
+      case "clopidogrel":
+        return new ClopidogrelDataFile(file, siteKeyMap);
+      case "noac":
+        return new NOACDataFile(file, siteKeyMap);
+      case "warfarin":
+        return new WarfarinDataFile(file, siteKeyMap);
+      default:
+        throw new IllegalArgumentException("Unknown data file type " + type);
+    }
+  }
+
+  private static String getContentType(ValidationFormat format) {
+    switch (format) {
+      case TSV:
+        return "text/tab-separated-values; charset=utf-8";
+      case JSONL:
+        return "application/x-ndjson; charset=utf-8";
+      default:
+        return "text/plain; charset=utf-8";
+    }
+  }
+
+  private static Map<String, String> parseQuery(@Nullable String rawQuery) throws IOException {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery != null) {
+      for (String pair : rawQuery.split("&")) {
+        int equals = pair.indexOf('=');
+        if (equals > 0) {
+          query.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+              URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+        }
+      }
+    }
+    return query;
+  }
+
+  private static void sendText(HttpExchange exchange, int status, String message) throws IOException {
+    byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static void sendQuietly(HttpExchange exchange, int status, String message) {
+    try {
+      sendText(exchange, status, message);
+    } catch (IOException ex) {
+      sf_logger.debug("Couldn't send {} response", status, ex);
+    }
+  }
+
+  /**
+   * Ends a report that's already been sent in part with a line saying it's incomplete, since the 200 can't be taken
+   * back. The line is a JSON object with an <code>error</code> for jsonl and starts with {@link #ERROR_MARKER} for the
+   * other formats.
+   */
+  private static void endWithError(Writer writer, ValidationFormat format, String message) {
+    String reason = message + ", the report is incomplete";
+    try {
+      if (format == ValidationFormat.JSONL) {
+        StringBuilder line = new StringBuilder("{\"error\":");
+        JsonUtils.appendString(line, reason);
+        writer.write(line.append("}\n").toString());
+      } else {
+        writer.write(ERROR_MARKER + reason + "\n");
+      }
+      writer.close();
+    } catch (IOException ex) {
+      sf_logger.debug("Couldn't end the report with an error", ex);
+    }
+  }
+
+  private static void deleteQuietly(@Nullable Path path) {
+    if (path != null) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException ex) {
+        sf_logger.warn("Couldn't delete {}", path, ex);
+      }
+    }
+  }
+
+  /**
+   * The body of a successful response, the 200 status is only sent with the first bytes of the report so a file that
+   * can't be read before then still gets an error status
+   */
+  private static class ResponseStream extends OutputStream {
+    private final HttpExchange exchange;
+    private OutputStream body = null;
+
+    private ResponseStream(HttpExchange exchange) {
+      this.exchange = exchange;
+    }
+
+    private boolean isCommitted() {
+      return this.body != null;
+    }
+
+    private OutputStream body() throws IOException {
+      if (this.body == null) {
+        // a length of 0 means the body is chunked since its length isn't known yet
+        this.exchange.sendResponseHeaders(200, 0);
+        this.body = this.exchange.getResponseBody();
+      }
+      return this.body;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      body().write(b);
+    }
+
+    @Override
+    public void write(@Nonnull byte[] bytes, int offset, int length) throws IOException {
+      body().write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (this.body != null) {
+        this.body.flush();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      body().close();
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package org.pharmgkb.account.columnar;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The name, description and type of one column of a columnar file
+ */
+public class ColumnSchema {
+  private final String name;
+  private final String description;
+  private final ColumnType type;
+
+  /**
+   * Makes a column
+   * @param name the column header, like the display name of an output field
+   * @param description what the column holds, can be blank
+   * @param type the type of the values
+   */
+  public ColumnSchema(@Nonnull String name, @Nonnull String description, @Nonnull ColumnType type) {
+    this.name = name;
+    this.description = description;
+    this.type = type;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  public String getDescription() {
+    return this.description;
+  }
+
+  public ColumnType getType() {
+    return this.type;
+  }
+
+  @Override
+  public String toString() {
+    return this.name + " (" + this.type + ")";
+  }
+}
@@ -0,0 +1,14 @@
+package org.pharmgkb.account.columnar;
+
+/**
+ * The types of column a columnar file can have
+ */
+public enum ColumnType {
+  /** any text, each row group keeps a dictionary of the column's distinct values */
+  TEXT,
+  /**
+   * decimal numbers like "12.50" or missing data, kept exactly as they were written. A row group where one of the
+   * column's values isn't a plain decimal, like "1,500", keeps that column as text instead.
+   */
+  NUMBER
+}
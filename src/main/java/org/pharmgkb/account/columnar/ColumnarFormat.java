@@ -0,0 +1,153 @@
+package org.pharmgkb.account.columnar;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The layout of a columnar file, shared by {@link ColumnarWriter} and {@link ColumnarTable}. All numbers are big-endian
+ * as written by {@link DataOutputStream}.
+ *
+ * <pre>
+ * header:    int MAGIC, int FORMAT_VERSION, int row group size, int column count,
+ *            then for each column: string name, string description, byte {@link ColumnType} ordinal
+ * row group: byte ROW_GROUP, int row count, then for each column a chunk of its values in that group
+ * end:       byte END, long total row count
+ * </pre>
+ *
+ * A {@link #TEXT_CHUNK} is an int dictionary size, the dictionary strings and then one code per row, 1, 2 or 4 bytes
+ * wide depending on the size of the dictionary. A {@link #NUMBER_CHUNK} is a bitmap of the rows that are missing data
+ * and then for each other row a byte scale and a zigzag varint unscaled value. Strings are an int byte count and the
+ * UTF-8 bytes.
+ */
+final class ColumnarFormat {
+  /** "ACOL", marks the start of a columnar file */
+  static final int MAGIC = 0x41434F4C;
+  /** change this whenever the layout changes */
+  static final int FORMAT_VERSION = 1;
+  static final byte ROW_GROUP = 1;
+  static final byte END = 0;
+  static final byte TEXT_CHUNK = 0;
+  static final byte NUMBER_CHUNK = 1;
+  /** the most digits a plain decimal can have and still be kept as a number */
+  private static final int MAX_DIGITS = 18;
+
+  private ColumnarFormat() {}
+
+  /**
+   * Gets the number of bytes each code of a text chunk takes
+   * @param dictionarySize the number of distinct values in the chunk
+   */
+  static int codeWidth(int dictionarySize) {
+    if (dictionarySize <= 1 << 8) {
+      return 1;
+    }
+    return dictionarySize <= 1 << 16 ? 2 : 4;
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Bad string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    long zigzag = (value << 1) ^ (value >> 63);
+    while ((zigzag & ~0x7FL) != 0) {
+      out.writeByte((int)((zigzag & 0x7F) | 0x80));
+      zigzag >>>= 7;
+    }
+    out.writeByte((int)zigzag);
+  }
+
+  static long readVarLong(DataInputStream in) throws IOException {
+    long zigzag = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      zigzag |= (long)(b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+    throw new IOException("Bad varint");
+  }
+
+  /**
+   * Gets the number of digits after the point of a plain decimal like "-12.50", one that can be written back exactly
+   * from its digits and scale. Leading zeros, grouping commas, exponents, "-0" and more than {@link #MAX_DIGITS}
+   * digits don't count.
+   * @return the scale or -1 if the value isn't a plain decimal
+   */
+  static int scaleOf(String value) {
+    int start = value.startsWith("-") ? 1 : 0;
+    int point = -1;
+    int digits = 0;
+    boolean nonZero = false;
+    for (int i = start; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '.' && point < 0 && i > start) {
+        point = i;
+      } else if (c >= '0' && c <= '9') {
+        digits += 1;
+        nonZero |= c != '0';
+      } else {
+        return -1;
+      }
+    }
+    int integerEnd = point < 0 ? value.length() : point;
+    boolean leadingZero = integerEnd - start > 1 && value.charAt(start) == '0';
+    if (digits == 0 || digits > MAX_DIGITS || point == value.length() - 1 || leadingZero || (start == 1 && !nonZero)) {
+      return -1;
+    }
+    return point < 0 ? 0 : value.length() - point - 1;
+  }
+
+  /**
+   * Gets the digits of a plain decimal as a long, see {@link #scaleOf(String)}
+   */
+  static long unscaledOf(String value) {
+    long unscaled = 0;
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        unscaled = unscaled * 10 + (c - '0');
+      }
+    }
+    return value.startsWith("-") ? -unscaled : unscaled;
+  }
+
+  /**
+   * Writes a decimal back the way it was read by {@link #scaleOf(String)} and {@link #unscaledOf(String)}
+   */
+  static String formatDecimal(long unscaled, int scale) {
+    String digits = Long.toString(Math.abs(unscaled));
+    StringBuilder builder = new StringBuilder(digits.length() + 3);
+    if (unscaled < 0) {
+      builder.append('-');
+    }
+    if (scale == 0) {
+      builder.append(digits);
+    } else if (digits.length() <= scale) {
+      builder.append("0.");
+      for (int i = digits.length(); i < scale; i++) {
+        builder.append('0');
+      }
+      builder.append(digits);
+    } else {
+      int point = digits.length() - scale;
+      builder.append(digits, 0, point).append('.').append(digits, point, digits.length());
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,292 @@
+package org.pharmgkb.account.columnar;
+
+import com.google.common.collect.ImmutableList;
+import org.pharmgkb.account.data.FieldPattern;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A columnar file written by {@link ColumnarWriter}, read all the way into memory. Text columns stay dictionary
+ * encoded, so a value is looked up rather than copied, and number columns stay as exact decimals that can be read as
+ * doubles without parsing them again.
+ *
+ * Tables are read-only once they're loaded and can be shared between threads.
+ */
+public class ColumnarTable {
+  private static final int STREAM_BUFFER_SIZE = 1 << 16;
+  private static final int GZIP_MAGIC = 0x1F8B;
+  private static final double[] POWERS_OF_TEN = {
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18
+  };
+  /** the largest unscaled value that a double holds exactly */
+  private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+  private final List<ColumnSchema> columns;
+  private final int rowGroupSize;
+  /** the chunks of each row group, a column at a time */
+  private final List<Chunk[]> rowGroups;
+  private final int size;
+
+  private ColumnarTable(List<ColumnSchema> columns, int rowGroupSize, List<Chunk[]> rowGroups, int size) {
+    this.columns = columns;
+    this.rowGroupSize = rowGroupSize;
+    this.rowGroups = rowGroups;
+    this.size = size;
+  }
+
+  /**
+   * Reads a columnar file, which can be gzipped like the other outputs
+   * @param path the file to read
+   * @return the table
+   * @throws IOException can occur when the file can't be read or isn't a columnar file
+   */
+  public static ColumnarTable read(@Nonnull Path path) throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(path), STREAM_BUFFER_SIZE)) {
+      in.mark(2);
+      int magic = (in.read() << 8) | in.read();
+      in.reset();
+      return read(magic == GZIP_MAGIC ? new GZIPInputStream(in, STREAM_BUFFER_SIZE) : in);
+    }
+  }
+
+  /**
+   * Reads a columnar file from a stream, the stream isn't closed
+   * @param stream the uncompressed bytes of a columnar file
+   * @return the table
+   * @throws IOException can occur when the stream can't be read or isn't a columnar file
+   */
+  public static ColumnarTable read(@Nonnull InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(stream instanceof BufferedInputStream
+        ? stream
+        : new BufferedInputStream(stream, STREAM_BUFFER_SIZE));
+    if (in.readInt() != ColumnarFormat.MAGIC) {
+      throw new IOException("Not a columnar file");
+    }
+    int version = in.readInt();
+    if (version != ColumnarFormat.FORMAT_VERSION) {
+      throw new IOException("Unsupported columnar file version " + version);
+    }
+    int rowGroupSize = in.readInt();
+    int columnCount = in.readInt();
+    if (rowGroupSize <= 0 || columnCount < 0) {
+      throw new IOException("Bad columnar file header");
+    }
+    ColumnType[] types = ColumnType.values();
+    ImmutableList.Builder<ColumnSchema> columns = ImmutableList.builder();
+    for (int c = 0; c < columnCount; c++) {
+      String name = ColumnarFormat.readString(in);
+      String description = ColumnarFormat.readString(in);
+      int type = in.readByte();
+      if (type < 0 || type >= types.length) {
+        throw new IOException("Unknown column type " + type);
+      }
+      columns.add(new ColumnSchema(name, description, types[type]));
+    }
+
+    List<Chunk[]> rowGroups = new ArrayList<>();
+    long size = 0;
+    for (byte marker = in.readByte(); marker != ColumnarFormat.END; marker = in.readByte()) {
+      if (marker != ColumnarFormat.ROW_GROUP) {
+        throw new IOException("Bad row group marker " + marker);
+      }
+      int rows = in.readInt();
+      // only the last row group can be short, rows are found by dividing by the row group size
+      if (rows <= 0 || rows > rowGroupSize || (!rowGroups.isEmpty() && size % rowGroupSize != 0)) {
+        throw new IOException("Bad row group of " + rows + " rows");
+      }
+      Chunk[] chunks = new Chunk[columnCount];
+      for (int c = 0; c < columnCount; c++) {
+        chunks[c] = readChunk(in, rows);
+      }
+      rowGroups.add(chunks);
+      size += rows;
+    }
+    long expectedSize = in.readLong();
+    if (size != expectedSize || size > Integer.MAX_VALUE) {
+      throw new IOException("Read " + size + " rows, expected " + expectedSize);
+    }
+    return new ColumnarTable(columns.build(), rowGroupSize, rowGroups, (int)size);
+  }
+
+  private static Chunk readChunk(DataInputStream in, int rows) throws IOException {
+    byte encoding = in.readByte();
+    if (encoding == ColumnarFormat.TEXT_CHUNK) {
+      int dictionarySize = in.readInt();
+      if (dictionarySize <= 0 || dictionarySize > rows) {
+        throw new IOException("Bad dictionary size " + dictionarySize);
+      }
+      String[] dictionary = new String[dictionarySize];
+      for (int i = 0; i < dictionarySize; i++) {
+        dictionary[i] = ColumnarFormat.readString(in);
+      }
+      int width = ColumnarFormat.codeWidth(dictionarySize);
+      int[] codes = new int[rows];
+      for (int i = 0; i < rows; i++) {
+        int code = width == 1 ? in.readUnsignedByte() : width == 2 ? in.readUnsignedShort() : in.readInt();
+        if (code < 0 || code >= dictionarySize) {
+          throw new IOException("Bad dictionary code " + code);
+        }
+        codes[i] = code;
+      }
+      return new TextChunk(dictionary, codes);
+    } else if (encoding == ColumnarFormat.NUMBER_CHUNK) {
+      byte[] missing = new byte[(rows + 7) / 8];
+      in.readFully(missing);
+      long[] unscaled = new long[rows];
+      byte[] scales = new byte[rows];
+      for (int i = 0; i < rows; i++) {
+        if ((missing[i >>> 3] & (1 << (i & 7))) == 0) {
+          scales[i] = in.readByte();
+          if (scales[i] < 0 || scales[i] >= POWERS_OF_TEN.length) {
+            throw new IOException("Bad scale " + scales[i]);
+          }
+          unscaled[i] = ColumnarFormat.readVarLong(in);
+        }
+      }
+      return new NumberChunk(missing, unscaled, scales);
+    }
+    throw new IOException("Unknown chunk encoding " + encoding);
+  }
+
+  /**
+   * The number of rows
+   */
+  public int size() {
+    return this.size;
+  }
+
+  public List<ColumnSchema> getColumns() {
+    return this.columns;
+  }
+
+  /**
+   * Finds a column by name
+   * @param name the column header
+   * @return the column index or -1 if there's no such column
+   */
+  public int findColumn(@Nonnull String name) {
+    for (int c = 0; c < this.columns.size(); c++) {
+      if (this.columns.get(c).getName().equals(name)) {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Gets a value the way it was written
+   */
+  public String getString(int row, int column) {
+    return chunk(row, column).getString(row % this.rowGroupSize);
+  }
+
+  /**
+   * Is a value missing data, written as {@link FieldPattern#MISSING_DATA}
+   */
+  public boolean isMissing(int row, int column) {
+    return chunk(row, column).isMissing(row % this.rowGroupSize);
+  }
+
+  /**
+   * Gets a value as a number
+   * @return the number or NaN if the value is missing data or isn't a plain decimal
+   */
+  public double getDouble(int row, int column) {
+    return chunk(row, column).getDouble(row % this.rowGroupSize);
+  }
+
+  private Chunk chunk(int row, int column) {
+    if (row < 0 || row >= this.size) {
+      throw new IndexOutOfBoundsException("Row " + row + " of " + this.size);
+    }
+    return this.rowGroups.get(row / this.rowGroupSize)[column];
+  }
+
+  private static double toDouble(long unscaled, int scale) {
+    if (Math.abs(unscaled) < MAX_EXACT_DOUBLE) {
+      // both are exact so the division rounds correctly
+      return unscaled / POWERS_OF_TEN[scale];
+    }
+    return BigDecimal.valueOf(unscaled, scale).doubleValue();
+  }
+
+  /**
+   * The values of one column in one row group
+   */
+  private interface Chunk {
+    String getString(int i);
+
+    boolean isMissing(int i);
+
+    double getDouble(int i);
+  }
+
+  private static class TextChunk implements Chunk {
+    private final String[] dictionary;
+    private final int[] codes;
+    /** each dictionary value as a number, worked out once per distinct value */
+    private final double[] numbers;
+
+    private TextChunk(String[] dictionary, int[] codes) {
+      this.dictionary = dictionary;
+      this.codes = codes;
+      this.numbers = new double[dictionary.length];
+      for (int i = 0; i < dictionary.length; i++) {
+        int scale = ColumnarFormat.scaleOf(dictionary[i]);
+        this.numbers[i] = scale < 0 ? Double.NaN : toDouble(ColumnarFormat.unscaledOf(dictionary[i]), scale);
+      }
+    }
+
+    @Override
+    public String getString(int i) {
+      return this.dictionary[this.codes[i]];
+    }
+
+    @Override
+    public boolean isMissing(int i) {
+      return this.dictionary[this.codes[i]].equals(FieldPattern.MISSING_DATA);
+    }
+
+    @Override
+    public double getDouble(int i) {
+      return this.numbers[this.codes[i]];
+    }
+  }
+
+  private static class NumberChunk implements Chunk {
+    private final byte[] missing;
+    private final long[] unscaled;
+    private final byte[] scales;
+
+    private NumberChunk(byte[] missing, long[] unscaled, byte[] scales) {
+      this.missing = missing;
+      this.unscaled = unscaled;
+      this.scales = scales;
+    }
+
+    @Override
+    public String getString(int i) {
+      return isMissing(i) ? FieldPattern.MISSING_DATA : ColumnarFormat.formatDecimal(this.unscaled[i], this.scales[i]);
+    }
+
+    @Override
+    public boolean isMissing(int i) {
+      return (this.missing[i >>> 3] & (1 << (i & 7))) != 0;
+    }
+
+    @Override
+    public double getDouble(int i) {
+      return isMissing(i) ? Double.NaN : toDouble(this.unscaled[i], this.scales[i]);
+    }
+  }
+}
@@ -0,0 +1,197 @@
+package org.pharmgkb.account.columnar;
+
+import com.google.common.base.Preconditions;
+import org.pharmgkb.account.data.FieldPattern;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes rows of Strings, like the processed rows of a data file, into a typed, column-oriented binary file that
+ * {@link ColumnarTable} reads back. Rows are held until a row group is full and then written a column at a time: text
+ * columns as a dictionary of distinct values and a small code per row, number columns as exact decimals with missing
+ * data marked in a bitmap. See {@link ColumnarFormat} for the layout.
+ *
+ * Loading the file skips all the CSV parsing and quoting, and the processed files are mostly a few distinct values per
+ * column so the file is a fraction of the size of the CSV. Writers are not thread-safe.
+ */
+public class ColumnarWriter implements Closeable {
+  public static final String EXTENSION = ".acol";
+  public static final int DEFAULT_ROW_GROUP_SIZE = 1 << 16;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int STREAM_BUFFER_SIZE = 1 << 16;
+
+  private final DataOutputStream out;
+  private final ColumnSchema[] columns;
+  private final int rowGroupSize;
+  /** the values of the rows in the current row group, a column at a time */
+  private final String[][] values;
+  private int rows = 0;
+  private long totalRows = 0;
+  // reused for every number chunk
+  private long[] unscaled = new long[0];
+  private byte[] scales = new byte[0];
+
+  /**
+   * Starts a columnar file with the default row group size
+   * @param out the stream to write to, it's closed with the writer
+   * @param columns the columns of the rows, in order
+   * @throws IOException can occur when writing the header
+   */
+  public ColumnarWriter(@Nonnull OutputStream out, @Nonnull List<ColumnSchema> columns) throws IOException {
+    this(out, columns, DEFAULT_ROW_GROUP_SIZE);
+  }
+
+  /**
+   * Starts a columnar file
+   * @param out the stream to write to, it's closed with the writer
+   * @param columns the columns of the rows, in order
+   * @param rowGroupSize the number of rows held before they're written out
+   * @throws IOException can occur when writing the header
+   */
+  public ColumnarWriter(@Nonnull OutputStream out, @Nonnull List<ColumnSchema> columns, int rowGroupSize)
+      throws IOException {
+    Preconditions.checkArgument(rowGroupSize > 0, "Row group size must be positive");
+    this.out = new DataOutputStream(new BufferedOutputStream(out, STREAM_BUFFER_SIZE));
+    this.columns = columns.toArray(new ColumnSchema[0]);
+    this.rowGroupSize = rowGroupSize;
+    this.values = new String[this.columns.length][Math.min(rowGroupSize, INITIAL_CAPACITY)];
+
+    this.out.writeInt(ColumnarFormat.MAGIC);
+    this.out.writeInt(ColumnarFormat.FORMAT_VERSION);
+    this.out.writeInt(rowGroupSize);
+    this.out.writeInt(this.columns.length);
+    for (ColumnSchema column : this.columns) {
+      ColumnarFormat.writeString(this.out, column.getName());
+      ColumnarFormat.writeString(this.out, column.getDescription());
+      this.out.writeByte(column.getType().ordinal());
+    }
+  }
+
+  /**
+   * Adds a row, the values are kept but the array isn't so it can be reused
+   * @param row one value per column
+   * @throws IOException can occur when the row fills a row group and it's written out
+   */
+  public void write(@Nonnull String[] row) throws IOException {
+    Preconditions.checkArgument(row.length == this.columns.length, "Row has " + row.length + " values, needs " + this.columns.length);
+    if (this.rows == this.values[0].length) {
+      int capacity = Math.min(this.rows * 2, this.rowGroupSize);
+      for (int c = 0; c < this.columns.length; c++) {
+        this.values[c] = Arrays.copyOf(this.values[c], capacity);
+      }
+    }
+    for (int c = 0; c < this.columns.length; c++) {
+      this.values[c][this.rows] = Preconditions.checkNotNull(row[c], "Column %s has no value", this.columns[c]);
+    }
+    this.rows += 1;
+    if (this.rows == this.rowGroupSize) {
+      writeRowGroup();
+    }
+  }
+
+  /**
+   * Writes out the last row group and finishes the file
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      if (this.rows > 0) {
+        writeRowGroup();
+      }
+      this.out.writeByte(ColumnarFormat.END);
+      this.out.writeLong(this.totalRows);
+    } finally {
+      this.out.close();
+    }
+  }
+
+  private void writeRowGroup() throws IOException {
+    this.out.writeByte(ColumnarFormat.ROW_GROUP);
+    this.out.writeInt(this.rows);
+    for (int c = 0; c < this.columns.length; c++) {
+      if (this.columns[c].getType() != ColumnType.NUMBER || !writeNumberChunk(this.values[c])) {
+        writeTextChunk(this.values[c]);
+      }
+      Arrays.fill(this.values[c], 0, this.rows, null);
+    }
+    this.totalRows += this.rows;
+    this.rows = 0;
+  }
+
+  private void writeTextChunk(String[] columnValues) throws IOException {
+    Map<String, Integer> dictionary = new HashMap<>();
+    int[] codes = new int[this.rows];
+    for (int i = 0; i < this.rows; i++) {
+      Integer code = dictionary.get(columnValues[i]);
+      if (code == null) {
+        code = dictionary.size();
+        dictionary.put(columnValues[i], code);
+      }
+      codes[i] = code;
+    }
+    String[] distinct = new String[dictionary.size()];
+    for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+      distinct[entry.getValue()] = entry.getKey();
+    }
+
+    this.out.writeByte(ColumnarFormat.TEXT_CHUNK);
+    this.out.writeInt(distinct.length);
+    for (String value : distinct) {
+      ColumnarFormat.writeString(this.out, value);
+    }
+    int width = ColumnarFormat.codeWidth(distinct.length);
+    for (int i = 0; i < this.rows; i++) {
+      if (width == 1) {
+        this.out.writeByte(codes[i]);
+      } else if (width == 2) {
+        this.out.writeShort(codes[i]);
+      } else {
+        this.out.writeInt(codes[i]);
+      }
+    }
+  }
+
+  /**
+   * Writes a chunk of exact decimals if every value of the chunk is a plain decimal or missing data
+   * @return false if nothing was written because a value isn't a plain decimal
+   */
+  private boolean writeNumberChunk(String[] columnValues) throws IOException {
+    if (this.unscaled.length < this.rows) {
+      this.unscaled = new long[this.rowGroupSize];
+      this.scales = new byte[this.rowGroupSize];
+    }
+    byte[] missing = new byte[(this.rows + 7) / 8];
+    for (int i = 0; i < this.rows; i++) {
+      String value = columnValues[i];
+      if (value.equals(FieldPattern.MISSING_DATA)) {
+        missing[i >>> 3] |= 1 << (i & 7);
+        continue;
+      }
+      int scale = ColumnarFormat.scaleOf(value);
+      if (scale < 0) {
+        return false;
+      }
+      this.scales[i] = (byte)scale;
+      this.unscaled[i] = ColumnarFormat.unscaledOf(value);
+    }
+
+    this.out.writeByte(ColumnarFormat.NUMBER_CHUNK);
+    this.out.write(missing);
+    for (int i = 0; i < this.rows; i++) {
+      if ((missing[i >>> 3] & (1 << (i & 7))) == 0) {
+        this.out.writeByte(this.scales[i]);
+        ColumnarFormat.writeVarLong(this.out, this.unscaled[i]);
+      }
+    }
+    return true;
+  }
+}
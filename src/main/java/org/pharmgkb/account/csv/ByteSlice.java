@@ -0,0 +1,50 @@
+package org.pharmgkb.account.csv;
+
+import javax.annotation.Nonnull;
+import java.nio.ByteBuffer;
+
+/**
+ * A view of a run of ASCII bytes in a buffer as chars, so a value can be checked without making a String of it
+ */
+final class ByteSlice implements CharSequence {
+  private ByteBuffer bytes;
+  private int start;
+  private int length;
+
+  ByteSlice set(@Nonnull ByteBuffer bytes, int start, int end) {
+    this.bytes = bytes;
+    this.start = start;
+    this.length = end - start;
+    return this;
+  }
+
+  @Override
+  public int length() {
+    return this.length;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= this.length) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + this.length);
+    }
+    return (char)(this.bytes.get(this.start + index) & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > this.length || start > end) {
+      throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length);
+    }
+    return new ByteSlice().set(this.bytes, this.start + start, this.start + end);
+  }
+
+  @Override
+  public String toString() {
+    char[] chars = new char[this.length];
+    for (int i = 0; i < this.length; i++) {
+      chars[i] = (char)(this.bytes.get(this.start + i) & 0xFF);
+    }
+    return new String(chars);
+  }
+}
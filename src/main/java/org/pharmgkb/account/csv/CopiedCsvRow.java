@@ -0,0 +1,53 @@
+package org.pharmgkb.account.csv;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link CsvRow} with its own copy of every value, for a record that has to be kept after its reader moves on, like
+ * the records of a chunk that are worked on while the next chunk is read
+ */
+public class CopiedCsvRow implements CsvRow {
+  private final String[] values;
+
+  private CopiedCsvRow(String[] values) {
+    this.values = values;
+  }
+
+  /**
+   * Copies a record, decoding each of its values
+   * @param row the record to copy, which can be a reused row of a reader
+   * @return a row that stays good after the reader moves on
+   */
+  public static CopiedCsvRow copyOf(@Nonnull CsvRow row) {
+    return copyOf(row, row.size());
+  }
+
+  /**
+   * Copies a record, padding it with empty values if it's short
+   * @param row the record to copy, which can be a reused row of a reader
+   * @param size the least number of values the copy has
+   * @return a row that stays good after the reader moves on
+   */
+  public static CopiedCsvRow copyOf(@Nonnull CsvRow row, int size) {
+    String[] values = new String[Math.max(size, row.size())];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i < row.size() ? row.get(i) : "";
+    }
+    return new CopiedCsvRow(values);
+  }
+
+  @Override
+  public int size() {
+    return this.values.length;
+  }
+
+  @Override
+  public String get(int column) {
+    return this.values[column];
+  }
+
+  @Override
+  public CharSequence getChars(int column) {
+    return this.values[column];
+  }
+}
@@ -0,0 +1,30 @@
+package org.pharmgkb.account.csv;
+
+/**
+ * One record of a CSV data file. Values can be read as Strings, which is what leaves the engine in reports and
+ * processed files, or as {@link CharSequence}s for checking them, which a reader can hand out without decoding.
+ */
+public interface CsvRow {
+
+  /**
+   * The number of values in the record
+   */
+  int size();
+
+  /**
+   * Gets a value as a String
+   * @param column the 0-based column index
+   * @return the value
+   * @throws ArrayIndexOutOfBoundsException if the record has no such column
+   */
+  String get(int column);
+
+  /**
+   * Gets a value as a sequence of chars, which may be a view of the reader's buffer that's only good until the reader
+   * moves to the next record. Use {@link #get(int)} for a value that needs to be kept.
+   * @param column the 0-based column index
+   * @return the value
+   * @throws ArrayIndexOutOfBoundsException if the record has no such column
+   */
+  CharSequence getChars(int column);
+}
@@ -0,0 +1,360 @@
+package org.pharmgkb.account.csv;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a CSV file by memory-mapping it and splitting the records up on the raw bytes, the same way
+ * Commons CSV's {@link org.apache.commons.csv.CSVFormat#DEFAULT} format does: values are split by commas, can be quoted
+ * with "" inside a quoted value standing for one quote, records end at CR, LF or CRLF and empty lines are skipped.
+ * A UTF-8 byte order mark at the start of the file is skipped too.
+ *
+ * Values aren't decoded when a record is read, the record only remembers where each value starts and ends. Checking a
+ * value with {@link CsvRow#getChars(int)} reads the mapped bytes in place and a String is only made when
+ * {@link CsvRow#get(int)} asks for one. The file is mapped a window at a time so files of any size can be read.
+ *
+ * The charset has to encode the ASCII characters as single bytes, like UTF-8 or ISO-8859-1 do, since values are split
+ * on the bytes of commas, quotes and line breaks. Readers are not thread-safe.
+ */
+public class MappedCsvReader implements Closeable {
+  public static final int DEFAULT_WINDOW_SIZE = 64 << 20;
+  private static final byte COMMA = ',';
+  private static final byte QUOTE = '"';
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final byte[] UTF8_BOM = {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+  /** returned while reading a record that runs past the end of the window */
+  private static final int NEEDS_MORE = -1;
+  /** returned when there are no more records */
+  private static final int END = -2;
+  /** a value that can be viewed in place */
+  private static final byte PLAIN = 0;
+  /** a value with bytes outside of ASCII that have to be decoded */
+  private static final byte NON_ASCII = 1;
+  /** a quoted value with "" in it that has to be unescaped */
+  private static final byte ESCAPED = 2;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private final Charset charset;
+  private final boolean skipBom;
+  private final Row row = new Row();
+  private int windowSize;
+  private ByteBuffer window;
+  private long windowStart = 0;
+  private int position = 0;
+  private long recordNumber = 0;
+  private byte[] scratch = new byte[64];
+
+  /**
+   * Opens a file with the platform's default charset, the same one {@link java.io.FileReader} uses
+   * @param path the CSV file to read
+   * @throws IOException can occur when the file can't be opened or mapped
+   */
+  public MappedCsvReader(@Nonnull Path path) throws IOException {
+    this(path, Charset.defaultCharset(), DEFAULT_WINDOW_SIZE);
+  }
+
+  /**
+   * Opens a file
+   * @param path the CSV file to read
+   * @param charset the charset of the file, it has to be ASCII compatible
+   * @param windowSize the number of bytes to map at a time, the window grows if one record is bigger than this
+   * @throws IOException can occur when the file can't be opened or mapped
+   */
+  public MappedCsvReader(@Nonnull Path path, @Nonnull Charset charset, int windowSize) throws IOException {
+    Preconditions.checkArgument(isAsciiCompatible(charset), "Charset isn't ASCII compatible: " + charset);
+    Preconditions.checkArgument(windowSize > 0, "Window size must be positive");
+    this.charset = charset;
+    this.skipBom = charset.equals(StandardCharsets.UTF_8);
+    this.windowSize = windowSize;
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      this.fileSize = this.channel.size();
+      map(0);
+    } catch (IOException ex) {
+      this.channel.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * Reads the next record. The returned row is reused for every record, so it and the values got from
+   * {@link CsvRow#getChars(int)} are only good until this is called again.
+   * @return the next record or null if there are no more
+   * @throws IOException can occur when the file can't be mapped or a quoted value isn't closed properly
+   */
+  public @Nullable CsvRow next() throws IOException {
+    while (true) {
+      int end = readRecord(this.position);
+      if (end == END) {
+        return null;
+      }
+      if (end != NEEDS_MORE) {
+        this.position = end;
+        this.recordNumber += 1;
+        return this.row;
+      }
+      // the record runs past the window so map a new window starting at the record
+      if (this.position == 0) {
+        Preconditions.checkState(this.windowSize < Integer.MAX_VALUE, "Record " + (this.recordNumber + 1) + " is too big");
+        this.windowSize = (int)Math.min(this.windowSize * 2L, Integer.MAX_VALUE);
+      }
+      map(this.windowStart + this.position);
+    }
+  }
+
+  /**
+   * Gets the number of bytes of the file read so far, up to the end of the last record returned by {@link #next()}
+   */
+  public long getBytesRead() {
+    return this.windowStart + this.position;
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.channel.close();
+  }
+
+  private void map(long start) throws IOException {
+    this.window = this.channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(this.windowSize, this.fileSize - start));
+    this.windowStart = start;
+    this.position = 0;
+  }
+
+  /**
+   * Splits up the record starting at the given position of the window into the row
+   * @return the position after the record, {@link #NEEDS_MORE} if the record doesn't end in the window or {@link #END}
+   */
+  private int readRecord(int start) throws IOException {
+    ByteBuffer bytes = this.window;
+    int limit = bytes.limit();
+    boolean lastWindow = this.windowStart + limit == this.fileSize;
+    int p = start;
+    this.row.clear();
+
+    if (this.skipBom && this.windowStart == 0 && p == 0 && startsWithBom(bytes, limit)) {
+      p = UTF8_BOM.length;
+    }
+    while (p < limit && (bytes.get(p) == CR || bytes.get(p) == LF)) {
+      p += 1;
+    }
+    if (p >= limit) {
+      return lastWindow ? END : NEEDS_MORE;
+    }
+
+    while (true) {
+      if (p < limit && bytes.get(p) == QUOTE) {
+        int valueStart = p + 1;
+        byte flags = PLAIN;
+        p = valueStart;
+        while (true) {
+          if (p >= limit) {
+            if (lastWindow) {
+              throw new IOException("EOF reached before quoted value finished in record " + (this.recordNumber + 1));
+            }
+            return NEEDS_MORE;
+          }
+          byte b = bytes.get(p);
+          if (b == QUOTE) {
+            if (p + 1 >= limit && !lastWindow) {
+              return NEEDS_MORE;
+            }
+            if (p + 1 < limit && bytes.get(p + 1) == QUOTE) {
+              flags |= ESCAPED;
+              p += 2;
+              continue;
+            }
+            break;
+          }
+          if (b < 0) {
+            flags |= NON_ASCII;
+          }
+          p += 1;
+        }
+        this.row.add(valueStart, p, flags);
+        p += 1;
+
+        // only whitespace is allowed between the closing quote and the end of the value
+        while (true) {
+          if (p >= limit) {
+            return lastWindow ? p : NEEDS_MORE;
+          }
+          byte b = bytes.get(p);
+          if (b == COMMA) {
+            p += 1;
+            break;
+          }
+          if (b == CR || b == LF) {
+            return endOfLine(bytes, p, limit, lastWindow);
+          }
+          if (!isWhitespace(b)) {
+            throw new IOException("Invalid char between quoted value and delimiter in record " + (this.recordNumber + 1));
+          }
+          p += 1;
+        }
+        continue;
+      }
+
+      int valueStart = p;
+      byte flags = PLAIN;
+      while (p < limit) {
+        byte b = bytes.get(p);
+        if (b == COMMA || b == CR || b == LF) {
+          break;
+        }
+        if (b < 0) {
+          flags |= NON_ASCII;
+        }
+        p += 1;
+      }
+      if (p >= limit && !lastWindow) {
+        return NEEDS_MORE;
+      }
+      this.row.add(valueStart, p, flags);
+      if (p >= limit) {
+        return p;
+      }
+      if (bytes.get(p) == COMMA) {
+        p += 1;
+        continue;
+      }
+      return endOfLine(bytes, p, limit, lastWindow);
+    }
+  }
+
+  private static int endOfLine(ByteBuffer bytes, int p, int limit, boolean lastWindow) {
+    if (bytes.get(p) == CR) {
+      if (p + 1 >= limit) {
+        return lastWindow ? p + 1 : NEEDS_MORE;
+      }
+      return bytes.get(p + 1) == LF ? p + 2 : p + 1;
+    }
+    return p + 1;
+  }
+
+  private static boolean startsWithBom(ByteBuffer bytes, int limit) {
+    if (limit < UTF8_BOM.length) {
+      return false;
+    }
+    for (int i = 0; i < UTF8_BOM.length; i++) {
+      if (bytes.get(i) != UTF8_BOM[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The single byte characters other than line breaks that {@link Character#isWhitespace(char)} is true for
+   */
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == 0x0B || b == 0x0C || (b >= 0x1C && b <= 0x1F);
+  }
+
+  private static boolean isAsciiCompatible(Charset charset) {
+    byte[] ascii = new byte[128];
+    for (int i = 0; i < ascii.length; i++) {
+      ascii[i] = (byte)i;
+    }
+    return Arrays.equals(ascii, new String(ascii, StandardCharsets.ISO_8859_1).getBytes(charset));
+  }
+
+  private String decode(int start, int end, byte flags) {
+    ByteBuffer bytes = this.window;
+    if (this.scratch.length < end - start) {
+      this.scratch = new byte[Math.max(end - start, this.scratch.length * 2)];
+    }
+    int length = 0;
+    for (int i = start; i < end; i++) {
+      byte b = bytes.get(i);
+      this.scratch[length] = b;
+      length += 1;
+      if (b == QUOTE && (flags & ESCAPED) != 0) {
+        // the second quote of a "" pair
+        i += 1;
+      }
+    }
+    // ASCII is the same in every compatible charset and ISO-8859-1 is the cheapest to decode
+    return new String(this.scratch, 0, length, (flags & NON_ASCII) != 0 ? this.charset : StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * The record the reader is on, as the start and end positions of each value in the window
+   */
+  private class Row implements CsvRow {
+    private int size = 0;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private byte[] flags = new byte[16];
+    private String[] values = new String[16];
+    private ByteSlice[] slices = new ByteSlice[16];
+
+    private void clear() {
+      Arrays.fill(this.values, 0, this.size, null);
+      this.size = 0;
+    }
+
+    private void add(int start, int end, byte valueFlags) {
+      if (this.size == this.starts.length) {
+        int capacity = this.size * 2;
+        this.starts = Arrays.copyOf(this.starts, capacity);
+        this.ends = Arrays.copyOf(this.ends, capacity);
+        this.flags = Arrays.copyOf(this.flags, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+        this.slices = Arrays.copyOf(this.slices, capacity);
+      }
+      this.starts[this.size] = start;
+      this.ends[this.size] = end;
+      this.flags[this.size] = valueFlags;
+      this.size += 1;
+    }
+
+    @Override
+    public int size() {
+      return this.size;
+    }
+
+    @Override
+    public String get(int column) {
+      checkColumn(column);
+      String value = this.values[column];
+      if (value == null) {
+        value = decode(this.starts[column], this.ends[column], this.flags[column]);
+        this.values[column] = value;
+      }
+      return value;
+    }
+
+    @Override
+    public CharSequence getChars(int column) {
+      checkColumn(column);
+      if (this.flags[column] != PLAIN || this.values[column] != null) {
+        return get(column);
+      }
+      ByteSlice slice = this.slices[column];
+      if (slice == null) {
+        slice = new ByteSlice();
+        this.slices[column] = slice;
+      }
+      return slice.set(window, this.starts[column], this.ends[column]);
+    }
+
+    private void checkColumn(int column) {
+      if (column < 0 || column >= this.size) {
+        throw new ArrayIndexOutOfBoundsException(column);
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.pharmgkb.account.data;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Parses the date values allowed by {@link FieldPattern#DATE} into {@link LocalDate}s. Dates are read as M/D/Y or Y/M/D
+ * with either /'s or -'s, and years are taken literally so "17" is the year 17. Months and days outside their normal
+ * ranges roll over into the next month or year the same way a lenient {@link java.text.SimpleDateFormat} does.
+ *
+ * The same date values show up over and over in a cohort so parsed dates can be remembered in a bounded cache keyed by
+ * the raw value. A parser holds no other state, so one can be shared by all the threads processing data files.
+ */
+public class DateParser {
+  public static final int DEFAULT_CACHE_SIZE = 10_000;
+  /** a parser with the default cache size to share when no other parser is given */
+  public static final DateParser DEFAULT = new DateParser(DEFAULT_CACHE_SIZE);
+
+  private final Cache<String, Optional<LocalDate>> cache;
+
+  /**
+   * Makes a date parser
+   * @param cacheSize the most parsed values to remember, 0 to not remember any
+   */
+  public DateParser(long cacheSize) {
+    Preconditions.checkArgument(cacheSize >= 0, "Cache size can't be negative");
+    if (cacheSize > 0) {
+      this.cache = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    } else {
+      this.cache = null;
+    }
+  }
+
+  /**
+   * Parses a date value
+   * @param value a date value like "10-24-2019" or "2019/10/24"
+   * @return the date or null if the value isn't a date, including missing data
+   */
+  public @Nullable LocalDate parse(@Nullable String value) {
+    if (value == null) {
+      return null;
+    }
+    if (this.cache == null) {
+      return parseDate(value);
+    }
+
+    Optional<LocalDate> date = this.cache.getIfPresent(value);
+    if (date == null) {
+      date = Optional.ofNullable(parseDate(value));
+      this.cache.put(value, date);
+    }
+    return date.orElse(null);
+  }
+
+  /**
+   * Parses a date value without the cache. The value must be three runs of digits split by /'s or -'s, matching the
+   * same lengths as {@link FieldPattern#DATE}. When a value could be read either way, like "12/01/12", it's read as
+   * M/D/Y.
+   * @param value a date value
+   * @return the date or null if the value isn't a date
+   */
+  static @Nullable LocalDate parseDate(@Nonnull CharSequence value) {
+    int[] numbers = new int[3];
+    int[] lengths = new int[3];
+    int run = 0;
+    int i = 0;
+    while (true) {
+      int start = i;
+      int number = 0;
+      while (i < value.length() && i - start < 4 && value.charAt(i) >= '0' && value.charAt(i) <= '9') {
+        number = number * 10 + (value.charAt(i) - '0');
+        i += 1;
+      }
+      if (i == start) {
+        return null;
+      }
+      numbers[run] = number;
+      lengths[run] = i - start;
+      run += 1;
+      if (i == value.length()) {
+        break;
+      }
+      char separator = value.charAt(i);
+      if (run == 3 || (separator != '/' && separator != '-')) {
+        return null;
+      }
+      i += 1;
+    }
+    if (run != 3) {
+      return null;
+    }
+
+    if (isShortRun(lengths[0]) && isShortRun(lengths[1]) && isYearRun(lengths[2])) {
+      return lenientDate(numbers[2], numbers[0], numbers[1]);
+    } else if (isYearRun(lengths[0]) && isShortRun(lengths[1]) && isShortRun(lengths[2])) {
+      return lenientDate(numbers[0], numbers[1], numbers[2]);
+    }
+    return null;
+  }
+
+  private static boolean isShortRun(int length) {
+    return length == 1 || length == 2;
+  }
+
+  private static boolean isYearRun(int length) {
+    return length == 2 || length == 4;
+  }
+
+  /**
+   * Makes a date, rolling months and days that are out of range over into the following (or preceding) ones
+   */
+  private static LocalDate lenientDate(int year, int month, int day) {
+    if (month >= 1 && month <= 12 && day >= 1 && day <= 28) {
+      return LocalDate.of(year, month, day);
+    }
+    return LocalDate.of(year, 1, 1).plusMonths(month - 1).plusDays(day - 1);
+  }
+}
@@ -1,7 +1,6 @@
 package org.pharmgkb.account.data;
 
-import org.apache.commons.lang3.StringUtils;
-
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.function.Predicate;
 import java.util.regex.Pattern;
@@ -244,10 +243,21 @@ public enum Field {
   // end calculated columns
   ;
   
+  private static final long MAX_EXACT_MANTISSA = 100_000_000_000_000_000L;
+  private static final double[] POWERS_OF_TEN = new double[]{
+      1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19,
+      1e20, 1e21, 1e22
+  };
+
   private String displayName;
   private Pattern validationPattern = null;
+  private FieldValidator validator = null;
   private String rangeDescription = null;
   private Predicate<String> rangeTest = null;
+  private Float lowerRange = null;
+  private Float upperRange = null;
+  private boolean date = false;
+  private boolean number = false;
 
   /**
    * The constructor for values that don't require a range check
@@ -258,6 +268,10 @@ public enum Field {
     this.displayName = displayName;
     if (validation != null) {
       this.validationPattern = Pattern.compile(validation);
+      this.validator = FieldValidators.forPattern(this.validationPattern);
+      this.date = validation.equals(FieldPattern.DATE);
+      this.number = validation.equals(FieldPattern.DECIMAL) || validation.equals(FieldPattern.INTEGER) ||
+          validation.equals(FieldPattern.DAYS);
     }
   }
 
@@ -271,12 +285,14 @@ public enum Field {
     this.displayName = displayName;
     if (validation != null) {
       this.validationPattern = Pattern.compile(validation);
+      this.validator = FieldValidators.forPattern(this.validationPattern);
+      this.date = validation.equals(FieldPattern.DATE);
+      this.number = validation.equals(FieldPattern.DECIMAL) || validation.equals(FieldPattern.INTEGER) ||
+          validation.equals(FieldPattern.DAYS);
     }
+    this.lowerRange = lowerRange;
     this.rangeDescription = String.format("%f+", lowerRange);
-    this.rangeTest = (v) -> {
-      float value = Float.parseFloat(v);
-      return value >= lowerRange;
-    };
+    this.rangeTest = this::testRange;
   }
 
   /**
@@ -290,7 +306,13 @@ public enum Field {
     this.displayName = displayName;
     if (validation != null) {
       this.validationPattern = Pattern.compile(validation);
+      this.validator = FieldValidators.forPattern(this.validationPattern);
+      this.date = validation.equals(FieldPattern.DATE);
+      this.number = validation.equals(FieldPattern.DECIMAL) || validation.equals(FieldPattern.INTEGER) ||
+          validation.equals(FieldPattern.DAYS);
     }
+    this.lowerRange = lowerRange;
+    this.upperRange = upperRange;
     
     if (lowerRange == upperRange) {
       this.rangeDescription = String.format("%.0f", lowerRange);
@@ -298,18 +320,7 @@ public enum Field {
       this.rangeDescription = String.format("%.2f-%.2f", lowerRange, upperRange);
     }
     
-    this.rangeTest = (v) -> {
-      if (v.contains("-")) {
-        String[] tokens = v.split("-");
-        if (tokens.length != 2) throw new RuntimeException("Improperly formatted range");
-        float lowerValue = Float.parseFloat(StringUtils.strip(tokens[0]));
-        float upperValue = Float.parseFloat(StringUtils.strip(tokens[1]));
-        return lowerValue >= lowerRange && upperValue <= upperRange;
-      } else {
-        float value = Float.parseFloat(v);
-        return value >= lowerRange && value <= upperRange;
-      }
-    };
+    this.rangeTest = this::testRange;
   }
 
   /**
@@ -321,13 +332,121 @@ public enum Field {
   }
 
   /**
-   * The Predicate that determines if the fields value is within range, if null then no check is necessary
+   * The Predicate that determines if the fields value is within range, if null then no check is necessary. The
+   * Predicate throws a {@link NumberFormatException} for values that aren't numbers, use {@link #checkRange} to avoid
+   * the exception.
    * @return a {@link Predicate} that takes in a String and returns true if the value is within range
    */
   public Predicate<String> getRangeTest() {
     return this.rangeTest;
   }
 
+  /**
+   * Does this field have a range check
+   * @return true if values of this field should be checked with {@link #checkRange}
+   */
+  public boolean hasRange() {
+    return this.lowerRange != null;
+  }
+
+  /**
+   * Checks the given value against the range of this field. The number is read in place so nothing is allocated and
+   * nothing is thrown for bad values. Comma-grouped numbers like "1,500" are accepted. For fields with an upper bound
+   * a range like "2.0 - 3.0" is also accepted and is in range if it starts at or above the lower bound and ends at or
+   * below the upper bound.
+   * @param value a value that has passed {@link #validate(String)} and isn't missing data
+   * @return the {@link RangeResult}, always IN_RANGE if this field has no range check
+   */
+  public RangeResult checkRange(@Nonnull CharSequence value) {
+    if (this.lowerRange == null) {
+      return RangeResult.IN_RANGE;
+    }
+
+    int start = 0;
+    int end = value.length();
+    while (start < end && Character.isWhitespace(value.charAt(start))) start += 1;
+    while (end > start && Character.isWhitespace(value.charAt(end - 1))) end -= 1;
+
+    int dash = -1;
+    if (this.upperRange != null) {
+      for (int i = start; i < end; i++) {
+        if (value.charAt(i) == '-') {
+          dash = i;
+          break;
+        }
+      }
+    }
+
+    if (dash < 0) {
+      float number = parseNumber(value, start, end);
+      if (Float.isNaN(number)) {
+        return RangeResult.NOT_NUMERIC;
+      }
+      boolean inRange = number >= this.lowerRange && (this.upperRange == null || number <= this.upperRange);
+      return inRange ? RangeResult.IN_RANGE : RangeResult.OUT_OF_RANGE;
+    } else {
+      float lowerValue = parseNumber(value, start, dash);
+      float upperValue = parseNumber(value, dash + 1, end);
+      if (Float.isNaN(lowerValue) || Float.isNaN(upperValue)) {
+        return RangeResult.NOT_NUMERIC;
+      }
+      boolean inRange = lowerValue >= this.lowerRange && upperValue <= this.upperRange;
+      return inRange ? RangeResult.IN_RANGE : RangeResult.OUT_OF_RANGE;
+    }
+  }
+
+  private boolean testRange(String value) {
+    RangeResult result = checkRange(value);
+    if (result == RangeResult.NOT_NUMERIC) {
+      throw new NumberFormatException("Not a number: " + value);
+    }
+    return result == RangeResult.IN_RANGE;
+  }
+
+  /**
+   * Reads a plain decimal number like "1,234.5" from part of a value, surrounding whitespace is ignored
+   * @return the number as a float or NaN if that part of the value isn't a number
+   */
+  private static float parseNumber(CharSequence value, int start, int end) {
+    while (start < end && Character.isWhitespace(value.charAt(start))) start += 1;
+    while (end > start && Character.isWhitespace(value.charAt(end - 1))) end -= 1;
+
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean fraction = false;
+    for (int i = start; i < end; i++) {
+      char c = value.charAt(i);
+      if (c >= '0' && c <= '9') {
+        if (mantissa < MAX_EXACT_MANTISSA) {
+          mantissa = mantissa * 10 + (c - '0');
+          if (fraction) exponent -= 1;
+        } else if (!fraction) {
+          // digits past what a long holds only scale the integer part
+          exponent += 1;
+        }
+        digits += 1;
+      } else if (c == ',' && !fraction) {
+        // grouping separator, allowed by the DECIMAL and INTEGER patterns
+      } else if (c == '.' && !fraction) {
+        fraction = true;
+      } else {
+        return Float.NaN;
+      }
+    }
+    if (digits == 0) {
+      return Float.NaN;
+    }
+
+    double number = mantissa;
+    if (exponent < 0) {
+      number = -exponent < POWERS_OF_TEN.length ? number / POWERS_OF_TEN[-exponent] : number / Math.pow(10, -exponent);
+    } else if (exponent > 0) {
+      number = exponent < POWERS_OF_TEN.length ? number * POWERS_OF_TEN[exponent] : number * Math.pow(10, exponent);
+    }
+    return (float)number;
+  }
+
   /**
    * Gets the description of the range values that are valid
    * @return the description of the range values that are valid
@@ -336,6 +455,55 @@ public enum Field {
     return this.rangeDescription;
   }
 
+  /**
+   * Gets the lower bound (inclusive) of valid values
+   * @return the lower bound or null if this field has no range check
+   */
+  public @Nullable Float getLowerRange() {
+    return this.lowerRange;
+  }
+
+  /**
+   * Gets the upper bound (inclusive) of valid values
+   * @return the upper bound or null if this field has no upper bound
+   */
+  public @Nullable Float getUpperRange() {
+    return this.upperRange;
+  }
+
+  /**
+   * Gets the regex Pattern that values of this field are validated against
+   * @return the validation Pattern or null if this field is not validated
+   */
+  public @Nullable Pattern getValidationPattern() {
+    return this.validationPattern;
+  }
+
+  /**
+   * Gets the validator that values of this field are checked with, hand-written for the built-in patterns
+   * @return the validator or null if this field is not validated
+   */
+  public @Nullable FieldValidator getValidator() {
+    return this.validator;
+  }
+
+  /**
+   * Is this field validated as a date, see {@link FieldPattern#DATE}
+   * @return true if values of this field are dates or missing data
+   */
+  public boolean isDate() {
+    return this.date;
+  }
+
+  /**
+   * Is this field validated as a single number, see {@link FieldPattern#DECIMAL}, {@link FieldPattern#INTEGER} and
+   * {@link FieldPattern#DAYS}
+   * @return true if values of this field are numbers or missing data
+   */
+  public boolean isNumber() {
+    return this.number;
+  }
+
   /**
    * Does this field not have a validation pattern associated with it and is, thus, not check for validity
    * @return true if this field is not checked for validity
@@ -350,18 +518,38 @@ public enum Field {
    * @return true if this value is valid, false if it's invalid
    */
   public boolean validate(@Nullable String value) {
-    String strippedValue = StringUtils.stripToNull(value);
-    if (strippedValue == null) {
-      strippedValue = FieldPattern.MISSING_DATA;
-    }
-    if (FieldPattern.MD_SYNONYMS.matcher(strippedValue.toLowerCase()).matches()) {
-      strippedValue = FieldPattern.MISSING_DATA;
-    }
-    
-    if (this.validationPattern == null) {
+    return validate(value, FieldPattern.isMissing(value));
+  }
+
+  /**
+   * Validates the given "value" for this field when it's already known whether the value is missing data, so the
+   * value doesn't have to be checked for missing data synonyms again.
+   * @param value a value to check, it's read in place so it can be a view of a reader's buffer
+   * @param missing true if {@link FieldPattern#isMissing} is true for the value
+   * @return true if this value is valid, false if it's invalid
+   */
+  public boolean validate(@Nullable CharSequence value, boolean missing) {
+    if (this.validator == null) {
       return true;
+    } else if (missing) {
+      return this.validator.isValid(FieldPattern.MISSING_DATA);
     } else {
-      return this.validationPattern.matcher(strippedValue).matches();
+      return this.validator.isValid(strip(value));
+    }
+  }
+
+  /**
+   * Strips whitespace from both ends of a value like {@link org.apache.commons.lang3.StringUtils#strip(String)} does,
+   * giving back the same value when there's nothing to strip
+   */
+  private static CharSequence strip(CharSequence value) {
+    if (value == null) {
+      return null;
     }
+    int start = 0;
+    int end = value.length();
+    while (start < end && Character.isWhitespace(value.charAt(start))) start += 1;
+    while (end > start && Character.isWhitespace(value.charAt(end - 1))) end -= 1;
+    return start == 0 && end == value.length() ? value : value.subSequence(start, end);
   }
 }
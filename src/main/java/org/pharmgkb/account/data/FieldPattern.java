@@ -1,11 +1,9 @@
 package org.pharmgkb.account.data;
 
-import org.apache.commons.lang3.StringUtils;
-
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.Date;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -29,29 +27,61 @@ public class FieldPattern {
 
   public static final String MISSING_DATA = "MD";
   static final Pattern MD_SYNONYMS = Pattern.compile("(n/a|na|unk|unknown)");
-  private static final Pattern DATE_PATTERN = Pattern.compile(DATE);
   
+  /**
+   * Parses a date value with the shared {@link DateParser#DEFAULT} parser
+   * @param value a date value like "10-24-2019" or "2019-10-24"
+   * @return the date at the start of the day in the default time zone or null if the value isn't a date
+   */
   public static Date parseDate(String value) {
-    Matcher m = DATE_PATTERN.matcher(value);
-    if (!m.matches()) return null;
-    
-    try {
-      if (m.group(2) != null) {
-        return new SimpleDateFormat("MM/dd/yyyy").parse(m.group(1).replaceAll("-", "/"));
+    LocalDate date = DateParser.DEFAULT.parse(value);
+    if (date == null) return null;
+    return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+  }
+
+  /**
+   * Is the given value missing data. That's a blank value, "MD" or one of the {@link #MD_SYNONYMS} in any case,
+   * ignoring surrounding whitespace. The value is compared in place since most values are short and this is checked for
+   * every cell.
+   * @param value the value to check
+   * @return true if the value is missing data
+   */
+  public static boolean isMissing(@Nullable CharSequence value) {
+    if (value == null) {
+      return true;
+    }
+    int start = 0;
+    int end = value.length();
+    while (start < end && Character.isWhitespace(value.charAt(start))) start += 1;
+    while (end > start && Character.isWhitespace(value.charAt(end - 1))) end -= 1;
+
+    switch (end - start) {
+      case 0:
+        return true;
+      case 2:
+        return (value.charAt(start) == 'M' && value.charAt(start + 1) == 'D') || equalsIgnoreCase(value, start, "na");
+      case 3:
+        return equalsIgnoreCase(value, start, "n/a") || equalsIgnoreCase(value, start, "unk");
+      case 7:
+        return equalsIgnoreCase(value, start, "unknown");
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Compares part of a value to a lower case ASCII word, ignoring the case of the value
+   */
+  private static boolean equalsIgnoreCase(CharSequence value, int start, String lowerCaseWord) {
+    for (int i = 0; i < lowerCaseWord.length(); i++) {
+      char c = value.charAt(start + i);
+      if (c >= 'A' && c <= 'Z') {
+        c = (char)(c + ('a' - 'A'));
       }
-      if (m.group(4) != null) {
-        return new SimpleDateFormat("yyyy/MM/dd").parse(m.group(4).replaceAll("-", "/"));
+      if (c != lowerCaseWord.charAt(i)) {
+        return false;
       }
-      return null;
-    } catch (ParseException e) {
-      throw new RuntimeException("Error when parsing date value", e);
     }
-  }
-  
-  public static boolean isMissing(String value) {
-    String strippedValue = StringUtils.strip(value);
-    return StringUtils.isBlank(strippedValue) ||
-        strippedValue.equals(MISSING_DATA) ||
-        MD_SYNONYMS.matcher(strippedValue.toLowerCase()).matches();
+    return true;
   }
 }
@@ -0,0 +1,19 @@
+package org.pharmgkb.account.data;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Tests whether a value has the right form for a {@link Field}. The built-in {@link FieldPattern} types have
+ * hand-written validators that scan the characters directly, custom patterns fall back to matching the regex.
+ */
+@FunctionalInterface
+public interface FieldValidator {
+
+  /**
+   * Tests the given value. The value is expected to be stripped and to have missing data synonyms already converted
+   * to "MD".
+   * @param value the value to test
+   * @return true if the value matches the field's pattern
+   */
+  boolean isValid(@Nonnull CharSequence value);
+}
@@ -0,0 +1,262 @@
+package org.pharmgkb.account.data;
+
+import javax.annotation.Nonnull;
+import java.util.regex.Pattern;
+
+/**
+ * Hand-written {@link FieldValidator}s for the built-in {@link FieldPattern} regexes. Each one gives exactly the same
+ * result as matching the whole value against its regex but scans the characters directly, since cell validation is
+ * the innermost loop of the whole tool.
+ */
+class FieldValidators {
+
+  private FieldValidators() {}
+
+  /**
+   * Gets the validator to use for a validation regex
+   * @param pattern the compiled regex, either one of the {@link FieldPattern} constants or a custom one
+   * @return a hand-written validator for a built-in pattern, otherwise one that matches the given pattern
+   */
+  static FieldValidator forPattern(@Nonnull Pattern pattern) {
+    switch (pattern.pattern()) {
+      case FieldPattern.ANY:
+        return FieldValidators::isAny;
+      case FieldPattern.YESNONA:
+        return FieldValidators::isYesNoNa;
+      case FieldPattern.CHECKED:
+        return FieldValidators::isChecked;
+      case FieldPattern.DECIMAL:
+        return FieldValidators::isDecimal;
+      case FieldPattern.DECIMAL_RANGE:
+        return FieldValidators::isDecimalRange;
+      case FieldPattern.INTEGER:
+      case FieldPattern.DAYS:
+        return FieldValidators::isInteger;
+      case FieldPattern.DATE:
+        return FieldValidators::isDate;
+      case FieldPattern.TIME_OF_DAY:
+        return FieldValidators::isTimeOfDay;
+      default:
+        return (value) -> pattern.matcher(value).matches();
+    }
+  }
+
+  /**
+   * "^.*$" matches anything without a line terminator in it
+   */
+  static boolean isAny(CharSequence value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * "^([YN]|NA|MD)$"
+   */
+  static boolean isYesNoNa(CharSequence value) {
+    switch (value.length()) {
+      case 1:
+        return value.charAt(0) == 'Y' || value.charAt(0) == 'N';
+      case 2:
+        return (value.charAt(0) == 'N' && value.charAt(1) == 'A') || isMissingData(value);
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * "^(Checked|Unchecked|MD)$"
+   */
+  static boolean isChecked(CharSequence value) {
+    return contentEquals(value, "Checked") || contentEquals(value, "Unchecked") || isMissingData(value);
+  }
+
+  /**
+   * "^([\d,]+(\.\d+)?|MD)$"
+   */
+  static boolean isDecimal(CharSequence value) {
+    int end = scanDigitsAndCommas(value, 0);
+    if (end == 0) {
+      return isMissingData(value);
+    }
+    if (end == value.length()) {
+      return true;
+    }
+    return value.charAt(end) == '.' && scanDecimalDigits(value, end + 1) == value.length() && end + 1 < value.length();
+  }
+
+  /**
+   * "^([\d,]+|MD)$", also used for DAYS which is the same without the anchors
+   */
+  static boolean isInteger(CharSequence value) {
+    if (value.length() == 0) {
+      return false;
+    }
+    return scanDigitsAndCommas(value, 0) == value.length() || isMissingData(value);
+  }
+
+  /**
+   * "^(\d+(\.\d+)?(\s*-\s*\d+(\.\d+)?)?|MD)$"
+   */
+  static boolean isDecimalRange(CharSequence value) {
+    int end = scanNumber(value, 0);
+    if (end < 0) {
+      return isMissingData(value);
+    }
+    if (end == value.length()) {
+      return true;
+    }
+    end = skipWhitespace(value, end);
+    if (end == value.length() || value.charAt(end) != '-') {
+      return false;
+    }
+    end = skipWhitespace(value, end + 1);
+    return scanNumber(value, end) == value.length();
+  }
+
+  /**
+   * "^((\d{1,2}[/-]\d{1,2}[/-](\d{2}|\d{4}))|((\d{2}|\d{4})[/-]\d{1,2}[/-]\d{1,2})|MD)$" which is three runs of digits
+   * split by slashes or dashes with either month first or year first
+   */
+  static boolean isDate(CharSequence value) {
+    int[] runs = new int[3];
+    int run = 0;
+    int position = 0;
+    while (true) {
+      int end = scanDecimalDigits(value, position);
+      if (end == position) {
+        return run == 0 && isMissingData(value);
+      }
+      runs[run] = end - position;
+      run += 1;
+      if (end == value.length()) {
+        break;
+      }
+      char separator = value.charAt(end);
+      if (run == 3 || (separator != '/' && separator != '-')) {
+        return false;
+      }
+      position = end + 1;
+    }
+    if (run != 3) {
+      return false;
+    }
+
+    boolean monthFirst = isShortRun(runs[0]) && isShortRun(runs[1]) && isYearRun(runs[2]);
+    boolean yearFirst = isYearRun(runs[0]) && isShortRun(runs[1]) && isShortRun(runs[2]);
+    return monthFirst || yearFirst;
+  }
+
+  /**
+   * "(\d{1,2}(:\d{2})?\s*(am|AM|pm|PM)|\d{2}:\d{2}|MD)"
+   */
+  static boolean isTimeOfDay(CharSequence value) {
+    int length = value.length();
+    int hourEnd = scanDecimalDigits(value, 0);
+    if (hourEnd == 0) {
+      return isMissingData(value);
+    }
+    if (hourEnd > 2) {
+      return false;
+    }
+
+    int position = hourEnd;
+    if (position < length && value.charAt(position) == ':') {
+      int minuteEnd = scanDecimalDigits(value, position + 1);
+      if (minuteEnd - (position + 1) != 2) {
+        return false;
+      }
+      if (minuteEnd == length) {
+        // only the 24 hour form "\d{2}:\d{2}" can end without am or pm
+        return hourEnd == 2;
+      }
+      position = minuteEnd;
+    }
+
+    position = skipWhitespace(value, position);
+    if (length - position != 2) {
+      return false;
+    }
+    char first = value.charAt(position);
+    char second = value.charAt(position + 1);
+    return ((first == 'a' || first == 'p') && second == 'm') || ((first == 'A' || first == 'P') && second == 'M');
+  }
+
+  private static boolean isShortRun(int length) {
+    return length == 1 || length == 2;
+  }
+
+  private static boolean isYearRun(int length) {
+    return length == 2 || length == 4;
+  }
+
+  private static boolean isMissingData(CharSequence value) {
+    return value.length() == 2 && value.charAt(0) == 'M' && value.charAt(1) == 'D';
+  }
+
+  private static boolean contentEquals(CharSequence value, String expected) {
+    if (value.length() != expected.length()) {
+      return false;
+    }
+    for (int i = 0; i < expected.length(); i++) {
+      if (value.charAt(i) != expected.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  /**
+   * Scans "\d+(\.\d+)?" from the given position
+   * @return the index after the number or -1 if there's no number at the position
+   */
+  private static int scanNumber(CharSequence value, int position) {
+    int end = scanDecimalDigits(value, position);
+    if (end == position) {
+      return -1;
+    }
+    if (end + 1 < value.length() && value.charAt(end) == '.' && isDigit(value.charAt(end + 1))) {
+      end = scanDecimalDigits(value, end + 1);
+    }
+    return end;
+  }
+
+  private static int scanDecimalDigits(CharSequence value, int position) {
+    int i = position;
+    while (i < value.length() && isDigit(value.charAt(i))) {
+      i += 1;
+    }
+    return i;
+  }
+
+  private static int scanDigitsAndCommas(CharSequence value, int position) {
+    int i = position;
+    while (i < value.length() && (isDigit(value.charAt(i)) || value.charAt(i) == ',')) {
+      i += 1;
+    }
+    return i;
+  }
+
+  /**
+   * Skips the characters matched by the regex "\s", which is narrower than {@link Character#isWhitespace(char)}
+   */
+  private static int skipWhitespace(CharSequence value, int position) {
+    int i = position;
+    while (i < value.length()) {
+      char c = value.charAt(i);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\u000B' && c != '\f' && c != '\r') {
+        break;
+      }
+      i += 1;
+    }
+    return i;
+  }
+}
@@ -0,0 +1,340 @@
+package org.pharmgkb.account.data;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Makes up values for a {@link Field} based on its validation pattern and range. This is used to build synthetic data
+ * files for load testing since real subject data can't be used for that.
+ *
+ * Values can be made to be valid, invalid, out of range or missing so the generated files exercise all the paths the
+ * validation takes on real site data.
+ */
+public class FieldValueGenerator {
+  private static final String[] MISSING_VALUES = new String[]{"MD", "", "unk", "n/a", "NA", "Unknown"};
+  private static final String[] WORDS = new String[]{"aspirin", "none", "hypertension", "see notes", "stable", "metformin", "follow up", "lisinopril"};
+  private static final float DEFAULT_UPPER_RANGE = 100;
+  private static final float LOWER_ONLY_SPAN = 80;
+  private static final int MAX_FOLLOW_UP_DAYS = 1825;
+
+  private final Random random;
+
+  /**
+   * Constructor
+   * @param random the source of randomness, seed it to get the same values on every run
+   */
+  public FieldValueGenerator(@Nonnull Random random) {
+    this.random = random;
+  }
+
+  /**
+   * Makes a value that passes both validation and the range check of the given field
+   * @param field the field to make a value for
+   * @param enrollmentDate the enrollment date of the subject, other dates are made relative to it
+   * @return a valid String value
+   */
+  public String makeValid(@Nonnull Field field, @Nonnull LocalDate enrollmentDate) {
+    Pattern pattern = field.getValidationPattern();
+    if (pattern == null) {
+      return pickWord();
+    }
+
+    switch (pattern.pattern()) {
+      case FieldPattern.YESNONA:
+        return pick("Y", "N", "N", "NA");
+      case FieldPattern.CHECKED:
+        return random.nextInt(4) == 0 ? "Checked" : "Unchecked";
+      case FieldPattern.DECIMAL:
+        return formatDecimal(pickHundredths(field));
+      case FieldPattern.DECIMAL_RANGE:
+        if (random.nextInt(4) == 0) {
+          int lower = pickHundredths(field);
+          int upper = lower + random.nextInt(Math.max(1, (int)Math.floor(upperRangeOf(field) * 100) - lower + 1));
+          return formatDecimal(lower) + "-" + formatDecimal(upper);
+        }
+        return formatDecimal(pickHundredths(field));
+      case FieldPattern.INTEGER:
+        return formatInteger(Math.round(pickNumber(field)));
+      case FieldPattern.DAYS:
+        return formatInteger(random.nextInt(MAX_FOLLOW_UP_DAYS));
+      case FieldPattern.DATE:
+        return formatDate(makeDate(field, enrollmentDate));
+      case FieldPattern.TIME_OF_DAY:
+        return String.format("%d:%02d %s", 1 + random.nextInt(12), random.nextInt(60), pick("am", "pm", "AM", "PM"));
+      case FieldPattern.ANY:
+        return pickWord();
+      default:
+        return sample(pattern.pattern());
+    }
+  }
+
+  /**
+   * Makes a value that passes validation but fails the range check of the given field
+   * @param field the field to make a value for
+   * @return an out of range String value or null if the field has no range check
+   */
+  public @Nullable String makeOutOfRange(@Nonnull Field field) {
+    Float lower = field.getLowerRange();
+    if (lower == null) {
+      return null;
+    }
+    Float upper = field.getUpperRange();
+
+    boolean decimal = field.getValidationPattern() != null && !field.getValidationPattern().pattern().equals(FieldPattern.INTEGER);
+    float value;
+    if (upper != null && (lower < 1 || random.nextBoolean())) {
+      value = upper + 1 + random.nextInt(Math.max(1, Math.round(upper / 2)));
+    } else if (lower >= 1) {
+      value = random.nextInt(Math.round(lower));
+    } else {
+      return null;
+    }
+    return decimal ? formatDecimal(Math.round(value * 100)) : formatInteger(Math.round(value));
+  }
+
+  /**
+   * Makes a value that fails validation for the given field
+   * @param field the field to make a value for
+   * @return an invalid String value or null if every value is valid for this field
+   */
+  public @Nullable String makeInvalid(@Nonnull Field field) {
+    Pattern pattern = field.getValidationPattern();
+    if (pattern == null) {
+      return null;
+    }
+
+    switch (pattern.pattern()) {
+      case FieldPattern.YESNONA:
+        return pick("Yes", "no", "maybe");
+      case FieldPattern.CHECKED:
+        return pick("checked", "x", "TRUE");
+      case FieldPattern.DECIMAL:
+      case FieldPattern.DECIMAL_RANGE:
+        return pick("12.3.4", "ten", "~5", "2-3-4");
+      case FieldPattern.INTEGER:
+        return pick("12.5", "twelve", "<10");
+      case FieldPattern.DAYS:
+        return pick("3 months", "1 yr", "2.5");
+      case FieldPattern.DATE:
+        return pick("1/2/201", "Jan 5 2019", "20190105", "2019");
+      case FieldPattern.TIME_OF_DAY:
+        return pick("noon", "morning", "1030");
+      case FieldPattern.ANY:
+        return null;
+      default:
+        return pick("?", "see notes");
+    }
+  }
+
+  /**
+   * Makes one of the ways sites say a value is missing or unknown
+   * @return a missing data value
+   */
+  public String makeMissing() {
+    return pick(MISSING_VALUES);
+  }
+
+  private LocalDate makeDate(Field field, LocalDate enrollmentDate) {
+    switch (field) {
+      case ENROLLMENT_DATE:
+        return enrollmentDate;
+      case DATE_OF_BIRTH:
+        return enrollmentDate.minusYears(18 + random.nextInt(72)).minusDays(random.nextInt(365));
+      default:
+        return enrollmentDate.plusDays(random.nextInt(MAX_FOLLOW_UP_DAYS));
+    }
+  }
+
+  private float pickNumber(Field field) {
+    Float lower = field.getLowerRange();
+    float min = lower == null ? 0 : lower;
+    return min + (upperRangeOf(field) - min) * random.nextFloat();
+  }
+
+  /**
+   * Picks a number in range for the field in hundredths, rounded inwards so it's still in range once it's formatted
+   */
+  private int pickHundredths(Field field) {
+    Float lower = field.getLowerRange();
+    int min = lower == null ? 0 : (int)Math.ceil(lower * 100);
+    int max = (int)Math.floor(upperRangeOf(field) * 100);
+    return min + random.nextInt(Math.max(1, max - min + 1));
+  }
+
+  private float upperRangeOf(Field field) {
+    if (field.getUpperRange() != null) {
+      return field.getUpperRange();
+    }
+    if (field.getLowerRange() != null) {
+      return field.getLowerRange() + LOWER_ONLY_SPAN;
+    }
+    return DEFAULT_UPPER_RANGE;
+  }
+
+  private String pickWord() {
+    return random.nextInt(3) == 0 ? "" : pick(WORDS);
+  }
+
+  private String pick(String... values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static String formatDecimal(int hundredths) {
+    if (hundredths % 100 == 0) {
+      return String.valueOf(hundredths / 100);
+    }
+    if (hundredths % 10 == 0) {
+      return hundredths / 100 + "." + (hundredths % 100) / 10;
+    }
+    return String.format("%d.%02d", hundredths / 100, hundredths % 100);
+  }
+
+  private String formatInteger(int value) {
+    if (value >= 1000 && random.nextInt(4) == 0) {
+      return String.format("%d,%03d", value / 1000, value % 1000);
+    }
+    return String.valueOf(value);
+  }
+
+  private static String formatDate(LocalDate date) {
+    return date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + date.getYear();
+  }
+
+  /**
+   * Makes a String that matches a simple regex like the custom ones used in {@link Field}. This understands anchors,
+   * groups with alternatives, character classes, \d and the +, *, ? quantifiers. The "MD" alternative is skipped when
+   * there are others to choose from since missing data is made separately.
+   */
+  private String sample(String regex) {
+    StringBuilder value = new StringBuilder();
+    sample(regex, 0, regex.length(), value);
+    return value.toString();
+  }
+
+  private void sample(String regex, int start, int end, StringBuilder value) {
+    List<int[]> alternatives = new ArrayList<>();
+    int depth = 0;
+    int alternativeStart = start;
+    for (int i = start; i < end; i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i += 1;
+      } else if (c == '(' || c == '[') {
+        depth += 1;
+      } else if (c == ')' || c == ']') {
+        depth -= 1;
+      } else if (c == '|' && depth == 0) {
+        addAlternative(regex, alternatives, alternativeStart, i);
+        alternativeStart = i + 1;
+      }
+    }
+    addAlternative(regex, alternatives, alternativeStart, end);
+    if (alternatives.isEmpty()) {
+      alternatives.add(new int[]{start, end});
+    }
+    int[] alternative = alternatives.get(random.nextInt(alternatives.size()));
+
+    for (int i = alternative[0]; i < alternative[1]; ) {
+      char c = regex.charAt(i);
+      int atomEnd;
+      if (c == '(') {
+        atomEnd = closingIndex(regex, i, '(', ')') + 1;
+      } else if (c == '[') {
+        atomEnd = regex.indexOf(']', i) + 1;
+      } else if (c == '\\') {
+        atomEnd = i + 2;
+      } else {
+        atomEnd = i + 1;
+      }
+
+      int repeats = 1;
+      int next = atomEnd;
+      if (atomEnd < alternative[1]) {
+        switch (regex.charAt(atomEnd)) {
+          case '+':
+            repeats = 1 + random.nextInt(3);
+            next += 1;
+            break;
+          case '*':
+            repeats = random.nextInt(3);
+            next += 1;
+            break;
+          case '?':
+            repeats = random.nextInt(2);
+            next += 1;
+            break;
+          default:
+        }
+      }
+
+      for (int n = 0; n < repeats; n++) {
+        sampleAtom(regex, i, atomEnd, value);
+      }
+      i = next;
+    }
+  }
+
+  private void addAlternative(String regex, List<int[]> alternatives, int start, int end) {
+    if (!regex.substring(start, end).equals(FieldPattern.MISSING_DATA)) {
+      alternatives.add(new int[]{start, end});
+    }
+  }
+
+  private void sampleAtom(String regex, int start, int end, StringBuilder value) {
+    char c = regex.charAt(start);
+    switch (c) {
+      case '^':
+      case '$':
+        break;
+      case '(':
+        sample(regex, start + 1, end - 1, value);
+        break;
+      case '[':
+        List<Character> choices = new ArrayList<>();
+        for (int i = start + 1; i < end - 1; i++) {
+          if (i + 2 < end - 1 && regex.charAt(i + 1) == '-') {
+            for (char r = regex.charAt(i); r <= regex.charAt(i + 2); r++) {
+              choices.add(r);
+            }
+            i += 2;
+          } else {
+            choices.add(regex.charAt(i));
+          }
+        }
+        value.append(choices.get(random.nextInt(choices.size())));
+        break;
+      case '\\':
+        char escaped = regex.charAt(start + 1);
+        value.append(escaped == 'd' ? (char)('0' + random.nextInt(10)) : escaped);
+        break;
+      case '.':
+        value.append((char)('a' + random.nextInt(26)));
+        break;
+      default:
+        value.append(c);
+    }
+  }
+
+  private static int closingIndex(String regex, int openIndex, char open, char close) {
+    int depth = 0;
+    for (int i = openIndex; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i += 1;
+      } else if (c == open) {
+        depth += 1;
+      } else if (c == close) {
+        depth -= 1;
+        if (depth == 0) {
+          return i;
+        }
+      }
+    }
+    throw new IllegalArgumentException("Unbalanced pattern " + regex);
+  }
+}
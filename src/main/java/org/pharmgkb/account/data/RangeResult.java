@@ -0,0 +1,10 @@
+package org.pharmgkb.account.data;
+
+/**
+ * The result of checking a value against the range of a {@link Field}
+ */
+public enum RangeResult {
+  IN_RANGE,
+  OUT_OF_RANGE,
+  NOT_NUMERIC
+}
@@ -1,32 +1,48 @@
 package org.pharmgkb.account.file;
 
-import com.google.common.collect.LinkedListMultimap;
-import com.google.common.collect.Multimap;
-import org.apache.commons.collections4.Bag;
-import org.apache.commons.collections4.bag.HashBag;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.time.DateUtils;
 import org.pharmgkb.account.ExcelUtils;
+import org.pharmgkb.account.columnar.ColumnSchema;
+import org.pharmgkb.account.columnar.ColumnType;
+import org.pharmgkb.account.columnar.ColumnarWriter;
+import org.pharmgkb.account.csv.CopiedCsvRow;
+import org.pharmgkb.account.csv.CsvRow;
+import org.pharmgkb.account.csv.MappedCsvReader;
+import org.pharmgkb.account.data.DateParser;
 import org.pharmgkb.account.data.Field;
 import org.pharmgkb.account.data.FieldPattern;
+import org.pharmgkb.account.data.RangeResult;
+import org.pharmgkb.account.output.FileOutputSink;
+import org.pharmgkb.account.output.OutputSink;
+import org.pharmgkb.account.report.FieldProfiler;
+import org.pharmgkb.account.report.FileProgress;
+import org.pharmgkb.account.report.FileReport;
+import org.pharmgkb.account.report.Phase;
+import org.pharmgkb.account.report.PhaseTimer;
+import org.pharmgkb.account.validation.ValidationErrorKind;
+import org.pharmgkb.account.validation.ValidationResults;
+import org.pharmgkb.account.validation.ValidationSink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 
 import javax.annotation.Nonnull;
-import java.io.FileReader;
-import java.io.FileWriter;
+import javax.annotation.Nullable;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import static org.pharmgkb.account.data.FieldPattern.MISSING_DATA;
 import static org.pharmgkb.account.data.FieldPattern.isMissing;
@@ -41,18 +57,123 @@ public abstract class AbstractDataFile {
   private static final ResourceBundle sf_descriptions = ResourceBundle.getBundle("fields");
   private static final String CHECKED = "Checked";
   private static final String LIST_SEPARATOR = "; ";
+  private static final int CHUNK_SPLIT_THRESHOLD = 32;
+  /** the number of validation errors collected before they're sent to the sink when streaming */
+  private static final int RESULTS_BATCH_SIZE = 4096;
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+  /**
+   * goes into the row cache schema hash, bump this whenever a change to validation or the output code changes the
+   * errors or processed row of a record, so rows cached by the old code aren't reused
+   */
+  private static final int OUTPUT_LOGIC_VERSION = 1;
 
-  private final List<CSVRecord> m_records = new ArrayList<>();
-  private final Multimap<Field, Integer> fieldIndexMap = LinkedListMultimap.create();
+  private static final int FIELD_COUNT = Field.values().length;
+  private static final int NOT_IN_DATASET = -2;
+  private static final int NO_OCCURRENCE = -1;
+
+  /** the dates that each time-to-event output field counts the days to from enrollment */
+  private static final Map<Field, Field> sf_eventDateFields = ImmutableMap.<Field, Field>builder()
+      .put(Field.TIME_TO_BLEEDING_EVENT, Field.DATE_OF_BLEEDING_EVENT)
+      .put(Field.TIME_TO_DEATH, Field.DATE_OF_DEATH)
+      .put(Field.TIME_TO_EMBOLIC_EVENT, Field.DATE_OF_EMBOLIC_EVENT)
+      .put(Field.DURATION_FOLLOWUP, Field.DATE_OF_LAST_FOLLOW_UP)
+      .put(Field.TIME_TO_MACE, Field.DATE_OF_MACE)
+      .put(Field.TIME_TO_STEMI, Field.DATE_OF_THE_FIRST_STEMI)
+      .put(Field.TIME_TO_NSTEMI, Field.DATE_OF_THE_FIRST_NSTEMI)
+      .put(Field.TIME_TO_ANGINA, Field.DATE_OF_THE_FIRST_UNSTABLE_ANGINA_DURING_FOLLOW_UP)
+      .put(Field.TIME_TO_THROMB, Field.DATE_OF_THROMBOSIS)
+      .put(Field.TIME_TO_CARD_DEATH, Field.DATE_OF_CARDIAC_DEATH)
+      .put(Field.TIME_TO_MI, Field.DATE_OF_THE_FIRST_MI)
+      .put(Field.TIME_TO_ACS, Field.DATE_OF_THE_FIRST_ACS)
+      .put(Field.TIME_TO_ISC_STROKE, Field.DATE_OF_ISCHEMIC_STROKE)
+      .put(Field.TIME_TO_HEM_STROKE, Field.DATE_OF_HEMORRHAGIC_STROKE)
+      .build();
+  /** the checkbox choices, and their labels in output order, that are joined into each indication output field */
+  private static final Map<Field, Map<Field, String>> sf_choiceLabels = ImmutableMap.<Field, Map<Field, String>>builder()
+      .put(Field.EMBOLIC_EVENT, ImmutableMap.<Field, String>builder()
+          .put(Field.EMBOLIC_EVENT_CHOICE_0, "None")
+          .put(Field.EMBOLIC_EVENT_CHOICE_1, "Stroke")
+          .put(Field.EMBOLIC_EVENT_CHOICE_2, "DVT")
+          .put(Field.EMBOLIC_EVENT_CHOICE_3, "PE")
+          .put(Field.EMBOLIC_EVENT_CHOICE_4, "DVT/PE")
+          .put(Field.EMBOLIC_EVENT_CHOICE_5, "Myocardial Infarction")
+          .put(Field.EMBOLIC_EVENT_CHOICE_MD, FieldPattern.MISSING_DATA)
+          .build())
+      .put(Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT, ImmutableMap.<Field, String>builder()
+          .put(Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_1, "Coronary artery disease")
+          .put(Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_2, "Peripheral arterial disease")
+          .put(Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_3, "Ischemic stroke")
+          .put(Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_4, "Acute cornary syndrome")
+          .put(Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_5, "Other")
+          .build())
+      .put(Field.INDICATION_FOR_NOAC_TREATMENT, ImmutableMap.<Field, String>builder()
+          .put(Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_1, "DVT")
+          .put(Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_2, "PE")
+          .put(Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_3, "DVT/PE")
+          .put(Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_4, "Atrial Fiberlation")
+          .put(Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_5, "Other")
+          .put(Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_MD, FieldPattern.MISSING_DATA)
+          .build())
+      .put(Field.INDICATION_FOR_WARFARIN_TREATMENT, ImmutableMap.<Field, String>builder()
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_1, "DVT")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_2, "PE")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_3, "Afib/flutter")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_4, "Heart Valve")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_5, "Cardiomyopathy/LV Dilation")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_6, "Stroke")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_7, "Post-Orthopedic")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_8, "Other")
+          .put(Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_MD, FieldPattern.MISSING_DATA)
+          .build())
+      .put(Field.WHICH_NOAC_DRUG_USED, ImmutableMap.<Field, String>builder()
+          .put(Field.WHICH_NOAC_DRUG_USED_CHOICE_1, "apixaban")
+          .put(Field.WHICH_NOAC_DRUG_USED_CHOICE_2, "rivaroxaban")
+          .put(Field.WHICH_NOAC_DRUG_USED_CHOICE_3, "edoxaban")
+          .put(Field.WHICH_NOAC_DRUG_USED_CHOICE_4, "dabigatran")
+          .build())
+      .build();
+
+  /** the records kept by {@link #validate()} for {@link #makeProcessedFile()}, null when there aren't any */
+  private ColumnarDataset m_dataset;
+  /** the column indexes each field is found at, in order, indexed by {@link Field#ordinal()} */
+  private final int[][] m_fieldColumns = new int[FIELD_COUNT][];
+  /** the compiled cells of a processed output row, one per output field */
+  private final CellEmitter[] m_outputPlan;
+  /** what was measured while this file was worked on */
+  private FileReport m_report = new FileReport();
+  /** how far through the data file the current pass is */
+  private final FileProgress m_progress = new FileProgress();
 
   abstract Field[] getExpectedFields();
   abstract Field[] getOutputFields();
   abstract String getOutputFilename();
   
   AbstractDataFile() {
-    for (int i = 0; i < getExpectedFields().length; i++) {
-      fieldIndexMap.put(getExpectedFields()[i], i);
+    // resolve every field occurrence to a column index once so records don't need to be searched for them
+    Field[] expectedFields = getExpectedFields();
+    int[] counts = new int[FIELD_COUNT];
+    for (Field field : expectedFields) {
+      counts[field.ordinal()] += 1;
+    }
+    for (int i = 0; i < FIELD_COUNT; i++) {
+      m_fieldColumns[i] = new int[counts[i]];
+    }
+    Arrays.fill(counts, 0);
+    for (int i = 0; i < expectedFields.length; i++) {
+      int ordinal = expectedFields[i].ordinal();
+      m_fieldColumns[ordinal][counts[ordinal]] = i;
+      counts[ordinal] += 1;
     }
+
+    m_outputPlan = compileOutputPlan();
+  }
+
+  private int findColumn(Field field, int occurrence) {
+    int[] columns = m_fieldColumns[field.ordinal()];
+    if (columns.length == 0) {
+      return NOT_IN_DATASET;
+    }
+    return occurrence < columns.length ? columns[occurrence] : NO_OCCURRENCE;
   }
 
   private List<String> makeOutputHeader() {
@@ -71,210 +192,581 @@ public abstract class AbstractDataFile {
     return cells;
   }
 
-  private List<String> makeOutputRow(CSVRecord record) {
-    List<String> cells = new ArrayList<>();
-    Bag<Field> fieldBag = new HashBag<>();
-
+  /**
+   * Makes the schema of the columnar export, the same header and description the processed file starts with plus the
+   * type of each column
+   */
+  private List<ColumnSchema> makeColumnSchemas() {
+    List<ColumnSchema> columns = new ArrayList<>();
     for (Field field : getOutputFields()) {
-      int seenCount = fieldBag.getCount(field);
-      List<String> indications = new ArrayList<>();
-
-      switch (field) {
-        case PROJECT_SITE:
-          String key = siteKeyMap.get(getRecordValue(record, Field.PROJECT_SITE));
-          if (StringUtils.isBlank(key)) throw new RuntimeException("Project site not mapped: " + getRecordValue(record, Field.PROJECT_SITE));
-          cells.add(key);
-          break;
-        case TIME_TO_BLEEDING_EVENT:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_BLEEDING_EVENT, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_DEATH:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_DEATH, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_EMBOLIC_EVENT:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_EMBOLIC_EVENT, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case DURATION_FOLLOWUP:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_LAST_FOLLOW_UP, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_MACE:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_MACE, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_STEMI:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_THE_FIRST_STEMI, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_NSTEMI:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_THE_FIRST_NSTEMI, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_ANGINA:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_THE_FIRST_UNSTABLE_ANGINA_DURING_FOLLOW_UP, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_THROMB:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_THROMBOSIS, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_CARD_DEATH:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_CARDIAC_DEATH, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_MI:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_THE_FIRST_MI, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_ACS:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_THE_FIRST_ACS, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_ISC_STROKE:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_ISCHEMIC_STROKE, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_HEM_STROKE:
-          cells.add(diffFromEnrollment(record, getRecordValue(record, Field.DATE_OF_HEMORRHAGIC_STROKE, seenCount)).map(String::valueOf).orElse(""));
-          break;
-        case TIME_TO_BLOOD_DRAW:
-          cells.add(timeToBloodDraw(record).map(String::valueOf).orElse(""));
-          break;
-        case EMBOLIC_EVENT:
-          if (isChecked(record, Field.EMBOLIC_EVENT_CHOICE_0, seenCount)) indications.add("None");
-          if (isChecked(record, Field.EMBOLIC_EVENT_CHOICE_1, seenCount)) indications.add("Stroke");
-          if (isChecked(record, Field.EMBOLIC_EVENT_CHOICE_2, seenCount)) indications.add("DVT");
-          if (isChecked(record, Field.EMBOLIC_EVENT_CHOICE_3, seenCount)) indications.add("PE");
-          if (isChecked(record, Field.EMBOLIC_EVENT_CHOICE_4, seenCount)) indications.add("DVT/PE");
-          if (isChecked(record, Field.EMBOLIC_EVENT_CHOICE_5, seenCount)) indications.add("Myocardial Infarction");
-          if (isChecked(record, Field.EMBOLIC_EVENT_CHOICE_MD, seenCount)) indications.add(FieldPattern.MISSING_DATA);
-          cells.add(String.join(LIST_SEPARATOR, indications));
-          break;
-        case INDICATION_FOR_CLOPIDOGREL_TREATMENT:
-          if (isChecked(record, Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_1, seenCount)) indications.add("Coronary artery disease");
-          if (isChecked(record, Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_2, seenCount)) indications.add("Peripheral arterial disease");
-          if (isChecked(record, Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_3, seenCount)) indications.add("Ischemic stroke");
-          if (isChecked(record, Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_4, seenCount)) indications.add("Acute cornary syndrome");
-          if (isChecked(record, Field.INDICATION_FOR_CLOPIDOGREL_TREATMENT_CHOICE_5, seenCount)) indications.add("Other");
-          cells.add(String.join(LIST_SEPARATOR, indications));
-          break;
-        case INDICATION_FOR_NOAC_TREATMENT:
-          if (isChecked(record, Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_1, seenCount)) indications.add("DVT");
-          if (isChecked(record, Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_2, seenCount)) indications.add("PE");
-          if (isChecked(record, Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_3, seenCount)) indications.add("DVT/PE");
-          if (isChecked(record, Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_4, seenCount)) indications.add("Atrial Fiberlation");
-          if (isChecked(record, Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_5, seenCount)) indications.add("Other");
-          if (isChecked(record, Field.INDICATION_FOR_NOAC_TREATMENT_CHOICE_MD, seenCount)) indications.add(FieldPattern.MISSING_DATA);
-          cells.add(String.join(LIST_SEPARATOR, indications));
-          break;
-        case INDICATION_FOR_WARFARIN_TREATMENT:
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_1, seenCount)) indications.add("DVT");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_2, seenCount)) indications.add("PE");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_3, seenCount)) indications.add("Afib/flutter");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_4, seenCount)) indications.add("Heart Valve");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_5, seenCount)) indications.add("Cardiomyopathy/LV Dilation");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_6, seenCount)) indications.add("Stroke");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_7, seenCount)) indications.add("Post-Orthopedic");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_8, seenCount)) indications.add("Other");
-          if (isChecked(record, Field.INDICATION_FOR_WARFARIN_TREATMENT_CHOICE_MD, seenCount)) indications.add(FieldPattern.MISSING_DATA);
-          cells.add(String.join(LIST_SEPARATOR, indications));
-          break;
-        case WHICH_NOAC_DRUG_USED:
-          if (isChecked(record, Field.WHICH_NOAC_DRUG_USED_CHOICE_1, seenCount)) indications.add("apixaban");
-          if (isChecked(record, Field.WHICH_NOAC_DRUG_USED_CHOICE_2, seenCount)) indications.add("rivaroxaban");
-          if (isChecked(record, Field.WHICH_NOAC_DRUG_USED_CHOICE_3, seenCount)) indications.add("edoxaban");
-          if (isChecked(record, Field.WHICH_NOAC_DRUG_USED_CHOICE_4, seenCount)) indications.add("dabigatran");
-          cells.add(String.join(LIST_SEPARATOR, indications));
-          break;
-        case CARDIAC_DEATH:
-          switch (getRecordValue(record, Field.CARDIAC_DEATH, seenCount)) {
+      columns.add(new ColumnSchema(field.getDisplayName(), getDescription(field.name()),
+          field.isNumber() ? ColumnType.NUMBER : ColumnType.TEXT));
+    }
+    return columns;
+  }
+
+  /**
+   * Opens the columnar export of the processed file
+   * @return the writer or null if the columnar export is off
+   */
+  @Nullable
+  private ColumnarWriter openColumnarWriter() throws IOException {
+    if (!this.columnarExport) {
+      return null;
+    }
+    return new ColumnarWriter(this.outputSink.openStream(getColumnarFilename()), makeColumnSchemas());
+  }
+
+  /**
+   * Gets the file name of the columnar export, the processed file name with {@link ColumnarWriter#EXTENSION} in place
+   * of ".csv"
+   */
+  public String getColumnarFilename() {
+    return StringUtils.removeEnd(getOutputFilename(), ".csv") + ColumnarWriter.EXTENSION;
+  }
+
+  /**
+   * Makes the processed output row for a record by running each cell of the compiled output plan
+   * @param context the context of a record from the data file
+   * @param row the buffer to write the cells into, must be as long as the output fields
+   * @return the given row buffer
+   */
+  @VisibleForTesting
+  String[] makeOutputRow(RecordContext context, String[] row) {
+    for (int i = 0; i < m_outputPlan.length; i++) {
+      row[i] = m_outputPlan[i].emit(context);
+    }
+    return row;
+  }
+
+  /**
+   * Compiles the output fields into one {@link CellEmitter} per output cell. The column indexes, follow-up occurrences
+   * and indication labels each cell needs are all worked out here so nothing has to be looked up per row.
+   */
+  private CellEmitter[] compileOutputPlan() {
+    Field[] outputFields = getOutputFields();
+    CellEmitter[] plan = new CellEmitter[outputFields.length];
+    int[] counts = new int[FIELD_COUNT];
+    for (int i = 0; i < outputFields.length; i++) {
+      Field field = outputFields[i];
+      plan[i] = compileCell(field, counts[field.ordinal()]);
+      counts[field.ordinal()] += 1;
+    }
+    return plan;
+  }
+
+  private CellEmitter compileCell(Field field, int occurrence) {
+    Field eventDateField = sf_eventDateFields.get(field);
+    if (eventDateField != null) {
+      int enrollmentColumn = findColumn(Field.ENROLLMENT_DATE, 0);
+      int dateColumn = findColumn(eventDateField, occurrence);
+      return (context) -> {
+        long enrollmentDay = getEpochDay(context, Field.ENROLLMENT_DATE, enrollmentColumn);
+        long eventDay = getEpochDay(context, eventDateField, dateColumn);
+        if (enrollmentDay == RecordContext.NO_VALUE || eventDay == RecordContext.NO_VALUE) {
+          return MISSING_DATA;
+        }
+        return String.valueOf(eventDay - enrollmentDay);
+      };
+    }
+
+    Map<Field, String> choiceLabels = sf_choiceLabels.get(field);
+    if (choiceLabels != null) {
+      return compileChoices(choiceLabels, occurrence);
+    }
+
+    int column = findColumn(field, occurrence);
+    switch (field) {
+      case PROJECT_SITE:
+        int siteColumn = findColumn(Field.PROJECT_SITE, 0);
+        return (context) -> {
+          String site = getColumnValue(context, Field.PROJECT_SITE, siteColumn);
+          String key = siteKeyMap.get(site);
+          if (StringUtils.isBlank(key)) throw new RuntimeException("Project site not mapped: " + site);
+          return isMissing(key) ? MISSING_DATA : key;
+        };
+      case TIME_TO_BLOOD_DRAW:
+        int doseDateColumn = findColumn(Field.DATE_OF_LAST_DOSE, 0);
+        int doseTimeColumn = findColumn(Field.TIME_OF_LAST_DOSE, 0);
+        int drawDateColumn = findColumn(Field.DATE_OF_BLOOD_DRAW, 0);
+        int drawTimeColumn = findColumn(Field.TIME_OF_BLOOD_DRAW, 0);
+        Preconditions.checkState(doseDateColumn >= 0 && doseTimeColumn >= 0 && drawDateColumn >= 0 && drawTimeColumn >= 0,
+            "Dose and blood draw dates and times are needed for " + field);
+        return (context) -> {
+          if (context.isMissing(doseDateColumn) || context.isMissing(doseTimeColumn) ||
+              context.isMissing(drawDateColumn) || context.isMissing(drawTimeColumn)) {
+            return MISSING_DATA;
+          }
+          long doseSecond = context.getEpochSecond(doseDateColumn, doseTimeColumn);
+          if (doseSecond == RecordContext.NO_VALUE) {
+            return MISSING_DATA;
+          }
+          long drawSecond = context.getEpochSecond(drawDateColumn, drawTimeColumn);
+          if (drawSecond == RecordContext.NO_VALUE) {
+            return MISSING_DATA;
+          }
+          return org.pharmgkb.account.DateUtils.formatHours(drawSecond - doseSecond);
+        };
+      case CARDIAC_DEATH:
+        return (context) -> {
+          switch (getColumnValue(context, Field.CARDIAC_DEATH, column)) {
             case "1":
-              cells.add("Y");
-              break;
+              return "Y";
             case "0":
-              cells.add("N");
-              break;
-            case "MD":
-              cells.add("MD");
-              break;
+              return "N";
             default:
-              cells.add("");
+              return MISSING_DATA;
           }
-          break;
-        case BINNED_AGE:
-          String ageString = getRecordValue(record, Field.AGE_AT_ENROLLMENT, seenCount);
-          if (isMissing(ageString)) {
-            cells.add(MISSING_DATA);
+        };
+      case BINNED_AGE:
+        int ageColumn = findColumn(Field.AGE_AT_ENROLLMENT, occurrence);
+        return (context) -> isColumnMissing(context, Field.AGE_AT_ENROLLMENT, ageColumn)
+            ? MISSING_DATA
+            : binAge(getColumnValue(context, Field.AGE_AT_ENROLLMENT, ageColumn));
+      default:
+        return (context) -> isColumnMissing(context, field, column)
+            ? MISSING_DATA
+            : getColumnValue(context, field, column);
+    }
+  }
+
+  /**
+   * Compiles a set of checkbox choices into a cell that joins the labels of the checked ones. Every combination of
+   * checked choices is joined up front so a row only has to work out which combination it has.
+   */
+  private CellEmitter compileChoices(Map<Field, String> choiceLabels, int occurrence) {
+    Field[] choiceFields = choiceLabels.keySet().toArray(new Field[0]);
+    int[] choiceColumns = new int[choiceFields.length];
+    for (int c = 0; c < choiceFields.length; c++) {
+      choiceColumns[c] = findColumn(choiceFields[c], occurrence);
+    }
+
+    String[] joined = new String[1 << choiceFields.length];
+    for (int mask = 0; mask < joined.length; mask++) {
+      StringJoiner joiner = new StringJoiner(LIST_SEPARATOR);
+      for (int c = 0; c < choiceFields.length; c++) {
+        if ((mask & (1 << c)) != 0) {
+          joiner.add(choiceLabels.get(choiceFields[c]));
+        }
+      }
+      joined[mask] = isMissing(joiner.toString()) ? MISSING_DATA : joiner.toString();
+    }
+
+    return (context) -> {
+      int mask = 0;
+      for (int c = 0; c < choiceColumns.length; c++) {
+        if (CHECKED.contentEquals(getColumnChars(context, choiceFields[c], choiceColumns[c]))) {
+          mask |= 1 << c;
+        }
+      }
+      return joined[mask];
+    };
+  }
+
+  private static String binAge(String ageString) {
+    try {
+      float age = Float.parseFloat(ageString);
+      if (age >= 90) {
+        return "90 and over";
+      } else {
+        return ageString;
+      }
+    } catch (NumberFormatException ex) {
+      sf_logger.warn("Bad age number: " + ageString, ex);
+      return "BAD VALUE";
+    }
+  }
+
+  private static String getColumnValue(@Nonnull RecordContext context, @Nonnull Field field, int column) {
+    switch (column) {
+      case NOT_IN_DATASET:
+        throw new RuntimeException("Field not in dataset " + field);
+      case NO_OCCURRENCE:
+        return "";
+      default:
+        return context.get(column);
+    }
+  }
+
+  private static CharSequence getColumnChars(@Nonnull RecordContext context, @Nonnull Field field, int column) {
+    switch (column) {
+      case NOT_IN_DATASET:
+        throw new RuntimeException("Field not in dataset " + field);
+      case NO_OCCURRENCE:
+        return "";
+      default:
+        return context.getChars(column);
+    }
+  }
+
+  private long getEpochDay(@Nonnull RecordContext context, @Nonnull Field field, int column) {
+    switch (column) {
+      case NOT_IN_DATASET:
+        throw new RuntimeException("Field not in dataset " + field);
+      case NO_OCCURRENCE:
+        return RecordContext.NO_VALUE;
+      default:
+        return context.getEpochDay(column, this.dateParser);
+    }
+  }
+
+  private static boolean isColumnMissing(@Nonnull RecordContext context, @Nonnull Field field, int column) {
+    switch (column) {
+      case NOT_IN_DATASET:
+        throw new RuntimeException("Field not in dataset " + field);
+      case NO_OCCURRENCE:
+        return true;
+      default:
+        return context.isMissing(column);
+    }
+  }
+
+  /**
+   * Writes the processed file from the records kept by {@link #validate()}. The records are let go of once it's
+   * written, so they don't take up the heap while the next file is worked on or, in watch mode, between runs.
+   * @return the path to the processed file
+   * @throws Exception can occur when writing the processed file
+   */
+  public Path makeProcessedFile() throws Exception {
+    Preconditions.checkState(m_dataset != null, "The file has to be validated before it's processed");
+    ColumnarDataset dataset = m_dataset;
+    m_dataset = null;
+    PhaseTimer timer = new PhaseTimer();
+    timer.start(Phase.WRITE);
+    try (
+        CSVPrinter csv = new CSVPrinter(this.outputSink.open(getOutputFilename()), CSVFormat.EXCEL);
+        ColumnarWriter columnar = openColumnarWriter()
+    ) {
+      writeOutputHeaders(csv);
+
+      // loop through each record of the dataset
+      String[] row = new String[m_outputPlan.length];
+      RecordContext context = new RecordContext();
+      for (int i = 0; i < dataset.size(); i++) {
+        timer.start(Phase.TRANSFORM);
+        makeOutputRow(context.reset(dataset, i), row);
+        timer.start(Phase.WRITE);
+        csv.printRecord((Object[])row);
+        if (columnar != null) {
+          columnar.write(row);
+        }
+      }
+    } finally {
+      timer.stop();
+      m_report.addPhases(timer);
+    }
+    return this.outputSink.getPath(getOutputFilename());
+  }
+
+  /**
+   * Validates and transforms this data file in a single pass. Each record is validated and written to the processed
+   * file as soon as it's read so no records are held in memory, heap use stays flat no matter how big the file is. The
+   * file is read with a {@link MappedCsvReader} so values are checked in place and only decoded when they're written.
+   * @param validationSink the sink that validation results are sent to in batches as they're found
+   * @return the path to the processed file
+   * @throws IOException can occur when reading the data file or writing either of the outputs
+   */
+  public Path validateAndProcess(ValidationSink validationSink) throws IOException {
+    sf_logger.info("Validating and processing {}", getFilename());
+
+    int validSubjects = 0;
+    int totalSubjects = 0;
+    PhaseTimer timer = new PhaseTimer();
+    timer.start(Phase.WRITE);
+    m_progress.start(getFileSize());
+
+    try (
+        MappedCsvReader reader = new MappedCsvReader(this.filePath);
+        CSVPrinter csv = new CSVPrinter(this.outputSink.open(getOutputFilename()), CSVFormat.EXCEL);
+        ColumnarWriter columnar = openColumnarWriter()
+    ) {
+      writeOutputHeaders(csv);
+
+      String[] row = new String[m_outputPlan.length];
+      RecordContext context = new RecordContext();
+      ValidationResults results = makeValidationResults();
+      int lineNumber = 1;
+      timer.start(Phase.PARSE);
+      for (CsvRow record = reader.next(); record != null; record = reader.next()) {
+        if (lineNumber != 1) {
+          totalSubjects += 1;
+          context.reset(record);
+
+          timer.start(Phase.VALIDATE);
+          if (validateRow(context, lineNumber, results) == 0) {
+            validSubjects += 1;
           }
-          try {
-            float age = Float.parseFloat(ageString);
-            if (age >= 90) {
-              cells.add("90 and over");
-            } else {
-              cells.add(ageString);
-            }
-          } catch (NumberFormatException ex) {
-            sf_logger.warn("Bad age number: " + ageString, ex);
-            cells.add("BAD VALUE");
+          if (results.size() >= RESULTS_BATCH_SIZE) {
+            timer.start(Phase.WRITE);
+            validationSink.write(results);
+            results.clear();
           }
-          break;
-        default:
-          cells.add(getRecordValue(record, field, seenCount));
+          timer.start(Phase.TRANSFORM);
+          makeOutputRow(context, row);
+          timer.start(Phase.WRITE);
+          csv.printRecord((Object[])row);
+          if (columnar != null) {
+            columnar.write(row);
+          }
+          timer.start(Phase.PARSE);
+        }
+        lineNumber += 1;
+        m_progress.update(reader.getBytesRead(), totalSubjects);
       }
-      fieldBag.add(field);
+      timer.start(Phase.WRITE);
+      validationSink.write(results);
+    } finally {
+      m_progress.finish();
+      timer.stop();
+      m_report.addPhases(timer);
     }
+    m_report.addRows(totalSubjects, validSubjects);
 
-    return cells.stream()
-        .map(c -> {
-          if (FieldPattern.isMissing(c)) {
-            return MISSING_DATA;
+    sf_logger.info("valid subject count: {}/{}", validSubjects, totalSubjects);
+    return this.outputSink.getPath(getOutputFilename());
+  }
+
+  /**
+   * Validates and transforms this data file in a single pass, like {@link #validateAndProcess(ValidationSink)}, but
+   * only works on the records that changed since the last run. Each record's fingerprint is checked against the row
+   * cache, and records that haven't changed reuse their cached validation errors and processed line. A new row cache
+   * is written for the next run. Cached rows are only kept as CSV lines so this can't make the columnar export.
+   * @param validationSink the sink that validation results are sent to in batches as they're found
+   * @param rowCachePath the row cache file, it's fine if it doesn't exist yet
+   * @return the path to the processed file
+   * @throws IOException can occur when reading the data file or writing any of the outputs
+   */
+  public Path validateAndProcess(ValidationSink validationSink, Path rowCachePath) throws IOException {
+    sf_logger.info("Incrementally validating and processing {}", getFilename());
+    Preconditions.checkState(!this.columnarExport, "The columnar export can't be made incrementally");
+
+    long schemaHash = makeSchemaHash();
+    int validSubjects = 0;
+    int totalSubjects = 0;
+    int reusedSubjects = 0;
+    PhaseTimer timer = new PhaseTimer();
+    timer.start(Phase.WRITE);
+    m_progress.start(getFileSize());
+
+    try (
+        RowFingerprintCache previousRows = RowFingerprintCache.load(rowCachePath, schemaHash);
+        RowFingerprintCache.Output nextRows = RowFingerprintCache.create(rowCachePath, schemaHash);
+        MappedCsvReader reader = new MappedCsvReader(this.filePath);
+        Writer writer = this.outputSink.open(getOutputFilename())
+    ) {
+      // changed rows are formatted into a line of their own so the line can be cached
+      StringBuilder line = new StringBuilder();
+      CSVPrinter linePrinter = new CSVPrinter(line, CSVFormat.EXCEL);
+      writeOutputHeaders(linePrinter);
+      writer.write(line.toString());
+      String[] row = new String[m_outputPlan.length];
+      RecordContext context = new RecordContext();
+      ValidationResults results = makeValidationResults();
+      int lineNumber = 1;
+      timer.start(Phase.PARSE);
+      for (CsvRow record = reader.next(); record != null; record = reader.next()) {
+        if (lineNumber != 1) {
+          totalSubjects += 1;
+
+          timer.start(Phase.VALIDATE);
+          long fingerprint = RowFingerprintCache.fingerprint(record);
+          RowFingerprintCache.Entry entry = previousRows.get(record.get(0), fingerprint);
+          int errors;
+          if (entry != null) {
+            errors = entry.replay(record, lineNumber, this, results);
+            reusedSubjects += 1;
           } else {
-            return c;
+            int firstError = results.size();
+            errors = validateRow(context.reset(record), lineNumber, results);
+            timer.start(Phase.TRANSFORM);
+            makeOutputRow(context, row);
+            timer.start(Phase.WRITE);
+            line.setLength(0);
+            linePrinter.printRecord((Object[])row);
+            entry = RowFingerprintCache.Entry.of(fingerprint, results, firstError, line.toString());
           }
-        })
-        .collect(Collectors.toList());
-  }
+          timer.start(Phase.WRITE);
+          nextRows.add(record.get(0), entry);
 
-  private String getRecordValue(@Nonnull CSVRecord record, @Nonnull Field field) {
-    if (!fieldIndexMap.containsKey(field)) {
-      throw new RuntimeException("Field not in dataset " + field);
+          if (errors == 0) {
+            validSubjects += 1;
+          }
+          if (results.size() >= RESULTS_BATCH_SIZE) {
+            validationSink.write(results);
+            results.clear();
+          }
+          writer.write(entry.getOutputLine());
+          timer.start(Phase.PARSE);
+        }
+        lineNumber += 1;
+        m_progress.update(reader.getBytesRead(), totalSubjects);
+      }
+      timer.start(Phase.WRITE);
+      validationSink.write(results);
+      previousRows.close();
+      nextRows.commit();
+    } finally {
+      m_progress.finish();
+      timer.stop();
+      m_report.addPhases(timer);
     }
-    Collection<Integer> indexes = fieldIndexMap.get(field);
-    return record.get(indexes.iterator().next());
+    m_report.addRows(totalSubjects, validSubjects);
+
+    sf_logger.info("reused cached results for {}/{} subjects", reusedSubjects, totalSubjects);
+    sf_logger.info("valid subject count: {}/{}", validSubjects, totalSubjects);
+    return this.outputSink.getPath(getOutputFilename());
   }
-  
-  private String getRecordValue(@Nonnull CSVRecord record, @Nonnull Field field, int groupNumber) {
-    if (!fieldIndexMap.containsKey(field)) {
-      throw new RuntimeException("Field not in dataset " + field);
-    }
-    
-    int n=0;
-    for (Integer idx : fieldIndexMap.get(field)) {
-      if (groupNumber == n) {
-        return record.get(idx);
-      } else {
-        n += 1;
-      }
+
+  /**
+   * Hashes everything besides a record's own values that its validation errors and processed row depend on, so a row
+   * cache is only used under the same version of the output code, fields, rules and site keys it was made with
+   */
+  private long makeSchemaHash() {
+    Hasher hasher = RowFingerprintCache.newSchemaHasher()
+        .putInt(OUTPUT_LOGIC_VERSION)
+        .putUnencodedChars(getClass().getName());
+    for (Field field : getExpectedFields()) {
+      hasher.putUnencodedChars(field.name()).putByte((byte)0)
+          .putUnencodedChars(String.valueOf(field.getValidationPattern())).putByte((byte)0)
+          .putUnencodedChars(String.valueOf(field.getRangeDescription())).putByte((byte)0);
+    }
+    for (Field field : getOutputFields()) {
+      hasher.putUnencodedChars(field.name()).putByte((byte)0);
     }
-    return "";
+    for (Map.Entry<String, String> siteKey : new TreeMap<>(this.siteKeyMap).entrySet()) {
+      hasher.putUnencodedChars(siteKey.getKey()).putByte((byte)0)
+          .putUnencodedChars(siteKey.getValue()).putByte((byte)0);
+    }
+    return hasher.hash().asLong();
   }
 
-  public Path makeProcessedFile() throws Exception {
-    Path outputPath = Paths.get("out", getOutputFilename());
+  /**
+   * Validates and transforms this data file in a single pass, like {@link #validateAndProcess(ValidationSink)}, but
+   * splits the records into chunks that are validated and transformed on the given pool. The next chunk is read while
+   * the current one is being worked on. The file is read with the same {@link MappedCsvReader} as the other modes and
+   * results are written in the original line order, so the outputs are the same as a sequential run.
+   * @param validationSink the sink that validation results are sent to
+   * @param pool the fork-join pool to do the validation and transformation work on
+   * @param chunkSize the number of records to read into each chunk
+   * @return the path to the processed file
+   * @throws IOException can occur when reading the data file or writing either of the outputs
+   */
+  public Path validateAndProcess(ValidationSink validationSink, ForkJoinPool pool, int chunkSize) throws IOException {
+    sf_logger.info("Validating and processing {} in chunks of {} on {} threads", getFilename(), chunkSize, pool.getParallelism());
+
+    int validSubjects = 0;
+    int totalSubjects = 0;
+    // the records are validated and transformed on the pool, which keeps its own timers, this times the reading thread
+    PhaseTimer timer = new PhaseTimer();
+    timer.start(Phase.WRITE);
+    m_progress.start(getFileSize());
+
     try (
-        FileWriter fileWriter = new FileWriter(outputPath.toFile());
-        CSVPrinter csv = new CSVPrinter(fileWriter, CSVFormat.EXCEL)
+        MappedCsvReader reader = new MappedCsvReader(this.filePath);
+        CSVPrinter csv = new CSVPrinter(this.outputSink.open(getOutputFilename()), CSVFormat.EXCEL);
+        ColumnarWriter columnar = openColumnarWriter()
     ) {
-      // write the headers
-      csv.printRecord(makeOutputHeader());
-      csv.printRecord(makeOutputDescriptions());
+      writeOutputHeaders(csv);
 
-      // loop through each record of the dataset
-      for (CSVRecord record : m_records) {
-        csv.printRecord(makeOutputRow(record));
+      timer.start(Phase.PARSE);
+      // skip the header line
+      reader.next();
+      // the pool's threads log under the same context, like the data file's name, as the thread that reads the file
+      Map<String, String> logContext = MDC.getCopyOfContextMap();
+
+      int lineNumber = 2;
+      long rowsRead = 0;
+      List<CsvRow> chunk = readChunk(reader, chunkSize);
+      while (!chunk.isEmpty()) {
+        rowsRead += chunk.size();
+        m_progress.update(reader.getBytesRead(), rowsRead);
+        ValidationResults[] results = new ValidationResults[chunk.size()];
+        String[][] outputRows = new String[chunk.size()][];
+        ForkJoinTask<Void> task = pool.submit(
+            new ChunkTask(chunk, lineNumber, results, outputRows, 0, chunk.size(), logContext));
+        lineNumber += chunk.size();
+
+        chunk = readChunk(reader, chunkSize);
+        timer.stop();
+        task.join();
+
+        // each piece of the chunk put its results at the index of its first record
+        timer.start(Phase.WRITE);
+        for (ValidationResults pieceResults : results) {
+          if (pieceResults != null) {
+            totalSubjects += pieceResults.getSubjectCount();
+            validSubjects += pieceResults.getValidSubjectCount();
+            validationSink.write(pieceResults);
+          }
+        }
+        for (String[] outputRow : outputRows) {
+          csv.printRecord((Object[])outputRow);
+          if (columnar != null) {
+            columnar.write(outputRow);
+          }
+        }
+        timer.start(Phase.PARSE);
       }
+      timer.start(Phase.WRITE);
+    } finally {
+      m_progress.finish();
+      timer.stop();
+      m_report.addPhases(timer);
     }
-    return outputPath;
+    m_report.addRows(totalSubjects, validSubjects);
+
+    sf_logger.info("valid subject count: {}/{}", validSubjects, totalSubjects);
+    return this.outputSink.getPath(getOutputFilename());
+  }
+
+  /**
+   * Reads the next chunk of records, each one copied since the reader reuses its row
+   */
+  private static List<CsvRow> readChunk(MappedCsvReader reader, int chunkSize) throws IOException {
+    List<CsvRow> chunk = new ArrayList<>(chunkSize);
+    while (chunk.size() < chunkSize) {
+      CsvRow record = reader.next();
+      if (record == null) {
+        break;
+      }
+      chunk.add(CopiedCsvRow.copyOf(record));
+    }
+    return chunk;
+  }
+
+  private void writeOutputHeaders(CSVPrinter csv) throws IOException {
+    csv.printRecord(makeOutputHeader());
+    csv.printRecord(makeOutputDescriptions());
   }
 
 
   private Path filePath;
   private Map<String,String> siteKeyMap;
+  private DateParser dateParser = DateParser.DEFAULT;
+  private OutputSink outputSink = FileOutputSink.DEFAULT;
+  private boolean columnarExport = false;
+  private FieldProfiler fieldProfiler = null;
   
   public String getFilename() {
     return this.filePath.getFileName().toString();
   }
 
+  public Path getFilePath() {
+    return this.filePath;
+  }
+
+  /**
+   * Gets the size of the input data file
+   * @return the size in bytes, 0 if the file can't be read
+   */
+  public long getFileSize() {
+    try {
+      return Files.size(this.filePath);
+    } catch (IOException ex) {
+      return 0;
+    }
+  }
+
   void setFilePath(Path filePath) {
     this.filePath = filePath;
   }
@@ -283,114 +775,295 @@ public abstract class AbstractDataFile {
     this.siteKeyMap = siteKeyMap;
   }
 
-  public List<String> validate() throws IOException {
+  /**
+   * Sets the parser for the dates that time-to-event fields are counted from, parsers are thread-safe so one can be
+   * shared by all data files
+   * @param dateParser the date parser to use, defaults to {@link DateParser#DEFAULT}
+   */
+  public void setDateParser(@Nonnull DateParser dateParser) {
+    this.dateParser = dateParser;
+  }
+
+  /**
+   * Sets where the processed file is written
+   * @param outputSink the sink to write to, defaults to {@link FileOutputSink#DEFAULT}
+   */
+  public void setOutputSink(@Nonnull OutputSink outputSink) {
+    this.outputSink = outputSink;
+  }
+
+  /**
+   * Sets whether the processed file is also written in the columnar format, see {@link #getColumnarFilename()}
+   * @param columnarExport true to write the columnar export, defaults to false
+   */
+  public void setColumnarExport(boolean columnarExport) {
+    this.columnarExport = columnarExport;
+  }
+
+  /**
+   * Sets the profiler that every checked cell is counted and timed in, profilers are thread-safe so one can be shared
+   * by all data files
+   * @param fieldProfiler the profiler to record checks in, defaults to null for no profiling
+   */
+  public void setFieldProfiler(@Nullable FieldProfiler fieldProfiler) {
+    this.fieldProfiler = fieldProfiler;
+  }
+
+  /**
+   * Gets what was measured while this file was validated and processed, for the run report
+   */
+  public FileReport getReport() {
+    return m_report;
+  }
+
+  /**
+   * Starts a new report so a file that's validated and processed again isn't counted twice
+   */
+  public void resetReport() {
+    m_report = new FileReport();
+  }
+
+  /**
+   * Gets how far through the data file the current pass is, for the progress reporter
+   */
+  public FileProgress getProgress() {
+    return m_progress;
+  }
+
+  /**
+   * Validates this data file and keeps its records in memory for {@link #makeProcessedFile()}. Records are kept in a
+   * {@link ColumnarDataset} so each distinct value of a column is only held once.
+   * @return the validation results for the whole file
+   * @throws IOException can occur when reading the data file
+   */
+  public ValidationResults validate() throws IOException {
     sf_logger.info("Validating {}", getFilename());
 
-    List<String> messages = new ArrayList<>();
+    ValidationResults results = makeValidationResults();
+    ColumnarDataset dataset = new ColumnarDataset(getExpectedFields(), this.dateParser);
     int validSubjects = 0;
     int totalSubjects = 0;
 
-    try (Reader reader = new FileReader(this.filePath.toFile())) {
+    PhaseTimer timer = new PhaseTimer();
+    timer.start(Phase.PARSE);
+    m_progress.start(getFileSize());
+    try (MappedCsvReader reader = new MappedCsvReader(this.filePath)) {
+      RecordContext context = new RecordContext();
       int lineNumber = 1;
-      for (CSVRecord record : CSVFormat.DEFAULT.parse(reader)) {
+      for (CsvRow record = reader.next(); record != null; record = reader.next()) {
         if (lineNumber != 1) {
-          m_records.add(record);
           totalSubjects += 1;
 
-          List<String> recordErrors = validateRow(record, lineNumber);
-          if (recordErrors.size() > 0) {
-            messages.addAll(recordErrors);
-          } else {
+          timer.start(Phase.VALIDATE);
+          if (validateRow(context.reset(record), lineNumber, results) == 0) {
             validSubjects += 1;
           }
+          // keeping the record is part of reading it
+          timer.start(Phase.PARSE);
+          dataset.add(record);
         }
         lineNumber += 1;
+        m_progress.update(reader.getBytesRead(), totalSubjects);
       }
+    } finally {
+      m_progress.finish();
+      timer.stop();
+      m_report.addPhases(timer);
     }
+    m_dataset = dataset;
+    m_report.addRows(totalSubjects, validSubjects);
 
     sf_logger.info("valid subject count: {}/{}", validSubjects, totalSubjects);
-    return messages;
+    return results;
   }
 
-  private List<String> validateRow(CSVRecord record, int lineNumber) {
-    List<String> messages = new ArrayList<>();
+  /**
+   * Validates this data file in a single pass without making the processed file or keeping any records, for checking
+   * a file on its own. Results are sent to the sink in batches as they're found so heap use stays flat no matter how
+   * big the file is.
+   * @param validationSink the sink that validation results are sent to
+   * @throws IOException can occur when reading the data file or writing the results
+   */
+  public void validate(ValidationSink validationSink) throws IOException {
+    sf_logger.info("Validating {}", getFilename());
+
+    int validSubjects = 0;
+    int totalSubjects = 0;
+    PhaseTimer timer = new PhaseTimer();
+    timer.start(Phase.PARSE);
+    m_progress.start(getFileSize());
+    try (MappedCsvReader reader = new MappedCsvReader(this.filePath)) {
+      RecordContext context = new RecordContext();
+      ValidationResults results = makeValidationResults();
+      int lineNumber = 1;
+      for (CsvRow record = reader.next(); record != null; record = reader.next()) {
+        if (lineNumber != 1) {
+          totalSubjects += 1;
 
-    if (record.size() != getExpectedFields().length) {
-      messages.add(String.format("Line %d unexpected length: expected %d, got %d", lineNumber, getExpectedFields().length, record.size()));
+          timer.start(Phase.VALIDATE);
+          if (validateRow(context.reset(record), lineNumber, results) == 0) {
+            validSubjects += 1;
+          }
+          if (results.size() >= RESULTS_BATCH_SIZE) {
+            timer.start(Phase.WRITE);
+            validationSink.write(results);
+            results.clear();
+          }
+          timer.start(Phase.PARSE);
+        }
+        lineNumber += 1;
+        m_progress.update(reader.getBytesRead(), totalSubjects);
+      }
+      timer.start(Phase.WRITE);
+      validationSink.write(results);
+    } finally {
+      m_progress.finish();
+      timer.stop();
+      m_report.addPhases(timer);
     }
+    m_report.addRows(totalSubjects, validSubjects);
+
+    sf_logger.info("valid subject count: {}/{}", validSubjects, totalSubjects);
+  }
 
-    String subjectId = record.get(0);
-    String siteId = record.get(1);
-    for (int i = 0; i < getExpectedFields().length; i++) {
+  /**
+   * Gets the site of a record for its validation errors, a record cut short before the site column has none
+   */
+  static String getSite(CsvRow row) {
+    return row.size() > 1 ? row.get(1) : "";
+  }
+
+  private ValidationResults makeValidationResults() {
+    return new ValidationResults(getFilename(), getExpectedFields().length);
+  }
+
+  /**
+   * Validates one record and adds any errors found to the results, along with a count of the subject
+   * @param context the context of the record
+   * @param lineNumber the line number of the record in the data file
+   * @param results the results to add to
+   * @return the number of errors found in the record
+   */
+  @VisibleForTesting
+  int validateRow(RecordContext context, int lineNumber, ValidationResults results) {
+    CsvRow row = context.getRow();
+    int errorsBefore = results.size();
+
+    if (row.size() != getExpectedFields().length) {
+      results.addUnexpectedLength(lineNumber, row.size());
+    }
+
+    // values are checked in place and only made into Strings for the results when they're bad
+    // when profiling, each cell is timed from the end of the one before so the clock is only read once per cell
+    FieldProfiler profiler = this.fieldProfiler;
+    long last = profiler == null ? 0 : System.nanoTime();
+    // a short record only has its own cells checked, its length has already been reported
+    int columns = Math.min(row.size(), getExpectedFields().length);
+    for (int i = 0; i < columns; i++) {
       Field field = getExpectedFields()[i];
-      String fieldValue = record.get(i);
-      if (!field.validate(fieldValue)) {
-        messages.add(String.format("%s\t%s\t%s%d\tinvalid %s\t%s\n",
-            siteId,
-            subjectId,
-            ExcelUtils.getExcelColumnName(i+1), lineNumber,
-            field.name(),
-            record.get(i)
-        ));
-      } else {
-        try {
-          if (field.getRangeTest() != null && !isMissing(fieldValue) && !field.getRangeTest().test(fieldValue)) {
-            messages.add(String.format("%s\t%s\t%s%d\tout of range %s [%s]\t%s\n",
-                siteId,
-                subjectId,
-                ExcelUtils.getExcelColumnName(i + 1), lineNumber,
-                field.name(),
-                field.getRangeDescription(),
-                record.get(i)
-            ));
-          }
-        } catch (NumberFormatException ex) {
-          messages.add(String.format("%s\t%s\t%s%d\tbad numerical value for %s\t%s\n",
-              siteId,
-              subjectId,
-              ExcelUtils.getExcelColumnName(i + 1), lineNumber,
-              field.name(),
-              record.get(i)
-          ));
+      ValidationErrorKind error = checkCell(field, context.getChars(i), context.isMissing(i));
+      if (profiler != null) {
+        long now = System.nanoTime();
+        profiler.record(field, now - last, error);
+        last = now;
+      }
+      if (error != null) {
+        results.add(error, field, ExcelUtils.cellLocation(i, lineNumber), getSite(row), row.get(0), row.get(i));
+        if (profiler != null) {
+          // adding the error isn't part of the next cell's check
+          last = System.nanoTime();
         }
       }
     }
 
-    return messages;
+    int errors = results.size() - errorsBefore;
+    results.addSubject(errors == 0);
+    return errors;
   }
-  
-  private Optional<Long> diffFromEnrollment(CSVRecord record, String dateString) {
-    Date bleedingEvent = FieldPattern.parseDate(dateString);
-    Date enrollment = FieldPattern.parseDate(getRecordValue(record, Field.ENROLLMENT_DATE));
 
-    if (bleedingEvent != null && enrollment != null) {
-      return Optional.of((bleedingEvent.getTime() - enrollment.getTime()) / DateUtils.MILLIS_PER_DAY);
-    } else {
-      return Optional.empty();
+  /**
+   * Checks one value against its field's pattern and then its range
+   * @return the kind of check the value failed or null if it's valid
+   */
+  private static @Nullable ValidationErrorKind checkCell(Field field, CharSequence value, boolean missing) {
+    if (!field.validate(value, missing)) {
+      return ValidationErrorKind.INVALID;
+    } else if (field.hasRange() && !missing) {
+      RangeResult rangeResult = field.checkRange(value);
+      if (rangeResult == RangeResult.OUT_OF_RANGE) {
+        return ValidationErrorKind.OUT_OF_RANGE;
+      } else if (rangeResult == RangeResult.NOT_NUMERIC) {
+        return ValidationErrorKind.BAD_NUMBER;
+      }
     }
+    return null;
   }
+  
+  /**
+   * Validates and transforms a range of records from a chunk, splitting the range in half until it's small enough to
+   * work on directly. Each output row goes into the slot matching its record and the validation results of each piece
+   * go into the slot of the piece's first record so the original order is kept.
+   */
+  private class ChunkTask extends RecursiveAction {
+    private final List<CsvRow> chunk;
+    private final int firstLineNumber;
+    private final ValidationResults[] results;
+    private final String[][] outputRows;
+    private final int from;
+    private final int to;
+    private final Map<String, String> logContext;
 
-  private Optional<String> timeToBloodDraw(CSVRecord record) {
-    String doseDate = getRecordValue(record, Field.DATE_OF_LAST_DOSE);
-    String doseTime = getRecordValue(record, Field.TIME_OF_LAST_DOSE);
-    
-    String drawDate = getRecordValue(record, Field.DATE_OF_BLOOD_DRAW);
-    String drawTime = getRecordValue(record, Field.TIME_OF_BLOOD_DRAW);
-    
-    if ( isMissing(doseDate) || isMissing(doseTime) || isMissing(drawDate) || isMissing(drawTime)) return Optional.empty();
+    private ChunkTask(List<CsvRow> chunk, int firstLineNumber, ValidationResults[] results, String[][] outputRows,
+        int from, int to, @Nullable Map<String, String> logContext) {
+      this.chunk = chunk;
+      this.firstLineNumber = firstLineNumber;
+      this.results = results;
+      this.outputRows = outputRows;
+      this.from = from;
+      this.to = to;
+      this.logContext = logContext;
+    }
 
-    try {
-      LocalDateTime doseStamp = org.pharmgkb.account.DateUtils.parseDateTime(doseDate, doseTime);
-      LocalDateTime drawStamp = org.pharmgkb.account.DateUtils.parseDateTime(drawDate, drawTime);
-      return Optional.of(org.pharmgkb.account.DateUtils.diff(doseStamp, drawStamp));
-    } catch (DateTimeParseException ex) {
-      sf_logger.warn("Could not parse DateTime for " + record.get(0), ex);
-      return Optional.empty();
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK_SPLIT_THRESHOLD) {
+        // a pool thread can work on pieces of other files' chunks too, so its own context is put back after
+        Map<String, String> threadContext = MDC.getCopyOfContextMap();
+        setLogContext(logContext);
+        try {
+          RecordContext context = new RecordContext();
+          ValidationResults pieceResults = makeValidationResults();
+          PhaseTimer timer = new PhaseTimer();
+          for (int i = from; i < to; i++) {
+            context.reset(chunk.get(i));
+            // each record keeps its own row since it's written after the whole chunk is done
+            timer.start(Phase.TRANSFORM);
+            outputRows[i] = makeOutputRow(context, new String[m_outputPlan.length]);
+            timer.start(Phase.VALIDATE);
+            validateRow(context, firstLineNumber + i, pieceResults);
+          }
+          timer.stop();
+          m_report.addPhases(timer);
+          results[from] = pieceResults;
+        } finally {
+          setLogContext(threadContext);
+        }
+      } else {
+        int middle = (from + to) >>> 1;
+        invokeAll(
+            new ChunkTask(chunk, firstLineNumber, results, outputRows, from, middle, logContext),
+            new ChunkTask(chunk, firstLineNumber, results, outputRows, middle, to, logContext)
+        );
+      }
     }
   }
-  
-  private boolean isChecked(CSVRecord record, Field field, int count) {
-    return StringUtils.equals(getRecordValue(record, field, count), CHECKED);
+
+  private static void setLogContext(@Nullable Map<String, String> logContext) {
+    if (logContext == null) {
+      MDC.clear();
+    } else {
+      MDC.setContextMap(logContext);
+    }
   }
 
   private static String getDescription(String key) {
@@ -0,0 +1,18 @@
+package org.pharmgkb.account.file;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Makes the value for one cell of a processed output row. A data file compiles its output fields into an array of
+ * these once so making a row is just calling each one in turn.
+ */
+@FunctionalInterface
+interface CellEmitter {
+
+  /**
+   * Makes the value of this cell for the given record
+   * @param context the context of a record from the data file
+   * @return the cell value, with missing data already written as "MD"
+   */
+  String emit(@Nonnull RecordContext context);
+}
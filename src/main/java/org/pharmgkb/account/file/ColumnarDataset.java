@@ -0,0 +1,314 @@
+package org.pharmgkb.account.file;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.pharmgkb.account.csv.CopiedCsvRow;
+import org.pharmgkb.account.csv.CsvRow;
+import org.pharmgkb.account.data.DateParser;
+import org.pharmgkb.account.data.Field;
+import org.pharmgkb.account.data.FieldPattern;
+
+import javax.annotation.Nonnull;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * The records of a data file kept in memory a column at a time. Values like Checked/Unchecked, Y/N/NA/MD and site
+ * codes repeat over and over, so each column keeps a dictionary of its distinct values and every record only holds an
+ * int code into it. Date fields also get an array of their values as epoch days, worked out once per distinct value,
+ * for the time-to-event output fields.
+ *
+ * A column that turns out to have more than {@link #MAX_DICTIONARY_SIZE} distinct values, like subject IDs or free
+ * text, holds its Strings directly instead. A dictionary saves next to nothing for such a column and looking values up
+ * in a table that big misses the cache for every record.
+ *
+ * The columns are the expected fields of the data file, any values a record has past them are dropped and any it's
+ * missing are kept as empty values. Datasets are not thread-safe while records are being added.
+ */
+class ColumnarDataset {
+  static final int MAX_DICTIONARY_SIZE = 4096;
+  private static final int INITIAL_CAPACITY = 1024;
+  /** the epoch day kept for a date that's missing or can't be parsed */
+  private static final int NO_DAY = Integer.MIN_VALUE;
+
+  private final Field[] fields;
+  private final DateParser dateParser;
+  /** the dictionary of each column, null once a column holds its values directly */
+  private final Dictionary[] dictionaries;
+  /** the dictionary code of each record's value, null once a column holds its values directly */
+  private final int[][] codes;
+  /** the value of each record, only for columns that outgrew their dictionary */
+  private final String[][] values;
+  /** the value of each record as an epoch day, only for columns of date fields */
+  private final int[][] epochDays;
+  private int size = 0;
+  private int capacity = 0;
+
+  /**
+   * Makes an empty dataset
+   * @param fields the expected fields of the data file, one per column
+   * @param dateParser the parser to read the values of date fields with
+   */
+  ColumnarDataset(@Nonnull Field[] fields, @Nonnull DateParser dateParser) {
+    this.fields = fields;
+    this.dateParser = dateParser;
+    this.dictionaries = new Dictionary[fields.length];
+    this.codes = new int[fields.length][];
+    this.values = new String[fields.length][];
+    this.epochDays = new int[fields.length][];
+    for (int c = 0; c < fields.length; c++) {
+      this.dictionaries[c] = new Dictionary(fields[c], dateParser);
+      this.codes[c] = new int[0];
+      if (fields[c].isDate()) {
+        this.epochDays[c] = new int[0];
+      }
+    }
+  }
+
+  /**
+   * Adds a record to the end of the dataset. Values are looked up in the dictionaries in place and only made into
+   * Strings when they haven't been seen in their column before.
+   * @param row a record, a short one is kept with its missing values empty like {@link RecordContext} reads them
+   */
+  void add(@Nonnull CsvRow row) {
+    if (row.size() < this.fields.length) {
+      row = CopiedCsvRow.copyOf(row, this.fields.length);
+    }
+    ensureCapacity(this.size + 1);
+    for (int c = 0; c < this.fields.length; c++) {
+      Dictionary dictionary = this.dictionaries[c];
+      if (dictionary == null) {
+        String value = row.get(c);
+        this.values[c][this.size] = value;
+        if (this.epochDays[c] != null) {
+          this.epochDays[c][this.size] = toEpochDay(value, this.dateParser);
+        }
+        continue;
+      }
+
+      int code = dictionary.add(row, c);
+      this.codes[c][this.size] = code;
+      if (this.epochDays[c] != null) {
+        this.epochDays[c][this.size] = dictionary.epochDays[code];
+      }
+      if (dictionary.size > MAX_DICTIONARY_SIZE) {
+        dropDictionary(c, this.size + 1);
+      }
+    }
+    this.size += 1;
+  }
+
+  /**
+   * Switches a column over to holding its values directly
+   */
+  private void dropDictionary(int column, int rows) {
+    String[] columnValues = new String[this.capacity];
+    String[] dictionaryValues = this.dictionaries[column].values;
+    int[] columnCodes = this.codes[column];
+    for (int i = 0; i < rows; i++) {
+      columnValues[i] = dictionaryValues[columnCodes[i]];
+    }
+    this.values[column] = columnValues;
+    this.codes[column] = null;
+    this.dictionaries[column] = null;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > this.capacity) {
+      int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, this.capacity * 2));
+      for (int c = 0; c < this.fields.length; c++) {
+        if (this.codes[c] != null) {
+          this.codes[c] = Arrays.copyOf(this.codes[c], newCapacity);
+        } else {
+          this.values[c] = Arrays.copyOf(this.values[c], newCapacity);
+        }
+        if (this.epochDays[c] != null) {
+          this.epochDays[c] = Arrays.copyOf(this.epochDays[c], newCapacity);
+        }
+      }
+      this.capacity = newCapacity;
+    }
+  }
+
+  private static int toEpochDay(String value, DateParser dateParser) {
+    LocalDate date = FieldPattern.isMissing(value) ? null : dateParser.parse(value);
+    return date == null ? NO_DAY : Math.toIntExact(date.toEpochDay());
+  }
+
+  /**
+   * The number of records
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Does a column still keep its values in a dictionary, see {@link #MAX_DICTIONARY_SIZE}
+   */
+  @VisibleForTesting
+  boolean isDictionaryEncoded(int column) {
+    return this.dictionaries[column] != null;
+  }
+
+  String get(int row, int column) {
+    checkRow(row);
+    return value(row, column);
+  }
+
+  private String value(int row, int column) {
+    Dictionary dictionary = this.dictionaries[column];
+    return dictionary != null ? dictionary.values[this.codes[column][row]] : this.values[column][row];
+  }
+
+  boolean isDate(int column) {
+    return this.epochDays[column] != null;
+  }
+
+  /**
+   * Gets a value as a day count from the epoch
+   * @return the epoch day or {@link RecordContext#NO_VALUE} if the value is missing, isn't a date or the column isn't a
+   * date field
+   */
+  long getEpochDay(int row, int column) {
+    checkRow(row);
+    if (this.epochDays[column] == null) {
+      return RecordContext.NO_VALUE;
+    }
+    int epochDay = this.epochDays[column][row];
+    return epochDay == NO_DAY ? RecordContext.NO_VALUE : epochDay;
+  }
+
+  /**
+   * Gets a record as a row, the values are the kept Strings so nothing is copied
+   */
+  CsvRow getRow(int row) {
+    checkRow(row);
+    return new Row(row);
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= this.size) {
+      throw new IndexOutOfBoundsException("Row " + row + " of " + this.size);
+    }
+  }
+
+  private class Row implements CsvRow {
+    private final int index;
+
+    private Row(int index) {
+      this.index = index;
+    }
+
+    @Override
+    public int size() {
+      return fields.length;
+    }
+
+    @Override
+    public String get(int column) {
+      if (column < 0 || column >= fields.length) {
+        throw new ArrayIndexOutOfBoundsException(column);
+      }
+      return value(this.index, column);
+    }
+
+    @Override
+    public CharSequence getChars(int column) {
+      return get(column);
+    }
+  }
+
+  /**
+   * The distinct values of one column in an open-addressing hash table keyed by their chars, so a value read in place
+   * can be looked up without making a String of it
+   */
+  private static class Dictionary {
+    private final DateParser dateParser;
+    private int size = 0;
+    private String[] values = new String[16];
+    private int[] epochDays;
+    /** each slot holds a value's hash in the high half and its code plus one in the low half, 0 for an empty slot */
+    private long[] table = new long[32];
+
+    private Dictionary(Field field, DateParser dateParser) {
+      this.dateParser = dateParser;
+      this.epochDays = field.isDate() ? new int[16] : null;
+    }
+
+    private int add(CsvRow row, int column) {
+      CharSequence chars = row.getChars(column);
+      int hash = hash(chars);
+      int mask = this.table.length - 1;
+      int slot = slot(hash, mask);
+      for (long entry = this.table[slot]; entry != 0; entry = this.table[slot]) {
+        // the hash is compared first so a lookup only reads the value it's after
+        int code = (int)entry - 1;
+        if ((int)(entry >>> 32) == hash && this.values[code].contentEquals(chars)) {
+          return code;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      int code = append(row.get(column));
+      this.table[slot] = ((long)hash << 32) | (code + 1);
+      // keep the table at most half full
+      if (this.size * 2 > this.table.length) {
+        rehash(this.table.length * 2);
+      }
+      return code;
+    }
+
+    private int append(String value) {
+      if (this.size == this.values.length) {
+        int capacity = this.size * 2;
+        this.values = Arrays.copyOf(this.values, capacity);
+        if (this.epochDays != null) {
+          this.epochDays = Arrays.copyOf(this.epochDays, capacity);
+        }
+      }
+      int code = this.size;
+      this.values[code] = value;
+      if (this.epochDays != null) {
+        this.epochDays[code] = toEpochDay(value, this.dateParser);
+      }
+      this.size += 1;
+      return code;
+    }
+
+    private void rehash(int tableSize) {
+      long[] table = new long[tableSize];
+      int mask = tableSize - 1;
+      for (long entry : this.table) {
+        if (entry != 0) {
+          int slot = slot((int)(entry >>> 32), mask);
+          while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          table[slot] = entry;
+        }
+      }
+      this.table = table;
+    }
+
+    /**
+     * The same hash as {@link String#hashCode()}
+     */
+    private static int hash(CharSequence chars) {
+      int hash = 0;
+      for (int i = 0; i < chars.length(); i++) {
+        hash = 31 * hash + chars.charAt(i);
+      }
+      return hash;
+    }
+
+    /**
+     * Scrambles a hash before it's used as a slot. Values like subject IDs that count up have hashes that count up too,
+     * which would fill runs of neighbouring slots and make lookups probe all the way along them.
+     */
+    private static int slot(int hash, int mask) {
+      // the MurmurHash3 finalizer, every bit of the hash moves every bit of the slot
+      int mixed = (hash ^ (hash >>> 16)) * 0x85EBCA6B;
+      mixed = (mixed ^ (mixed >>> 13)) * 0xC2B2AE35;
+      return (mixed ^ (mixed >>> 16)) & mask;
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.pharmgkb.account.file;
+
+import org.pharmgkb.account.DateUtils;
+import org.pharmgkb.account.csv.CsvRow;
+import org.pharmgkb.account.data.DateParser;
+import org.pharmgkb.account.data.FieldPattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.lang.invoke.MethodHandles;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * One record of a data file along with what has been worked out about its cells so far. Validation and the output plan
+ * both read cells through the context so each cell is only checked for missing data once, and the anchor dates that
+ * derived columns count from, like the enrollment date, are only parsed once per record no matter how many columns
+ * use them. A context is reused from record to record with {@link #reset(CsvRow)} and is not thread-safe.
+ *
+ * A record that's shorter than it should be reads as empty, missing values past its end, so every mode makes the same
+ * processed row for it. Its length is reported when it's validated.
+ */
+class RecordContext {
+  private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  /** the epoch day or epoch second given for a cell that is missing or can't be parsed */
+  static final long NO_VALUE = Long.MIN_VALUE;
+  private static final long NOT_PARSED = Long.MIN_VALUE + 1;
+  private static final byte UNKNOWN = 0;
+  private static final byte PRESENT = 1;
+  private static final byte MISSING = 2;
+
+  private CsvRow row;
+  private ColumnarDataset dataset;
+  private int datasetRow;
+  private byte[] missing = new byte[0];
+  private long[] epochDays = new long[0];
+  private long[] epochSeconds = new long[0];
+
+  /**
+   * Points this context at the next record and forgets everything about the last one
+   * @param row the record to work on
+   * @return this context
+   */
+  RecordContext reset(@Nonnull CsvRow row) {
+    this.row = row;
+    this.dataset = null;
+    if (this.missing.length < row.size()) {
+      this.missing = new byte[row.size()];
+      this.epochDays = new long[row.size()];
+      this.epochSeconds = new long[row.size()];
+    } else {
+      Arrays.fill(this.missing, 0, row.size(), UNKNOWN);
+    }
+    Arrays.fill(this.epochDays, 0, row.size(), NOT_PARSED);
+    Arrays.fill(this.epochSeconds, 0, row.size(), NOT_PARSED);
+    return this;
+  }
+
+  /**
+   * Points this context at a record kept in a dataset. The epoch days of date columns are read from the dataset instead
+   * of being parsed again.
+   * @param dataset the dataset the record is in
+   * @param row the index of the record in the dataset
+   * @return this context
+   */
+  RecordContext reset(@Nonnull ColumnarDataset dataset, int row) {
+    reset(dataset.getRow(row));
+    this.dataset = dataset;
+    this.datasetRow = row;
+    return this;
+  }
+
+  CsvRow getRow() {
+    return this.row;
+  }
+
+  /**
+   * Gets the value of the given column, or an empty value if the record ends before it
+   */
+  String get(int column) {
+    return column < this.row.size() ? this.row.get(column) : "";
+  }
+
+  /**
+   * Gets the value of the given column for checking, see {@link CsvRow#getChars(int)}, or an empty value if the record
+   * ends before it
+   */
+  CharSequence getChars(int column) {
+    return column < this.row.size() ? this.row.getChars(column) : "";
+  }
+
+  /**
+   * Is the value of the given column missing data, see {@link FieldPattern#isMissing}. The answer is remembered until
+   * the next {@link #reset(CsvRow)}.
+   * @param column the column index in the record
+   * @return true if the value is missing data
+   */
+  boolean isMissing(int column) {
+    if (column >= this.row.size()) {
+      return true;
+    }
+    byte state = this.missing[column];
+    if (state == UNKNOWN) {
+      state = FieldPattern.isMissing(this.row.getChars(column)) ? MISSING : PRESENT;
+      this.missing[column] = state;
+    }
+    return state == MISSING;
+  }
+
+  /**
+   * Gets the date in the given column as a day count from the epoch. The date is parsed the first time it's asked for
+   * and remembered until the next {@link #reset(CsvRow)}. For a record in a dataset the date is the one the dataset
+   * parsed when the record was added.
+   * @param column the column index of a date field in the record
+   * @param dateParser the parser to read the date with
+   * @return the epoch day or {@link #NO_VALUE} if the value is missing or isn't a date
+   */
+  long getEpochDay(int column, @Nonnull DateParser dateParser) {
+    if (column >= this.row.size()) {
+      return NO_VALUE;
+    }
+    long epochDay = this.epochDays[column];
+    if (epochDay == NOT_PARSED) {
+      if (this.dataset != null && this.dataset.isDate(column)) {
+        epochDay = this.dataset.getEpochDay(this.datasetRow, column);
+      } else {
+        LocalDate date = isMissing(column) ? null : dateParser.parse(this.row.get(column));
+        epochDay = date == null ? NO_VALUE : date.toEpochDay();
+      }
+      this.epochDays[column] = epochDay;
+    }
+    return epochDay;
+  }
+
+  /**
+   * Gets the date in one column and the time of day in another as a second count from the epoch, with the date and time
+   * read as UTC. The result is remembered under the date column until the next {@link #reset(CsvRow)}.
+   * @param dateColumn the column index of a date field in the record
+   * @param timeColumn the column index of the time of day that goes with the date
+   * @return the epoch second or {@link #NO_VALUE} if either value is missing or they can't be parsed
+   */
+  long getEpochSecond(int dateColumn, int timeColumn) {
+    if (dateColumn >= this.row.size()) {
+      return NO_VALUE;
+    }
+    long epochSecond = this.epochSeconds[dateColumn];
+    if (epochSecond == NOT_PARSED) {
+      epochSecond = NO_VALUE;
+      if (!isMissing(dateColumn) && !isMissing(timeColumn)) {
+        try {
+          epochSecond = DateUtils.parseDateTime(this.row.get(dateColumn), this.row.get(timeColumn))
+              .toEpochSecond(ZoneOffset.UTC);
+        } catch (DateTimeParseException ex) {
+          sf_logger.warn("Could not parse DateTime for " + this.row.get(0), ex);
+        }
+      }
+      this.epochSeconds[dateColumn] = epochSecond;
+    }
+    return epochSecond;
+  }
+}
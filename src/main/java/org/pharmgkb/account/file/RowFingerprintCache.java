@@ -0,0 +1,399 @@
+package org.pharmgkb.account.file;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import org.pharmgkb.account.ExcelUtils;
+import org.pharmgkb.account.csv.CsvRow;
+import org.pharmgkb.account.validation.ValidationErrorKind;
+import org.pharmgkb.account.validation.ValidationResults;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The fingerprints of the records of a data file from the last time it was processed, along with the validation errors
+ * and processed output line each record had. Sites send the same file again with only a few rows corrected, so a record
+ * whose fingerprint hasn't changed can reuse what was worked out for it last time instead of being validated and
+ * transformed again.
+ *
+ * Records are keyed by subject ID. The cache file starts with a hash of everything besides the record itself that
+ * goes into the results, like the field rules and site keys, so a cache made under different rules is never used.
+ *
+ * Only the fingerprint and file offset of each record are kept in memory, an entry's errors and output line are read
+ * from the file when the record is looked up. Records are looked up in about the order they were written, so reads go
+ * through a window of the file that's refilled as it's passed. The index still grows with the number of records, at
+ * about 100 bytes a subject, but not with the width of the processed rows.
+ */
+class RowFingerprintCache implements Closeable {
+  private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final HashFunction sf_schemaHashFunction = Hashing.farmHashFingerprint64();
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  /** "ACRC", marks the start of a cache file */
+  private static final int MAGIC = 0x41435243;
+  /** change this whenever the cache file layout changes */
+  private static final int FORMAT_VERSION = 2;
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final byte ENTRY = 1;
+  private static final byte END = 0;
+  /** the error column given for a record of the wrong length, which isn't about one cell */
+  private static final int NO_COLUMN = -1;
+  static final RowFingerprintCache EMPTY = new RowFingerprintCache(null, null, new HashMap<>());
+
+  private final Path path;
+  private final FileChannel channel;
+  private final Map<String, Location> locations;
+  private ByteBuffer window = ByteBuffer.allocate(BUFFER_SIZE);
+  /** the file offset of the start of the window */
+  private long windowStart = 0;
+
+  private RowFingerprintCache(Path path, FileChannel channel, Map<String, Location> locations) {
+    this.path = path;
+    this.channel = channel;
+    this.locations = locations;
+    this.window.limit(0);
+  }
+
+  /**
+   * Reads the cache left by the last run. A cache that's missing, unreadable or made under a different schema gives
+   * an empty cache so every record is worked out again.
+   * @param path the cache file
+   * @param schemaHash the hash of the rules the records will be processed under
+   * @return the cache, never null
+   */
+  static RowFingerprintCache load(@Nonnull Path path, long schemaHash) {
+    Map<String, Location> locations = new HashMap<>();
+    try (CountingInputStream counter = new CountingInputStream(
+        new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+      DataInputStream in = new DataInputStream(counter);
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || in.readLong() != schemaHash) {
+        sf_logger.info("Ignoring row cache {} made under different rules", path);
+        return EMPTY;
+      }
+      while (in.readByte() == ENTRY) {
+        String subjectId = readString(in);
+        long offset = counter.getCount();
+        long fingerprint = Entry.skip(in);
+        locations.put(subjectId, new Location(fingerprint, offset, (int)(counter.getCount() - offset)));
+      }
+    } catch (NoSuchFileException ex) {
+      sf_logger.info("No row cache at {}, every record will be validated", path);
+      return EMPTY;
+    } catch (IOException ex) {
+      sf_logger.warn("Ignoring unreadable row cache " + path, ex);
+      return EMPTY;
+    }
+    try {
+      sf_logger.info("Read {} cached rows from {}", locations.size(), path);
+      return new RowFingerprintCache(path, FileChannel.open(path, StandardOpenOption.READ), locations);
+    } catch (IOException ex) {
+      sf_logger.warn("Ignoring unreadable row cache " + path, ex);
+      return EMPTY;
+    }
+  }
+
+  /**
+   * Starts a new cache file. It's written next to the old one and only replaces it on {@link Output#commit()}, so a
+   * failed run leaves the old cache alone.
+   * @param path the cache file
+   * @param schemaHash the hash of the rules the records are processed under
+   * @return the output to add entries to
+   * @throws IOException can occur when the file can't be created
+   */
+  static Output create(@Nonnull Path path, long schemaHash) throws IOException {
+    return new Output(path, schemaHash);
+  }
+
+  /**
+   * Makes a 64-bit FNV-1a fingerprint of every value in a record. The chars are hashed straight from the values, a
+   * general purpose {@link Hasher} copies them into a byte buffer first which costs more than validating the record.
+   * @param row a record from a data file
+   * @return the fingerprint
+   */
+  static long fingerprint(@Nonnull CsvRow row) {
+    long hash = (FNV_OFFSET_BASIS ^ row.size()) * FNV_PRIME;
+    for (int column = 0; column < row.size(); column++) {
+      CharSequence value = row.getChars(column);
+      // the length keeps "a","bc" apart from "ab","c"
+      hash = (hash ^ value.length()) * FNV_PRIME;
+      for (int i = 0; i < value.length(); i++) {
+        hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+      }
+    }
+    return hash;
+  }
+
+  /**
+   * Starts a hash of the things the cached results depend on, see {@link #load(Path, long)}
+   */
+  static Hasher newSchemaHasher() {
+    return sf_schemaHashFunction.newHasher().putInt(FORMAT_VERSION);
+  }
+
+  /**
+   * Gets what was worked out for a record last time
+   * @param subjectId the subject ID of the record
+   * @param fingerprint the fingerprint of the record now
+   * @return the cached entry or null if the subject is new or its record has changed
+   */
+  @Nullable Entry get(@Nonnull String subjectId, long fingerprint) {
+    Location location = this.locations.get(subjectId);
+    if (location == null || location.fingerprint != fingerprint) {
+      return null;
+    }
+    try {
+      return Entry.read(read(location.offset, location.length));
+    } catch (IOException ex) {
+      sf_logger.warn("Couldn't read the cached row of " + subjectId + " from " + this.path, ex);
+      return null;
+    }
+  }
+
+  int size() {
+    return this.locations.size();
+  }
+
+  /**
+   * Closes the cache file, this has to be done before a new cache is committed in its place
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.channel != null) {
+      this.channel.close();
+    }
+  }
+
+  /**
+   * Gets a buffer positioned at the given part of the cache file, refilling the window from the file if it isn't
+   * already in it
+   */
+  private ByteBuffer read(long offset, int length) throws IOException {
+    if (offset < this.windowStart || offset + length > this.windowStart + this.window.limit()) {
+      if (length > this.window.capacity()) {
+        this.window = ByteBuffer.allocate(length);
+      }
+      this.window.clear();
+      this.windowStart = offset;
+      while (this.window.position() < length) {
+        if (this.channel.read(this.window, offset + this.window.position()) < 0) {
+          throw new EOFException("Row cache ends in the middle of an entry");
+        }
+      }
+      this.window.flip();
+    }
+    this.window.position((int)(offset - this.windowStart));
+    return this.window;
+  }
+
+  /**
+   * Where a record's entry is in the cache file, along with the fingerprint it was made for
+   */
+  private static class Location {
+    private final long fingerprint;
+    private final long offset;
+    private final int length;
+
+    private Location(long fingerprint, long offset, int length) {
+      this.fingerprint = fingerprint;
+      this.offset = offset;
+      this.length = length;
+    }
+  }
+
+  /**
+   * What was worked out for one record: the kind and column of each of its validation errors and its processed row,
+   * kept as the CSV line it's written as so a reused row doesn't have to be formatted again
+   */
+  static class Entry {
+    private final long fingerprint;
+    private final byte[] errorKinds;
+    private final int[] errorColumns;
+    private final String outputLine;
+
+    private Entry(long fingerprint, byte[] errorKinds, int[] errorColumns, String outputLine) {
+      this.fingerprint = fingerprint;
+      this.errorKinds = errorKinds;
+      this.errorColumns = errorColumns;
+      this.outputLine = outputLine;
+    }
+
+    /**
+     * Makes an entry from the errors a record just added to the results
+     * @param fingerprint the fingerprint of the record
+     * @param results the results the record was validated into
+     * @param firstError the size of the results before the record was validated
+     * @param outputLine the processed row of the record formatted as a CSV line, with the line separator
+     */
+    static Entry of(long fingerprint, @Nonnull ValidationResults results, int firstError, @Nonnull String outputLine) {
+      int errorCount = results.size() - firstError;
+      byte[] errorKinds = new byte[errorCount];
+      int[] errorColumns = new int[errorCount];
+      for (int i = 0; i < errorCount; i++) {
+        ValidationErrorKind kind = results.getKind(firstError + i);
+        errorKinds[i] = (byte)kind.ordinal();
+        errorColumns[i] = kind == ValidationErrorKind.UNEXPECTED_LENGTH
+            ? NO_COLUMN
+            : ExcelUtils.getColumnIndex(results.getLocation(firstError + i));
+      }
+      return new Entry(fingerprint, errorKinds, errorColumns, outputLine);
+    }
+
+    /**
+     * Adds this entry's errors for the record, now at the given line, to the results along with a count of the subject,
+     * the same way {@link AbstractDataFile#validateRow} would have
+     * @return the number of errors added
+     */
+    int replay(@Nonnull CsvRow row, int lineNumber, @Nonnull AbstractDataFile dataFile,
+        @Nonnull ValidationResults results) {
+      ValidationErrorKind[] kinds = ValidationErrorKind.values();
+      for (int i = 0; i < this.errorKinds.length; i++) {
+        ValidationErrorKind kind = kinds[this.errorKinds[i]];
+        int column = this.errorColumns[i];
+        if (column == NO_COLUMN) {
+          results.addUnexpectedLength(lineNumber, row.size());
+        } else {
+          results.add(kind, dataFile.getExpectedFields()[column], ExcelUtils.cellLocation(column, lineNumber),
+              AbstractDataFile.getSite(row), row.get(0), row.get(column));
+        }
+      }
+      results.addSubject(this.errorKinds.length == 0);
+      return this.errorKinds.length;
+    }
+
+    String getOutputLine() {
+      return this.outputLine;
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+      out.writeLong(this.fingerprint);
+      out.writeInt(this.errorKinds.length);
+      for (int i = 0; i < this.errorKinds.length; i++) {
+        out.writeByte(this.errorKinds[i]);
+        out.writeInt(this.errorColumns[i]);
+      }
+      writeString(out, this.outputLine);
+    }
+
+    /**
+     * Checks an entry written by {@link #write(DataOutputStream)} and skips past it
+     * @return the fingerprint of the entry
+     */
+    private static long skip(DataInputStream in) throws IOException {
+      long fingerprint = in.readLong();
+      int errorCount = in.readInt();
+      if (errorCount < 0) {
+        throw new IOException("Bad error count " + errorCount);
+      }
+      for (int i = 0; i < errorCount; i++) {
+        byte errorKind = in.readByte();
+        if (errorKind < 0 || errorKind >= ValidationErrorKind.values().length) {
+          throw new IOException("Unknown error kind " + errorKind);
+        }
+        in.readInt();
+      }
+      int length = in.readInt();
+      if (length < 0) {
+        throw new IOException("Bad string length " + length);
+      }
+      ByteStreams.skipFully(in, length);
+      return fingerprint;
+    }
+
+    /**
+     * Reads an entry that was checked by {@link #skip(DataInputStream)} when the cache was loaded
+     */
+    private static Entry read(ByteBuffer in) {
+      long fingerprint = in.getLong();
+      int errorCount = in.getInt();
+      byte[] errorKinds = new byte[errorCount];
+      int[] errorColumns = new int[errorCount];
+      for (int i = 0; i < errorCount; i++) {
+        errorKinds[i] = in.get();
+        errorColumns[i] = in.getInt();
+      }
+      int length = in.getInt();
+      String outputLine = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+      return new Entry(fingerprint, errorKinds, errorColumns, outputLine);
+    }
+  }
+
+  /**
+   * A cache file being written, entries are added in record order as they're worked out
+   */
+  static class Output implements Closeable {
+    private final Path path;
+    private final Path tempPath;
+    private final DataOutputStream out;
+    private boolean committed = false;
+
+    private Output(Path path, long schemaHash) throws IOException {
+      this.path = path;
+      this.tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+      this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.tempPath), BUFFER_SIZE));
+      this.out.writeInt(MAGIC);
+      this.out.writeInt(FORMAT_VERSION);
+      this.out.writeLong(schemaHash);
+    }
+
+    void add(@Nonnull String subjectId, @Nonnull Entry entry) throws IOException {
+      this.out.writeByte(ENTRY);
+      writeString(this.out, subjectId);
+      entry.write(this.out);
+    }
+
+    /**
+     * Finishes the cache file and puts it in place of the old one
+     */
+    void commit() throws IOException {
+      this.out.writeByte(END);
+      this.out.close();
+      Files.move(this.tempPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      this.committed = true;
+    }
+
+    /**
+     * Throws away the new cache file if it wasn't committed
+     */
+    @Override
+    public void close() throws IOException {
+      if (!this.committed) {
+        this.out.close();
+        Files.deleteIfExists(this.tempPath);
+      }
+    }
+  }
+
+  // strings are written as UTF-8 with an int length since a line can be longer than writeUTF allows
+  private static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Bad string length " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,96 @@
+package org.pharmgkb.account.output;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An output stream that collects bytes in a buffer and hands them to a channel only when the buffer is full, the
+ * stream is flushed or it's closed. Writes bigger than the buffer go straight to the channel. Not thread-safe.
+ *
+ * The buffer is on the heap. A direct buffer per output is off-heap memory that's only given back when the buffer is
+ * garbage collected, while the channel copies a heap buffer through the direct buffer the JDK already keeps for each
+ * writing thread, so there's only ever one per thread.
+ */
+class ChannelOutputStream extends OutputStream {
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private boolean closed = false;
+
+  ChannelOutputStream(@Nonnull WritableByteChannel channel, int bufferSize) {
+    this.channel = channel;
+    this.buffer = ByteBuffer.allocate(bufferSize);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    checkOpen();
+    if (!this.buffer.hasRemaining()) {
+      drain();
+    }
+    this.buffer.put((byte)b);
+  }
+
+  @Override
+  public void write(@Nonnull byte[] b, int off, int len) throws IOException {
+    checkOpen();
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len >= this.buffer.capacity()) {
+      drain();
+      writeFully(ByteBuffer.wrap(b, off, len));
+      return;
+    }
+    int offset = off;
+    int remaining = len;
+    while (remaining > 0) {
+      if (!this.buffer.hasRemaining()) {
+        drain();
+      }
+      int count = Math.min(remaining, this.buffer.remaining());
+      this.buffer.put(b, offset, count);
+      offset += count;
+      remaining -= count;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    checkOpen();
+    drain();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    try {
+      drain();
+    } finally {
+      this.channel.close();
+    }
+  }
+
+  private void drain() throws IOException {
+    this.buffer.flip();
+    writeFully(this.buffer);
+    this.buffer.clear();
+  }
+
+  private void writeFully(ByteBuffer bytes) throws IOException {
+    while (bytes.hasRemaining()) {
+      this.channel.write(bytes);
+    }
+  }
+
+  private void checkOpen() throws IOException {
+    if (this.closed) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package org.pharmgkb.account.output;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes outputs as files in a directory. Each file is written through a {@link FileChannel} in blocks the size of the
+ * buffer, so a report made of many small writes still reaches the disk in a few large ones, and can optionally be gzip
+ * compressed as it's written.
+ */
+public class FileOutputSink implements OutputSink {
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+  public static final String GZIP_EXTENSION = ".gz";
+  private static final int GZIP_BUFFER_SIZE = 1 << 16;
+  /** the "out" directory with the default buffer and no compression, where outputs have always been written */
+  public static final FileOutputSink DEFAULT = new FileOutputSink(Paths.get("out"), DEFAULT_BUFFER_SIZE, false);
+
+  private final Path directory;
+  private final int bufferSize;
+  private final boolean gzip;
+
+  /**
+   * Makes a sink for a directory, the directory has to exist before outputs are opened
+   * @param directory the directory to write files to
+   * @param bufferSize the number of bytes held before they're written to a file
+   * @param gzip true to gzip each file and add ".gz" to its name
+   */
+  public FileOutputSink(@Nonnull Path directory, int bufferSize, boolean gzip) {
+    Preconditions.checkArgument(bufferSize > 0, "Buffer size must be positive");
+    this.directory = directory;
+    this.bufferSize = bufferSize;
+    this.gzip = gzip;
+  }
+
+  @Override
+  public Writer open(@Nonnull String filename) throws IOException {
+    // the same charset FileWriter used, so uncompressed outputs are unchanged
+    return new OutputStreamWriter(openStream(filename), Charset.defaultCharset());
+  }
+
+  @Override
+  public OutputStream openStream(@Nonnull String filename) throws IOException {
+    OutputStream out = new ChannelOutputStream(
+        FileChannel.open(getPath(filename), StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING),
+        this.bufferSize);
+    if (this.gzip) {
+      try {
+        out = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+      } catch (IOException ex) {
+        out.close();
+        throw ex;
+      }
+    }
+    return out;
+  }
+
+  @Override
+  public Path getPath(@Nonnull String filename) {
+    return this.directory.resolve(this.gzip ? filename + GZIP_EXTENSION : filename);
+  }
+
+  public Path getDirectory() {
+    return this.directory;
+  }
+
+  public int getBufferSize() {
+    return this.bufferSize;
+  }
+
+  public boolean isGzip() {
+    return this.gzip;
+  }
+}
@@ -0,0 +1,37 @@
+package org.pharmgkb.account.output;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.file.Path;
+
+/**
+ * A place the processed files and validation reports are written to. Outputs are named by their file name alone, the
+ * sink decides where they go and how the bytes get there.
+ */
+public interface OutputSink {
+
+  /**
+   * Opens a new output, replacing anything already written under the same name
+   * @param filename the file name of the output, like "account_clopidogrel_processed.csv"
+   * @return a writer for the output, closing it finishes the output
+   * @throws IOException can occur when the output can't be created
+   */
+  Writer open(@Nonnull String filename) throws IOException;
+
+  /**
+   * Opens a new output for bytes, like a binary export, replacing anything already written under the same name
+   * @param filename the file name of the output
+   * @return a stream for the output, closing it finishes the output
+   * @throws IOException can occur when the output can't be created
+   */
+  OutputStream openStream(@Nonnull String filename) throws IOException;
+
+  /**
+   * Gets the path an output is written to
+   * @param filename the file name of the output
+   * @return the path of the output, which may have an extra extension like ".gz"
+   */
+  Path getPath(@Nonnull String filename);
+}
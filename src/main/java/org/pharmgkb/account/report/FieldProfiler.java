@@ -0,0 +1,170 @@
+package org.pharmgkb.account.report;
+
+import org.pharmgkb.account.data.Field;
+import org.pharmgkb.account.validation.ValidationErrorKind;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts, for each {@link Field}, how many cells were checked, how many failed each kind of check and how long the
+ * checks took, so the fields that cost the most to validate or fail the most can be found.
+ *
+ * Counters live in one {@link AtomicLongArray} and are only ever added to, so one profiler can be shared by every data
+ * file and thread without locking. Check times go into a histogram of power-of-two buckets, so percentiles are only
+ * known to within a factor of two.
+ */
+public class FieldProfiler {
+  public static final String FILENAME = "account_field_profile.tsv";
+  public static final String HEADER = "Rank\tField\tChecked\tInvalid\tOut of Range\tBad Number\tTotal ms\tMean ns\tp50 ns\tp99 ns\tShare\n";
+
+  /** bucket 0 holds checks under a nanosecond, bucket b holds [2^(b-1), 2^b) ns and the last one everything longer */
+  static final int BUCKETS = 24;
+  private static final int INVALID = 0;
+  private static final int OUT_OF_RANGE = 1;
+  private static final int BAD_NUMBER = 2;
+  private static final int NANOS = 3;
+  /** every check lands in one bucket, so the buckets also add up to the number of cells checked */
+  private static final int FIRST_BUCKET = 4;
+  /** the counters of one field, next to each other so a check only touches its own field's counters */
+  private static final int STRIDE = FIRST_BUCKET + BUCKETS;
+
+  private final AtomicLongArray counters = new AtomicLongArray(Field.values().length * STRIDE);
+
+  /**
+   * Records one checked cell
+   * @param field the field the cell was checked against
+   * @param nanos how long the check took
+   * @param error the kind of check that failed, null if the cell passed
+   */
+  public void record(@Nonnull Field field, long nanos, @Nullable ValidationErrorKind error) {
+    int base = field.ordinal() * STRIDE;
+    if (error != null) {
+      this.counters.incrementAndGet(base + errorSlot(error));
+    }
+    this.counters.addAndGet(base + NANOS, nanos);
+    this.counters.incrementAndGet(base + FIRST_BUCKET + bucketOf(nanos));
+  }
+
+  private static int errorSlot(ValidationErrorKind error) {
+    switch (error) {
+      case INVALID:
+        return INVALID;
+      case OUT_OF_RANGE:
+        return OUT_OF_RANGE;
+      case BAD_NUMBER:
+        return BAD_NUMBER;
+      default:
+        throw new IllegalArgumentException("Not a field error: " + error);
+    }
+  }
+
+  static int bucketOf(long nanos) {
+    return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, nanos)));
+  }
+
+  public long getChecked(@Nonnull Field field) {
+    long checked = 0;
+    int base = field.ordinal() * STRIDE + FIRST_BUCKET;
+    for (int b = 0; b < BUCKETS; b++) {
+      checked += this.counters.get(base + b);
+    }
+    return checked;
+  }
+
+  /**
+   * Gets the number of cells of a field that failed one kind of check
+   * @param field the field
+   * @param error {@link ValidationErrorKind#INVALID} for pattern failures, {@link ValidationErrorKind#OUT_OF_RANGE} or
+   * {@link ValidationErrorKind#BAD_NUMBER} for values that passed the pattern but couldn't be read as numbers
+   */
+  public long getFailures(@Nonnull Field field, @Nonnull ValidationErrorKind error) {
+    return get(field, errorSlot(error));
+  }
+
+  public long getTotalNanos(@Nonnull Field field) {
+    return get(field, NANOS);
+  }
+
+  /**
+   * Gets a percentile of the check times of a field from its histogram
+   * @param field the field
+   * @param percentile the percentile from 0 to 1, like 0.99
+   * @return the upper end of the bucket the percentile falls in, 0 if the field wasn't checked
+   */
+  public long getPercentileNanos(@Nonnull Field field, double percentile) {
+    long checked = getChecked(field);
+    if (checked == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long)Math.ceil(checked * percentile));
+    long seen = 0;
+    int base = field.ordinal() * STRIDE + FIRST_BUCKET;
+    for (int b = 0; b < BUCKETS - 1; b++) {
+      seen += this.counters.get(base + b);
+      if (seen >= rank) {
+        return b == 0 ? 0 : 1L << b;
+      }
+    }
+    // past the last bounded bucket, the longest time isn't kept
+    return 1L << (BUCKETS - 1);
+  }
+
+  private long get(Field field, int slot) {
+    return this.counters.get(field.ordinal() * STRIDE + slot);
+  }
+
+  /**
+   * Gets the fields that were checked, the ones that took the most time in total first
+   */
+  public List<Field> getRanking() {
+    List<Field> fields = new ArrayList<>();
+    for (Field field : Field.values()) {
+      if (getChecked(field) > 0) {
+        fields.add(field);
+      }
+    }
+    fields.sort(Comparator.comparingLong(this::getTotalNanos).reversed()
+        .thenComparing(Comparator.comparingLong(this::getChecked).reversed()));
+    return fields;
+  }
+
+  /**
+   * Writes the ranked table as tab-separated lines under {@link #HEADER}
+   */
+  public void write(@Nonnull Writer writer) throws IOException {
+    List<Field> ranking = getRanking();
+    long totalNanos = 0;
+    for (Field field : ranking) {
+      totalNanos += getTotalNanos(field);
+    }
+
+    writer.write(HEADER);
+    StringBuilder line = new StringBuilder(128);
+    for (int i = 0; i < ranking.size(); i++) {
+      Field field = ranking.get(i);
+      long checked = getChecked(field);
+      long nanos = getTotalNanos(field);
+      line.setLength(0);
+      line.append(i + 1).append('\t')
+          .append(field.name()).append('\t')
+          .append(checked).append('\t')
+          .append(getFailures(field, ValidationErrorKind.INVALID)).append('\t')
+          .append(getFailures(field, ValidationErrorKind.OUT_OF_RANGE)).append('\t')
+          .append(getFailures(field, ValidationErrorKind.BAD_NUMBER)).append('\t')
+          .append(String.format(Locale.ROOT, "%.3f", nanos / 1e6)).append('\t')
+          .append(nanos / checked).append('\t')
+          .append(getPercentileNanos(field, 0.5)).append('\t')
+          .append(getPercentileNanos(field, 0.99)).append('\t')
+          .append(String.format(Locale.ROOT, "%.1f%%", totalNanos == 0 ? 0 : nanos * 100.0 / totalNanos)).append('\n');
+      writer.append(line);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package org.pharmgkb.account.report;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How far through its input a data file is, for the {@link ProgressReporter}.
+ *
+ * Only the thread reading the file updates it. Updates are published with {@link AtomicLong#lazySet}, an ordered store
+ * that doesn't wait for other threads, so updating on every row costs about as much as a plain field write. The
+ * reporter's thread sees each update a little late, which is fine for progress.
+ */
+public class FileProgress {
+  private final AtomicLong bytesRead = new AtomicLong();
+  private final AtomicLong rows = new AtomicLong();
+  private volatile long totalBytes = 0;
+  private volatile long startNanos = 0;
+  private volatile boolean reading = false;
+  private volatile boolean done = false;
+
+  /**
+   * Starts reading the file, called once per pass by the reading thread
+   * @param totalBytes the size of the file
+   */
+  public void start(long totalBytes) {
+    start(totalBytes, System.nanoTime());
+  }
+
+  void start(long totalBytes, long startNanos) {
+    this.bytesRead.lazySet(0);
+    this.rows.lazySet(0);
+    this.totalBytes = totalBytes;
+    this.startNanos = startNanos;
+    this.done = false;
+    this.reading = true;
+  }
+
+  /**
+   * Records how far the reading thread has got
+   * @param bytesRead the bytes of the file read so far
+   * @param rows the subject rows read so far
+   */
+  public void update(long bytesRead, long rows) {
+    this.bytesRead.lazySet(bytesRead);
+    this.rows.lazySet(rows);
+  }
+
+  /**
+   * Stops reading the file, whether it was read to the end or not
+   */
+  public void finish() {
+    this.reading = false;
+    this.done = true;
+  }
+
+  /**
+   * Is the file being read right now
+   */
+  public boolean isReading() {
+    return this.reading;
+  }
+
+  /**
+   * Has the file been read
+   */
+  public boolean isDone() {
+    return this.done;
+  }
+
+  public long getBytesRead() {
+    return this.done ? this.totalBytes : this.bytesRead.get();
+  }
+
+  public long getRows() {
+    return this.rows.get();
+  }
+
+  public long getTotalBytes() {
+    return this.totalBytes;
+  }
+
+  public long getStartNanos() {
+    return this.startNanos;
+  }
+}
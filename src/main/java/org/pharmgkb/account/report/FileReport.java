@@ -0,0 +1,130 @@
+package org.pharmgkb.account.report;
+
+import org.pharmgkb.account.JsonUtils;
+
+import javax.annotation.Nonnull;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The measurements of one data file for the run report: how many rows it had, the bytes read and written, and the time
+ * spent in each {@link Phase}.
+ *
+ * Phase times are added up from every thread that worked on the file, so when records are worked on in parallel the
+ * phases can add up to more than the file's wall time. Reports are thread-safe.
+ */
+public class FileReport {
+  private final PhaseTimer phases = new PhaseTimer();
+  private final Map<String, Long> outputs = new LinkedHashMap<>();
+  private long rows = 0;
+  private long validRows = 0;
+  private long bytesRead = 0;
+  private long wallNanos = 0;
+  /** -1 when the peak heap of the file couldn't be told apart from other files */
+  private long peakHeapBytes = -1;
+
+  /**
+   * Adds the phase times a thread measured while working on this file
+   */
+  public synchronized void addPhases(@Nonnull PhaseTimer timer) {
+    this.phases.add(timer);
+  }
+
+  /**
+   * Adds to the count of rows, called once per pass or chunk rather than per row
+   * @param rows the number of subject rows
+   * @param validRows the number of those rows without validation errors
+   */
+  public synchronized void addRows(long rows, long validRows) {
+    this.rows += rows;
+    this.validRows += validRows;
+  }
+
+  public synchronized void setBytesRead(long bytesRead) {
+    this.bytesRead = bytesRead;
+  }
+
+  /**
+   * Records an output file written for this data file
+   * @param name the file name of the output
+   * @param bytes the size of the output as written, after any compression
+   */
+  public synchronized void addOutput(@Nonnull String name, long bytes) {
+    this.outputs.put(name, bytes);
+  }
+
+  public synchronized void setWallNanos(long wallNanos) {
+    this.wallNanos = wallNanos;
+  }
+
+  /**
+   * Sets the most heap used while this file was worked on, only set when files are worked on one at a time
+   */
+  public synchronized void setPeakHeapBytes(long peakHeapBytes) {
+    this.peakHeapBytes = peakHeapBytes;
+  }
+
+  public synchronized long getRows() {
+    return this.rows;
+  }
+
+  public synchronized long getBytesRead() {
+    return this.bytesRead;
+  }
+
+  public synchronized long getBytesWritten() {
+    long bytes = 0;
+    for (long outputBytes : this.outputs.values()) {
+      bytes += outputBytes;
+    }
+    return bytes;
+  }
+
+  public synchronized long getPeakHeapBytes() {
+    return this.peakHeapBytes;
+  }
+
+  /**
+   * Gets the CPU time of every thread that worked on this file, added up
+   */
+  public synchronized long getCpuNanos() {
+    long cpu = 0;
+    for (Phase phase : Phase.values()) {
+      cpu += this.phases.getCpuNanos(phase);
+    }
+    return cpu;
+  }
+
+  synchronized void addPhasesTo(PhaseTimer total) {
+    total.add(this.phases);
+  }
+
+  synchronized void appendJson(StringBuilder json, String filename) {
+    json.append("{\"file\":");
+    JsonUtils.appendString(json, filename);
+    json.append(",\"rows\":").append(this.rows);
+    json.append(",\"validRows\":").append(this.validRows);
+    json.append(",\"wallMillis\":");
+    RunReport.appendMillis(json, this.wallNanos);
+    json.append(",\"cpuMillis\":");
+    RunReport.appendCpuMillis(json, getCpuNanos());
+    json.append(",\"rowsPerSecond\":");
+    RunReport.appendRate(json, this.rows, this.wallNanos);
+    json.append(",\"bytesRead\":").append(this.bytesRead);
+    json.append(",\"bytesWritten\":").append(getBytesWritten());
+    json.append(",\"peakHeapBytes\":").append(this.peakHeapBytes < 0 ? "null" : String.valueOf(this.peakHeapBytes));
+    json.append(",\"outputs\":{");
+    boolean first = true;
+    for (Map.Entry<String, Long> output : this.outputs.entrySet()) {
+      if (!first) {
+        json.append(',');
+      }
+      JsonUtils.appendString(json, output.getKey());
+      json.append(':').append(output.getValue());
+      first = false;
+    }
+    json.append("},\"phases\":");
+    RunReport.appendPhases(json, this.phases, this.rows, this.bytesRead, getBytesWritten());
+    json.append('}');
+  }
+}
@@ -0,0 +1,22 @@
+package org.pharmgkb.account.report;
+
+/**
+ * The phases a data file's run time is split into in the run report
+ */
+public enum Phase {
+  /** reading records from the data file */
+  PARSE,
+  /** checking records against their fields and collecting the errors */
+  VALIDATE,
+  /** making the processed rows */
+  TRANSFORM,
+  /** writing the processed files and validation reports */
+  WRITE;
+
+  /**
+   * Gets the name this phase goes by in the run report, like "parse"
+   */
+  public String getReportName() {
+    return name().toLowerCase();
+  }
+}
@@ -0,0 +1,121 @@
+package org.pharmgkb.account.report;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Adds up the wall time and CPU time one thread spends in each {@link Phase}. Starting a phase ends the one before it,
+ * so a loop that moves through the phases for every record only makes one call per phase.
+ *
+ * Wall time is measured for every phase but a thread's CPU time costs a few hundred nanoseconds to read, which adds up
+ * when phases change several times per record. CPU time is read at most once per {@link #CPU_WINDOW_NANOS} instead and
+ * the CPU time of each window is shared out between the phases that ran in it by their wall time. A phase that runs
+ * longer than a window, like a slow flush, ends its window and gets its own CPU time.
+ *
+ * Timers are not thread-safe, each thread keeps its own and adds it to a {@link FileReport} when it's done.
+ */
+public class PhaseTimer {
+  private static final ThreadMXBean sf_threads = ManagementFactory.getThreadMXBean();
+  private static final boolean sf_cpuTimeSupported = sf_threads.isCurrentThreadCpuTimeSupported();
+  private static final int PHASE_COUNT = Phase.values().length;
+  private static final long CPU_WINDOW_NANOS = 1000000;
+
+  private final long[] wallNanos = new long[PHASE_COUNT];
+  private final long[] cpuNanos = new long[PHASE_COUNT];
+  /** the wall time of each phase since the CPU time was last read */
+  private final long[] windowWallNanos = new long[PHASE_COUNT];
+  private Phase current = null;
+  private long wallStart;
+  private long windowWallStart;
+  private long windowCpuStart;
+
+  /**
+   * Ends the current phase, if there is one, and starts timing the given phase
+   * @param phase the phase the thread is moving into
+   */
+  public void start(Phase phase) {
+    long wall = System.nanoTime();
+    if (this.current == null) {
+      this.windowWallStart = wall;
+      this.windowCpuStart = readCpuTime();
+    } else {
+      end(wall);
+      if (wall - this.windowWallStart >= CPU_WINDOW_NANOS) {
+        endWindow(wall);
+      }
+    }
+    this.current = phase;
+    this.wallStart = wall;
+  }
+
+  /**
+   * Ends the current phase, it's fine to call this when no phase is running
+   */
+  public void stop() {
+    if (this.current != null) {
+      long wall = System.nanoTime();
+      end(wall);
+      endWindow(wall);
+      this.current = null;
+    }
+  }
+
+  private void end(long wall) {
+    long elapsed = wall - this.wallStart;
+    this.wallNanos[this.current.ordinal()] += elapsed;
+    this.windowWallNanos[this.current.ordinal()] += elapsed;
+  }
+
+  /**
+   * Reads the CPU time and shares out what was used since the last read between the phases of the window
+   */
+  private void endWindow(long wall) {
+    long cpu = readCpuTime();
+    long windowWall = 0;
+    for (long phaseWall : this.windowWallNanos) {
+      windowWall += phaseWall;
+    }
+    if (windowWall > 0) {
+      double cpuPerWall = (double)(cpu - this.windowCpuStart) / windowWall;
+      for (int i = 0; i < PHASE_COUNT; i++) {
+        this.cpuNanos[i] += Math.round(this.windowWallNanos[i] * cpuPerWall);
+        this.windowWallNanos[i] = 0;
+      }
+    }
+    this.windowWallStart = wall;
+    this.windowCpuStart = cpu;
+  }
+
+  /**
+   * Adds another timer's totals to this one, the other timer should be stopped
+   */
+  public void add(PhaseTimer other) {
+    for (int i = 0; i < PHASE_COUNT; i++) {
+      this.wallNanos[i] += other.wallNanos[i];
+      this.cpuNanos[i] += other.cpuNanos[i];
+    }
+  }
+
+  public long getWallNanos(Phase phase) {
+    return this.wallNanos[phase.ordinal()];
+  }
+
+  /**
+   * Gets the CPU time spent in a phase, measured to the nearest window
+   * @return the CPU time in nanoseconds, always 0 if the JVM can't measure thread CPU time
+   */
+  public long getCpuNanos(Phase phase) {
+    return this.cpuNanos[phase.ordinal()];
+  }
+
+  /**
+   * Can CPU time be measured on this JVM
+   */
+  public static boolean isCpuTimeSupported() {
+    return sf_cpuTimeSupported;
+  }
+
+  private static long readCpuTime() {
+    return sf_cpuTimeSupported ? sf_threads.getCurrentThreadCpuTime() : 0;
+  }
+}
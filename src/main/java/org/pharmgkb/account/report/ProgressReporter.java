@@ -0,0 +1,147 @@
+package org.pharmgkb.account.report;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs how far a run has got at a fixed interval: the percent of each data file read, its rows per second and an ETA
+ * worked out from the bytes left to read, and the same for all the files together.
+ *
+ * Progress is only read here, on a daemon thread of its own, from the {@link FileProgress} the reading threads update,
+ * so reporting adds no locking to the reading threads in any mode.
+ */
+public class ProgressReporter implements Closeable {
+  private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final double BYTES_PER_MB = 1 << 20;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final Map<String, FileProgress> files = new LinkedHashMap<>();
+  /** the size of each file when it was added, so files that haven't been started count towards the whole run */
+  private final Map<String, Long> fileSizes = new LinkedHashMap<>();
+  private final long intervalMillis;
+  private ScheduledExecutorService scheduler;
+  private long startNanos;
+
+  /**
+   * @param intervalMillis the time between progress lines
+   */
+  public ProgressReporter(long intervalMillis) {
+    Preconditions.checkArgument(intervalMillis > 0, "Progress interval must be positive");
+    this.intervalMillis = intervalMillis;
+  }
+
+  /**
+   * Adds a data file to report on, all files have to be added before {@link #start()}
+   * @param filename the name of the file used in the progress lines
+   * @param fileSize the size of the file
+   * @param progress the progress the file's reading thread updates
+   */
+  public void add(@Nonnull String filename, long fileSize, @Nonnull FileProgress progress) {
+    Preconditions.checkState(this.scheduler == null, "Files can't be added once reporting has started");
+    this.files.put(filename, progress);
+    this.fileSizes.put(filename, fileSize);
+  }
+
+  /**
+   * Starts logging progress, the first line comes after one interval
+   */
+  public void start() {
+    Preconditions.checkState(this.scheduler == null, "Reporting has already started");
+    this.startNanos = System.nanoTime();
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("progress").setDaemon(true).build()
+    );
+    this.scheduler.scheduleAtFixedRate(this::report, this.intervalMillis, this.intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Logs a line for each file being read and one for all the files
+   */
+  private void report() {
+    // anything thrown here would quietly cancel the schedule
+    try {
+      long now = System.nanoTime();
+      for (Map.Entry<String, FileProgress> file : this.files.entrySet()) {
+        if (file.getValue().isReading()) {
+          sf_logger.info(describe(file.getKey(), file.getValue(), now));
+        }
+      }
+      if (this.files.size() > 1) {
+        sf_logger.info(describeAll(now));
+      }
+    } catch (RuntimeException ex) {
+      sf_logger.warn("Couldn't report progress", ex);
+    }
+  }
+
+  /**
+   * Describes the progress of one file, like "clopidogrel.csv: 42.0% of 120.5 MB, 25000 rows at 8000 rows/s, ETA 0:00:15"
+   */
+  static String describe(String filename, FileProgress progress, long nowNanos) {
+    long bytesRead = progress.getBytesRead();
+    long totalBytes = progress.getTotalBytes();
+    long elapsedNanos = nowNanos - progress.getStartNanos();
+    return String.format(Locale.ROOT, "%s: %.1f%% of %.1f MB, %d rows at %.0f rows/s, ETA %s",
+        filename, percent(bytesRead, totalBytes), totalBytes / BYTES_PER_MB, progress.getRows(),
+        elapsedNanos <= 0 ? 0 : progress.getRows() * NANOS_PER_SECOND / elapsedNanos,
+        formatEta(bytesRead, totalBytes, elapsedNanos));
+  }
+
+  /**
+   * Describes the progress of all the files together since reporting started, files worked on at the same time are
+   * counted together so the ETA allows for them
+   */
+  private String describeAll(long nowNanos) {
+    long bytesRead = 0;
+    long totalBytes = 0;
+    long rows = 0;
+    for (Map.Entry<String, FileProgress> file : this.files.entrySet()) {
+      long fileSize = this.fileSizes.get(file.getKey());
+      bytesRead += Math.min(fileSize, file.getValue().getBytesRead());
+      totalBytes += fileSize;
+      rows += file.getValue().getRows();
+    }
+    long elapsedNanos = nowNanos - this.startNanos;
+    return String.format(Locale.ROOT, "All files: %.1f%% read, %d rows at %.0f rows/s, ETA %s",
+        percent(bytesRead, totalBytes), rows, elapsedNanos <= 0 ? 0 : rows * NANOS_PER_SECOND / elapsedNanos,
+        formatEta(bytesRead, totalBytes, elapsedNanos));
+  }
+
+  private static double percent(long bytesRead, long totalBytes) {
+    return totalBytes <= 0 ? 0 : bytesRead * 100.0 / totalBytes;
+  }
+
+  /**
+   * Works out the time left as the time taken so far scaled by the bytes left over the bytes read
+   * @return the time left as h:mm:ss or "unknown" until something's been read
+   */
+  static String formatEta(long bytesRead, long totalBytes, long elapsedNanos) {
+    if (bytesRead <= 0 || elapsedNanos <= 0) {
+      return "unknown";
+    }
+    long seconds = Math.round(elapsedNanos / NANOS_PER_SECOND * Math.max(0, totalBytes - bytesRead) / bytesRead);
+    return String.format(Locale.ROOT, "%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+  }
+
+  /**
+   * Stops logging progress
+   */
+  @Override
+  public void close() {
+    if (this.scheduler != null) {
+      this.scheduler.shutdownNow();
+    }
+  }
+}
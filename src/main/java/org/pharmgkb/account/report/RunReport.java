@@ -0,0 +1,211 @@
+package org.pharmgkb.account.report;
+
+import org.pharmgkb.account.JsonUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A machine-readable report of one run, written as JSON next to the outputs so runs can be compared to spot
+ * regressions and to plan for bigger submissions. It has the options the run used, the wall time, CPU time, rows per
+ * second, bytes read and written and peak heap of the whole run and of each data file, and the time spent in each
+ * {@link Phase}.
+ *
+ * Peak heap is the sum of the peaks of the heap memory pools, which can be a little more than the heap ever held at
+ * once since the pools don't all peak at the same moment.
+ */
+public class RunReport {
+  public static final String FILENAME = "account_run_report.json";
+  private static final double NANOS_PER_MILLI = 1e6;
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final Instant started = Instant.now();
+  private final long startNanos = System.nanoTime();
+  private final long startCpuNanos = readProcessCpuTime();
+  private final Map<String, String> options = new LinkedHashMap<>();
+  private final Map<String, FileReport> files = new LinkedHashMap<>();
+  private long peakHeapBytes = 0;
+
+  /**
+   * Records an option the run was made with
+   * @param name the option name
+   * @param value the value, numbers and booleans are written as JSON numbers and booleans, anything else as a string
+   */
+  public synchronized void setOption(@Nonnull String name, @Nonnull Object value) {
+    StringBuilder json = new StringBuilder();
+    if (value instanceof Number || value instanceof Boolean) {
+      json.append(value);
+    } else {
+      JsonUtils.appendString(json, value.toString());
+    }
+    this.options.put(name, json.toString());
+  }
+
+  /**
+   * Adds the report of a data file, in the order the files should be listed
+   */
+  public synchronized void addFile(@Nonnull String filename, @Nonnull FileReport report) {
+    this.files.put(filename, report);
+    this.peakHeapBytes = Math.max(this.peakHeapBytes, report.getPeakHeapBytes());
+  }
+
+  /**
+   * Writes the report as of now, the run's wall time and CPU time are measured up to this call
+   * @param writer the writer to send the JSON to, it isn't closed
+   */
+  public synchronized void write(@Nonnull Writer writer) throws IOException {
+    long wallNanos = System.nanoTime() - this.startNanos;
+    long cpuNanos = readProcessCpuTime() - this.startCpuNanos;
+    PhaseTimer phases = new PhaseTimer();
+    long rows = 0;
+    long bytesRead = 0;
+    long bytesWritten = 0;
+    for (FileReport file : this.files.values()) {
+      file.addPhasesTo(phases);
+      rows += file.getRows();
+      bytesRead += file.getBytesRead();
+      bytesWritten += file.getBytesWritten();
+    }
+
+    StringBuilder json = new StringBuilder();
+    json.append("{\"started\":\"").append(this.started).append('"');
+    json.append(",\"javaVersion\":");
+    JsonUtils.appendString(json, System.getProperty("java.version"));
+    json.append(",\"processors\":").append(Runtime.getRuntime().availableProcessors());
+    json.append(",\"maxHeapBytes\":").append(Runtime.getRuntime().maxMemory());
+    json.append(",\"options\":{");
+    boolean first = true;
+    for (Map.Entry<String, String> option : this.options.entrySet()) {
+      if (!first) {
+        json.append(',');
+      }
+      JsonUtils.appendString(json, option.getKey());
+      json.append(':').append(option.getValue());
+      first = false;
+    }
+    json.append("},\"rows\":").append(rows);
+    json.append(",\"wallMillis\":");
+    appendMillis(json, wallNanos);
+    json.append(",\"cpuMillis\":");
+    if (cpuNanos < 0) {
+      json.append("null");
+    } else {
+      appendMillis(json, cpuNanos);
+    }
+    json.append(",\"rowsPerSecond\":");
+    appendRate(json, rows, wallNanos);
+    json.append(",\"bytesRead\":").append(bytesRead);
+    json.append(",\"bytesWritten\":").append(bytesWritten);
+    json.append(",\"peakHeapBytes\":").append(Math.max(this.peakHeapBytes, getPeakHeapBytes()));
+    json.append(",\"phases\":");
+    appendPhases(json, phases, rows, bytesRead, bytesWritten);
+    json.append(",\"files\":[");
+    first = true;
+    for (Map.Entry<String, FileReport> file : this.files.entrySet()) {
+      if (!first) {
+        json.append(',');
+      }
+      file.getValue().appendJson(json, file.getKey());
+      first = false;
+    }
+    json.append("]}\n");
+    writer.append(json);
+  }
+
+  /**
+   * Gets the most heap used since the JVM started or since {@link #resetPeakHeap()}
+   */
+  public static long getPeakHeapBytes() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+
+  /**
+   * Starts measuring the peak heap again from what's in use now
+   */
+  public static void resetPeakHeap() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        pool.resetPeakUsage();
+      }
+    }
+  }
+
+  /**
+   * Reads the CPU time of the whole JVM, which unlike the phase times includes garbage collection and compilation
+   * @return the CPU time in nanoseconds or -1 if the JVM can't measure it
+   */
+  private static long readProcessCpuTime() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean)os).getProcessCpuTime();
+    }
+    return -1;
+  }
+
+  static void appendMillis(StringBuilder json, long nanos) {
+    json.append(String.format(Locale.ROOT, "%.3f", nanos / NANOS_PER_MILLI));
+  }
+
+  /**
+   * Appends CPU time in milliseconds, or null if the JVM can't measure thread CPU time
+   */
+  static void appendCpuMillis(StringBuilder json, long nanos) {
+    if (PhaseTimer.isCpuTimeSupported()) {
+      appendMillis(json, nanos);
+    } else {
+      json.append("null");
+    }
+  }
+
+  /**
+   * Appends rows per second, or null if no time was spent
+   */
+  static void appendRate(StringBuilder json, long rows, long nanos) {
+    if (nanos <= 0) {
+      json.append("null");
+    } else {
+      json.append(String.format(Locale.ROOT, "%.1f", rows * NANOS_PER_SECOND / nanos));
+    }
+  }
+
+  /**
+   * Appends an object of the time spent in each phase. Bytes read go with the parse phase and bytes written with the
+   * write phase.
+   */
+  static void appendPhases(StringBuilder json, PhaseTimer phases, long rows, long bytesRead, long bytesWritten) {
+    json.append('{');
+    for (Phase phase : Phase.values()) {
+      if (phase.ordinal() > 0) {
+        json.append(',');
+      }
+      json.append('"').append(phase.getReportName()).append("\":{\"wallMillis\":");
+      appendMillis(json, phases.getWallNanos(phase));
+      json.append(",\"cpuMillis\":");
+      appendCpuMillis(json, phases.getCpuNanos(phase));
+      json.append(",\"rowsPerSecond\":");
+      appendRate(json, rows, phases.getWallNanos(phase));
+      if (phase == Phase.PARSE) {
+        json.append(",\"bytesRead\":").append(bytesRead);
+      } else if (phase == Phase.WRITE) {
+        json.append(",\"bytesWritten\":").append(bytesWritten);
+      }
+      json.append('}');
+    }
+    json.append('}');
+  }
+}
@@ -0,0 +1,67 @@
+package org.pharmgkb.account.validation;
+
+import org.pharmgkb.account.ExcelUtils;
+import org.pharmgkb.account.JsonUtils;
+import org.pharmgkb.account.data.Field;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes validation errors as JSON Lines, one JSON object per error, for loading into other tools
+ */
+public class JsonLinesValidationSink implements ValidationSink {
+
+  private final Writer writer;
+  private final StringBuilder line = new StringBuilder(256);
+
+  /**
+   * @param writer the writer to send the errors to, it's closed when this sink is closed
+   */
+  public JsonLinesValidationSink(@Nonnull Writer writer) {
+    this.writer = writer;
+  }
+
+  @Override
+  public void write(@Nonnull ValidationResults results) throws IOException {
+    for (int i = 0; i < results.size(); i++) {
+      this.line.setLength(0);
+      appendLine(this.line, results, i);
+      this.writer.append(this.line);
+    }
+  }
+
+  private static void appendLine(StringBuilder line, ValidationResults results, int i) {
+    ValidationErrorKind kind = results.getKind(i);
+    line.append("{\"file\":");
+    JsonUtils.appendString(line, results.getFilename());
+    line.append(",\"kind\":\"").append(kind.name()).append('"');
+    line.append(",\"line\":").append(results.getLineNumber(i));
+
+    if (kind == ValidationErrorKind.UNEXPECTED_LENGTH) {
+      line.append(",\"expected\":").append(results.getExpectedLength());
+      line.append(",\"actual\":").append(results.getActualLength(i));
+    } else {
+      Field field = results.getField(i);
+      line.append(",\"column\":\"").append(ExcelUtils.getExcelColumnName(ExcelUtils.getColumnIndex(results.getLocation(i)) + 1)).append('"');
+      line.append(",\"field\":\"").append(field.name()).append('"');
+      if (kind == ValidationErrorKind.OUT_OF_RANGE) {
+        line.append(",\"range\":");
+        JsonUtils.appendString(line, field.getRangeDescription());
+      }
+      line.append(",\"site\":");
+      JsonUtils.appendString(line, results.getSite(i));
+      line.append(",\"subject\":");
+      JsonUtils.appendString(line, results.getSubject(i));
+      line.append(",\"value\":");
+      JsonUtils.appendString(line, results.getValue(i));
+    }
+    line.append("}\n");
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.writer.close();
+  }
+}
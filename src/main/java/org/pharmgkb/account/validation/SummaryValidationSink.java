@@ -0,0 +1,72 @@
+package org.pharmgkb.account.validation;
+
+import org.pharmgkb.account.data.Field;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Counts validation errors by kind and by field without formatting any of them, then writes a short summary when
+ * closed. This is all that's needed when only the totals matter.
+ */
+public class SummaryValidationSink implements ValidationSink {
+  private static final Logger sf_logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+  private static final Field[] sf_fields = Field.values();
+  private static final ValidationErrorKind[] sf_kinds = ValidationErrorKind.values();
+
+  private final Writer writer;
+  private final long[] kindCounts = new long[sf_kinds.length];
+  private final long[][] fieldCounts = new long[sf_fields.length][sf_kinds.length];
+  private String filename = null;
+  private long subjectCount = 0;
+  private long validSubjectCount = 0;
+
+  /**
+   * @param writer the writer to send the summary to, it's closed when this sink is closed
+   */
+  public SummaryValidationSink(@Nonnull Writer writer) {
+    this.writer = writer;
+  }
+
+  @Override
+  public void write(@Nonnull ValidationResults results) {
+    this.filename = results.getFilename();
+    this.subjectCount += results.getSubjectCount();
+    this.validSubjectCount += results.getValidSubjectCount();
+    for (int i = 0; i < results.size(); i++) {
+      ValidationErrorKind kind = results.getKind(i);
+      this.kindCounts[kind.ordinal()] += 1;
+      Field field = results.getField(i);
+      if (field != null) {
+        this.fieldCounts[field.ordinal()][kind.ordinal()] += 1;
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      sf_logger.info("{} valid subjects: {}/{}", this.filename, this.validSubjectCount, this.subjectCount);
+
+      this.writer.write(String.format("Valid subjects\t%d/%d\n", this.validSubjectCount, this.subjectCount));
+      for (ValidationErrorKind kind : sf_kinds) {
+        this.writer.write(String.format("%s\t%d\n", kind.name(), this.kindCounts[kind.ordinal()]));
+      }
+      this.writer.write("\nField\tKind\tCount\n");
+      for (Field field : sf_fields) {
+        for (ValidationErrorKind kind : sf_kinds) {
+          long count = this.fieldCounts[field.ordinal()][kind.ordinal()];
+          if (count > 0) {
+            this.writer.write(String.format("%s\t%s\t%d\n", field.name(), kind.name(), count));
+          }
+        }
+      }
+    } finally {
+      this.writer.close();
+    }
+  }
+}
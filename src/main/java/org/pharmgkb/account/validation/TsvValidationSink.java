@@ -0,0 +1,76 @@
+package org.pharmgkb.account.validation;
+
+import org.pharmgkb.account.ExcelUtils;
+import org.pharmgkb.account.data.Field;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes validation errors as the tab-separated report the sites get back, one line per error under a header line
+ */
+public class TsvValidationSink implements ValidationSink {
+  public static final String HEADER = "Site\tSubject ID\tCell Address\tField Name\tBad Value\n";
+
+  private final Writer writer;
+  private final StringBuilder line = new StringBuilder(128);
+
+  /**
+   * Starts a report by writing the header line
+   * @param writer the writer to send the report to, it's closed when this sink is closed
+   * @throws IOException can occur when writing the header
+   */
+  public TsvValidationSink(@Nonnull Writer writer) throws IOException {
+    this.writer = writer;
+    this.writer.write(HEADER);
+  }
+
+  @Override
+  public void write(@Nonnull ValidationResults results) throws IOException {
+    for (int i = 0; i < results.size(); i++) {
+      this.line.setLength(0);
+      appendLine(this.line, results, i);
+      this.writer.append(this.line);
+    }
+  }
+
+  /**
+   * Formats one error as it appears in the report
+   */
+  static void appendLine(StringBuilder line, ValidationResults results, int i) {
+    ValidationErrorKind kind = results.getKind(i);
+    if (kind == ValidationErrorKind.UNEXPECTED_LENGTH) {
+      // this message has never ended with a new line, so the next error continues on the same line
+      line.append("Line ").append(results.getLineNumber(i))
+          .append(" unexpected length: expected ").append(results.getExpectedLength())
+          .append(", got ").append(results.getActualLength(i));
+      return;
+    }
+
+    Field field = results.getField(i);
+    line.append(results.getSite(i)).append('\t')
+        .append(results.getSubject(i)).append('\t');
+    ExcelUtils.appendCellLocation(line, results.getLocation(i)).append('\t');
+    switch (kind) {
+      case INVALID:
+        line.append("invalid ").append(field.name());
+        break;
+      case OUT_OF_RANGE:
+        line.append("out of range ").append(field.name()).append(" [").append(field.getRangeDescription()).append(']');
+        break;
+      case BAD_NUMBER:
+        line.append("bad numerical value for ").append(field.name());
+        break;
+      default:
+        throw new RuntimeException("Unknown error kind " + kind);
+    }
+    line.append('\t').append(results.getValue(i)).append('\n');
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.writer.write("\n");
+    this.writer.close();
+  }
+}
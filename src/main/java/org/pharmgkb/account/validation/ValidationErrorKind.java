@@ -0,0 +1,15 @@
+package org.pharmgkb.account.validation;
+
+/**
+ * The kinds of problems validation can find in a data file
+ */
+public enum ValidationErrorKind {
+  /** the record doesn't have the number of columns the data file expects */
+  UNEXPECTED_LENGTH,
+  /** the value doesn't match the field's validation pattern */
+  INVALID,
+  /** the value is a number but it's outside the field's range */
+  OUT_OF_RANGE,
+  /** the value passed validation but can't be read as a number for the range check */
+  BAD_NUMBER
+}
@@ -0,0 +1,46 @@
+package org.pharmgkb.account.validation;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The formats a validation report can be written in, each with the file extension it's written under
+ */
+public enum ValidationFormat {
+  TSV("tsv"),
+  JSONL("jsonl"),
+  SUMMARY("summary.txt");
+
+  private final String extension;
+
+  ValidationFormat(String extension) {
+    this.extension = extension;
+  }
+
+  /**
+   * The extension used after ".validation." in the report file name
+   */
+  public String getExtension() {
+    return this.extension;
+  }
+
+  /**
+   * Makes a sink that writes a report in this format
+   * @param writer the writer to send the report to, it's closed when the sink is closed
+   * @return a new sink
+   * @throws IOException can occur when starting the report
+   */
+  public ValidationSink makeSink(@Nonnull Writer writer) throws IOException {
+    switch (this) {
+      case TSV:
+        return new TsvValidationSink(writer);
+      case JSONL:
+        return new JsonLinesValidationSink(writer);
+      case SUMMARY:
+        return new SummaryValidationSink(writer);
+      default:
+        throw new RuntimeException("Unknown validation format " + this);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package org.pharmgkb.account.validation;
+
+import org.pharmgkb.account.ExcelUtils;
+import org.pharmgkb.account.data.Field;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * The validation errors found in a data file, kept as parallel arrays of kinds, field ordinals, packed cell locations
+ * and references to the site, subject and bad value Strings of the records. Nothing is formatted until a
+ * {@link ValidationSink} asks for it, so collecting errors costs a few array slots each.
+ *
+ * Results aren't thread-safe. Workers validating parts of a file fill their own results which are then written to the
+ * sink in order.
+ */
+public class ValidationResults {
+  private static final Field[] sf_fields = Field.values();
+  private static final ValidationErrorKind[] sf_kinds = ValidationErrorKind.values();
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final String filename;
+  private final int expectedLength;
+  private int size = 0;
+  private byte[] kinds = new byte[0];
+  /** the field ordinal of each error, or the actual record length for {@link ValidationErrorKind#UNEXPECTED_LENGTH} */
+  private int[] fields = new int[0];
+  private long[] locations = new long[0];
+  private String[] sites = new String[0];
+  private String[] subjects = new String[0];
+  private String[] values = new String[0];
+  private int subjectCount = 0;
+  private int validSubjectCount = 0;
+
+  /**
+   * Makes an empty set of results
+   * @param filename the name of the data file that's validated
+   * @param expectedLength the number of columns the data file's records should have
+   */
+  public ValidationResults(@Nonnull String filename, int expectedLength) {
+    this.filename = filename;
+    this.expectedLength = expectedLength;
+  }
+
+  /**
+   * Adds an error about one cell of a record
+   * @param kind the kind of error
+   * @param field the field of the cell
+   * @param location the cell location made by {@link ExcelUtils#cellLocation(int, int)}
+   * @param site the site ID of the record
+   * @param subject the subject ID of the record
+   * @param value the bad value as it appears in the record
+   */
+  public void add(@Nonnull ValidationErrorKind kind, @Nonnull Field field, long location, String site, String subject, String value) {
+    int i = nextSlot();
+    this.kinds[i] = (byte)kind.ordinal();
+    this.fields[i] = field.ordinal();
+    this.locations[i] = location;
+    this.sites[i] = site;
+    this.subjects[i] = subject;
+    this.values[i] = value;
+  }
+
+  /**
+   * Adds an error about a record that doesn't have the expected number of columns
+   * @param lineNumber the line number of the record
+   * @param actualLength the number of columns the record has
+   */
+  public void addUnexpectedLength(int lineNumber, int actualLength) {
+    int i = nextSlot();
+    this.kinds[i] = (byte)ValidationErrorKind.UNEXPECTED_LENGTH.ordinal();
+    this.fields[i] = actualLength;
+    this.locations[i] = ExcelUtils.cellLocation(0, lineNumber);
+    this.sites[i] = null;
+    this.subjects[i] = null;
+    this.values[i] = null;
+  }
+
+  /**
+   * Counts a validated subject record
+   * @param valid true if no errors were found in the record
+   */
+  public void addSubject(boolean valid) {
+    this.subjectCount += 1;
+    if (valid) {
+      this.validSubjectCount += 1;
+    }
+  }
+
+  /**
+   * Forgets all errors and subject counts, keeping the arrays to be filled again
+   */
+  public void clear() {
+    Arrays.fill(this.sites, 0, this.size, null);
+    Arrays.fill(this.subjects, 0, this.size, null);
+    Arrays.fill(this.values, 0, this.size, null);
+    this.size = 0;
+    this.subjectCount = 0;
+    this.validSubjectCount = 0;
+  }
+
+  private int nextSlot() {
+    ensureCapacity(this.size + 1);
+    int slot = this.size;
+    this.size += 1;
+    return slot;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > this.kinds.length) {
+      int newCapacity = Math.max(capacity, Math.max(INITIAL_CAPACITY, this.kinds.length * 2));
+      this.kinds = Arrays.copyOf(this.kinds, newCapacity);
+      this.fields = Arrays.copyOf(this.fields, newCapacity);
+      this.locations = Arrays.copyOf(this.locations, newCapacity);
+      this.sites = Arrays.copyOf(this.sites, newCapacity);
+      this.subjects = Arrays.copyOf(this.subjects, newCapacity);
+      this.values = Arrays.copyOf(this.values, newCapacity);
+    }
+  }
+
+  public String getFilename() {
+    return this.filename;
+  }
+
+  public int getExpectedLength() {
+    return this.expectedLength;
+  }
+
+  /**
+   * The number of errors
+   */
+  public int size() {
+    return this.size;
+  }
+
+  public int getSubjectCount() {
+    return this.subjectCount;
+  }
+
+  public int getValidSubjectCount() {
+    return this.validSubjectCount;
+  }
+
+  public ValidationErrorKind getKind(int i) {
+    return sf_kinds[this.kinds[i]];
+  }
+
+  /**
+   * Gets the field of an error
+   * @return the field or null for an {@link ValidationErrorKind#UNEXPECTED_LENGTH} error
+   */
+  public @Nullable Field getField(int i) {
+    return getKind(i) == ValidationErrorKind.UNEXPECTED_LENGTH ? null : sf_fields[this.fields[i]];
+  }
+
+  /**
+   * Gets the number of columns found for an {@link ValidationErrorKind#UNEXPECTED_LENGTH} error
+   */
+  public int getActualLength(int i) {
+    return this.fields[i];
+  }
+
+  /**
+   * Gets the packed cell location of an error, see {@link ExcelUtils#formatCellLocation(long)}
+   */
+  public long getLocation(int i) {
+    return this.locations[i];
+  }
+
+  public int getLineNumber(int i) {
+    return ExcelUtils.getLineNumber(this.locations[i]);
+  }
+
+  public @Nullable String getSite(int i) {
+    return this.sites[i];
+  }
+
+  public @Nullable String getSubject(int i) {
+    return this.subjects[i];
+  }
+
+  public @Nullable String getValue(int i) {
+    return this.values[i];
+  }
+}
@@ -0,0 +1,19 @@
+package org.pharmgkb.account.validation;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Somewhere the validation results of a data file are sent. Results may come in several batches as a file is read and
+ * the sink renders them however it needs to, closing the sink finishes the report.
+ */
+public interface ValidationSink extends Closeable {
+
+  /**
+   * Takes the next batch of results for the data file, the results may be cleared and reused once this returns
+   * @param results the errors and subject counts found since the last batch
+   * @throws IOException can occur when writing the report
+   */
+  void write(@Nonnull ValidationResults results) throws IOException;
+}
@@ -0,0 +1,49 @@
+package org.pharmgkb.account.validation;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A sink that passes every batch of results on to several other sinks, so one validation pass can write more than one
+ * report
+ */
+public class ValidationSinks implements ValidationSink {
+
+  private final List<ValidationSink> sinks;
+
+  public ValidationSinks(@Nonnull List<ValidationSink> sinks) {
+    this.sinks = ImmutableList.copyOf(sinks);
+  }
+
+  @Override
+  public void write(@Nonnull ValidationResults results) throws IOException {
+    for (ValidationSink sink : this.sinks) {
+      sink.write(results);
+    }
+  }
+
+  /**
+   * Closes every sink, even if closing one of them fails
+   */
+  @Override
+  public void close() throws IOException {
+    IOException failure = null;
+    for (ValidationSink sink : this.sinks) {
+      try {
+        sink.close();
+      } catch (IOException ex) {
+        if (failure == null) {
+          failure = ex;
+        } else {
+          failure.addSuppressed(ex);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+}
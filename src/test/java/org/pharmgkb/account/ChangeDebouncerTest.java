@@ -0,0 +1,40 @@
+package org.pharmgkb.account;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that changed items are only handed back once they've stopped changing
+ */
+public class ChangeDebouncerTest {
+  private static final long SECOND = 1000000000L;
+  private static final List<String> FILES = ImmutableList.of("clopidogrel.csv", "noac.csv", "warfarin.csv");
+
+  @Test
+  public void testSettle() {
+    ChangeDebouncer<String> changed = new ChangeDebouncer<>(SECOND);
+    assertTrue(changed.isEmpty());
+
+    changed.changed("warfarin.csv", 0);
+    changed.changed("noac.csv", SECOND / 2);
+    assertFalse(changed.isEmpty());
+    assertEquals(Collections.emptyList(), changed.takeSettled(FILES, SECOND / 2));
+
+    // more changes while a file is still being written start its quiet period over
+    changed.changed("noac.csv", SECOND);
+    assertEquals(ImmutableList.of("warfarin.csv"), changed.takeSettled(FILES, SECOND));
+    assertEquals(Collections.emptyList(), changed.takeSettled(FILES, SECOND + SECOND / 2));
+    assertFalse(changed.isEmpty());
+
+    // settled files come back once, in the order of the files
+    changed.changed("clopidogrel.csv", SECOND);
+    assertEquals(ImmutableList.of("clopidogrel.csv", "noac.csv"), changed.takeSettled(FILES, 2 * SECOND));
+    assertTrue(changed.isEmpty());
+    assertEquals(Collections.emptyList(), changed.takeSettled(FILES, 10 * SECOND));
+  }
+}
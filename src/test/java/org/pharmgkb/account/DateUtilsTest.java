@@ -23,6 +23,12 @@ public class DateUtilsTest {
     assertEquals("2019-01-02", dateTime1.format(DateTimeFormatter.ISO_LOCAL_DATE));
     assertEquals("14:00:00", dateTime1.format(DateTimeFormatter.ISO_LOCAL_TIME));
 
+    assertEquals(LocalDateTime.of(2019, 1, 2, 0, 5), DateUtils.parseDateTime("1-2-2019", "12:05am"));
+    assertEquals(LocalDateTime.of(2019, 1, 2, 21, 30), DateUtils.parseDateTime("1/2/2019", "9:30  Pm"));
+    // unusual values are left to the formatter, which moves an impossible day back to the end of the month
+    assertEquals(LocalDateTime.of(2019, 2, 28, 14, 0), DateUtils.parseDateTime("2/30/2019", "2:00 pm"));
+    assertEquals(LocalDateTime.of(2019, 1, 2, 14, 0), DateUtils.parseDateTime("1/2/2019 ", " 2:00 pm"));
+
     try {
       DateUtils.parseDateTime("foo", "bar");
       fail("this should not be a valid date-time");
@@ -50,4 +56,14 @@ public class DateUtilsTest {
     diff = DateUtils.diff(fromDt, wholeHourDt);
     assertEquals("1.00", diff);
   }
+
+  @Test
+  public void testFormatHours() {
+    assertEquals("0.00", DateUtils.formatHours(0));
+    assertEquals("2.63", DateUtils.formatHours(9480));
+    assertEquals("-2.63", DateUtils.formatHours(-9480));
+    assertEquals("-0.00", DateUtils.formatHours(-1));
+    assertEquals("0.01", DateUtils.formatHours(36));
+    assertEquals("1000.00", DateUtils.formatHours(3600000));
+  }
 }
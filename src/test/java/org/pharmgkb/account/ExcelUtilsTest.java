@@ -0,0 +1,31 @@
+package org.pharmgkb.account;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Test the {@link ExcelUtils} methods for validity
+ */
+public class ExcelUtilsTest {
+
+  @Test
+  public void testGetExcelColumnName() {
+    assertEquals("A", ExcelUtils.getExcelColumnName(1));
+    assertEquals("Z", ExcelUtils.getExcelColumnName(26));
+    assertEquals("AA", ExcelUtils.getExcelColumnName(27));
+    assertEquals("ZZ", ExcelUtils.getExcelColumnName(702));
+    assertEquals("AAA", ExcelUtils.getExcelColumnName(703));
+    assertEquals("XFD", ExcelUtils.getExcelColumnName(16384));
+    assertEquals("", ExcelUtils.getExcelColumnName(0));
+  }
+
+  @Test
+  public void testCellLocation() {
+    long location = ExcelUtils.cellLocation(78, 123);
+    assertEquals(78, ExcelUtils.getColumnIndex(location));
+    assertEquals(123, ExcelUtils.getLineNumber(location));
+    assertEquals("CA123", ExcelUtils.formatCellLocation(location));
+    assertEquals("A1", ExcelUtils.formatCellLocation(ExcelUtils.cellLocation(0, 1)));
+  }
+}
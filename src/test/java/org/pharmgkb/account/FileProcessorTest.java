@@ -0,0 +1,101 @@
+package org.pharmgkb.account;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pharmgkb.account.report.RunReport;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that watch mode runs a data file again once it's been changed
+ */
+public class FileProcessorTest {
+  private static final long TIMEOUT_MILLIS = 30000;
+  private Path directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("account");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testWatch() throws Exception {
+    Path dataDir = Files.createDirectory(directory.resolve("data"));
+    for (String type : new String[]{"clopidogrel", "noac", "warfarin"}) {
+      Files.copy(getGoldenFile(type + ".csv"), dataDir.resolve(type + ".csv"));
+    }
+    Path siteKeys = Files.write(directory.resolve("sites.txt"), "UofC=S1\nStanford=S2\n".getBytes(StandardCharsets.UTF_8));
+    Path outputDir = directory.resolve("out");
+
+    FileProcessor app = new FileProcessor(dataDir.resolve("clopidogrel.csv"), dataDir.resolve("noac.csv"),
+        dataDir.resolve("warfarin.csv"), siteKeys);
+    app.setOutputDir(outputDir);
+    app.setProgressInterval(0);
+    app.setWatch(true);
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    Thread thread = new Thread(() -> {
+      try {
+        app.validate();
+      } catch (Exception ex) {
+        failure.set(ex);
+      }
+    });
+    thread.start();
+    try {
+      assertTrue("watching never started", app.awaitWatching(TIMEOUT_MILLIS));
+      assertTrue(readOutput(outputDir, RunReport.FILENAME).contains("clopidogrel.csv"));
+
+      // a new export with one more subject is copied in two writes, a run of the first half would find a short line
+      String noac = new String(Files.readAllBytes(getGoldenFile("noac.csv")), StandardCharsets.UTF_8);
+      String lastLine = noac.substring(noac.lastIndexOf('\n', noac.length() - 2) + 1);
+      byte[] export = (noac + lastLine.replaceFirst("^PA\\d+", "PA299999")).getBytes(StandardCharsets.UTF_8);
+      Files.write(dataDir.resolve("noac.csv"), Arrays.copyOf(export, export.length - lastLine.length() / 2));
+      Thread.sleep(300);
+      Files.write(dataDir.resolve("noac.csv"), export);
+
+      // only the changed file is run again, its run report is the last output written
+      long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+      String runReport = readOutput(outputDir, RunReport.FILENAME);
+      while (runReport.contains("clopidogrel.csv") || !runReport.endsWith("]}\n")) {
+        assertTrue("noac.csv was never run again", System.currentTimeMillis() < deadline);
+        assertNull(failure.get());
+        Thread.sleep(50);
+        runReport = readOutput(outputDir, RunReport.FILENAME);
+      }
+      assertTrue(runReport, runReport.contains("noac.csv"));
+      assertTrue(readOutput(outputDir, "account_noac_processed.csv").contains("\r\nPA299999,"));
+      String validation = readOutput(outputDir, "noac.csv.validation.tsv");
+      assertFalse(validation, validation.contains("unexpected length"));
+    } finally {
+      thread.interrupt();
+      thread.join(TIMEOUT_MILLIS);
+    }
+    assertFalse("watching didn't stop", thread.isAlive());
+    assertNull(failure.get());
+  }
+
+  private Path getGoldenFile(String name) throws Exception {
+    return Paths.get(getClass().getResource("file/golden/" + name).toURI());
+  }
+
+  private static String readOutput(Path outputDir, String name) throws Exception {
+    return new String(Files.readAllBytes(outputDir.resolve(name)), StandardCharsets.UTF_8);
+  }
+}
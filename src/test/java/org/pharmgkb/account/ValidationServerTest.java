@@ -0,0 +1,203 @@
+package org.pharmgkb.account;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+import org.pharmgkb.account.file.NOACDataFile;
+import org.pharmgkb.account.validation.TsvValidationSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that the validation service sends back validation reports and turns away requests it
+ * can't take
+ */
+public class ValidationServerTest {
+  private static final int MAX_BODY_BYTES = 4096;
+  private static final int NOAC_COLUMNS = new NOACDataFile(null, Collections.emptyMap()).getExpectedFields().length;
+
+  @Test
+  public void testValidate() throws Exception {
+    try (ValidationServer server = startServer()) {
+      byte[] body = makeNoacFile();
+
+      Response response = post(server, "/validate/noac?filename=site.csv", body);
+      assertEquals(200, response.status);
+      assertTrue(response.contentType, response.contentType.startsWith("text/tab-separated-values"));
+      assertTrue(response.body, response.body.startsWith(TsvValidationSink.HEADER));
+      assertTrue(response.body, response.body.contains("Line 2 unexpected length"));
+      assertTrue(response.body, response.body.contains("invalid"));
+
+      response = post(server, "/validate/noac?format=jsonl", body);
+      assertEquals(200, response.status);
+      assertTrue(response.body, response.body.startsWith("{\"file\":\"noac.csv\""));
+
+      // the worker is free for the next request once a report has been sent
+      response = post(server, "/validate/noac?format=summary", body);
+      assertEquals(200, response.status);
+    }
+  }
+
+  @Test
+  public void testShortRow() throws Exception {
+    try (ValidationServer server = startServer()) {
+      Response response = post(server, "/validate/noac", makeNoacFile(3, 1));
+      assertEquals(200, response.status);
+      assertTrue(response.body, response.body.contains("Line 2 unexpected length"));
+
+      // a record cut short before the site
+      response = post(server, "/validate/noac?format=jsonl", makeNoacFile(1, 1));
+      assertEquals(200, response.status);
+      assertTrue(response.body, response.body.contains("\"kind\":\"UNEXPECTED_LENGTH\""));
+    }
+  }
+
+  @Test
+  public void testFailureAfterReportStarted() throws Exception {
+    try (ValidationServer server = startServer(1 << 20)) {
+      // enough bad values that part of the report is sent before the bad quote at the end is read
+      byte[] file = makeNoacFile(NOAC_COLUMNS, 60);
+      byte[] body = new byte[file.length + 10];
+      System.arraycopy(file, 0, body, 0, file.length);
+      System.arraycopy("x,\"unclosed".getBytes(StandardCharsets.UTF_8), 0, body, file.length, 10);
+
+      Response response = post(server, "/validate/noac", body);
+      assertEquals(200, response.status);
+      assertTrue(response.body.startsWith(TsvValidationSink.HEADER));
+      String lastLine = response.body.substring(response.body.lastIndexOf('\n', response.body.length() - 2) + 1);
+      assertTrue(lastLine, lastLine.startsWith(ValidationServer.ERROR_MARKER));
+
+      response = post(server, "/validate/noac?format=jsonl", body);
+      assertEquals(200, response.status);
+      lastLine = response.body.substring(response.body.lastIndexOf('\n', response.body.length() - 2) + 1);
+      assertTrue(lastLine, lastLine.startsWith("{\"error\":"));
+    }
+  }
+
+  @Test
+  public void testBadRequests() throws Exception {
+    try (ValidationServer server = startServer()) {
+      byte[] body = makeNoacFile();
+
+      assertEquals(404, post(server, "/validate/aspirin", body).status);
+      assertEquals(400, post(server, "/validate/noac?format=xml", body).status);
+      assertEquals(400, post(server, "/validate/noac?filename=../noac.csv", body).status);
+      assertEquals(413, post(server, "/validate/noac", new byte[MAX_BODY_BYTES + 1]).status);
+
+      HttpURLConnection connection = open(server, "/validate/noac");
+      assertEquals(405, connection.getResponseCode());
+      assertEquals("POST", connection.getHeaderField("Allow"));
+    }
+  }
+
+  @Test
+  public void testBusy() throws Exception {
+    try (ValidationServer server = startServer()) {
+      byte[] body = makeNoacFile();
+
+      // keep the only worker busy spooling a body that's only partly sent
+      try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+        OutputStream out = socket.getOutputStream();
+        out.write(("POST /validate/noac HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length +
+            "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(body, 0, 10);
+        out.flush();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (server.getActiveRequests() == 0) {
+          assertTrue("request never started", System.currentTimeMillis() < deadline);
+          Thread.sleep(10);
+        }
+
+        Response response = post(server, "/validate/noac", body);
+        assertEquals(503, response.status);
+        assertNotNull(response.retryAfter);
+
+        out.write(body, 10, body.length - 10);
+        out.flush();
+        String raw = new String(ByteStreams.toByteArray(socket.getInputStream()), StandardCharsets.UTF_8);
+        assertTrue(raw, raw.startsWith("HTTP/1.1 200"));
+      }
+    }
+  }
+
+  private static ValidationServer startServer() throws Exception {
+    return startServer(MAX_BODY_BYTES);
+  }
+
+  private static ValidationServer startServer(long maxBodyBytes) throws Exception {
+    ValidationServer server = new ValidationServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+        1, 0, maxBodyBytes);
+    server.start();
+    return server;
+  }
+
+  /**
+   * Makes a NOAC file with one subject that has a column too many and a bad value in every field
+   */
+  private static byte[] makeNoacFile() {
+    return makeNoacFile(NOAC_COLUMNS + 1, 1);
+  }
+
+  /**
+   * Makes a NOAC file of subjects with the given number of columns and a bad value in every field after the site
+   */
+  private static byte[] makeNoacFile(int columns, int subjects) {
+    StringBuilder file = new StringBuilder();
+    for (int i = 0; i < NOAC_COLUMNS; i++) {
+      file.append(i == 0 ? "" : ",").append("Column ").append(i);
+    }
+    file.append("\r\n");
+    for (int n = 0; n < subjects; n++) {
+      file.append("Site1");
+      if (columns > 1) {
+        file.append(",Subject").append(n);
+      }
+      for (int i = 2; i < columns; i++) {
+        file.append(",?");
+      }
+      file.append("\r\n");
+    }
+    return file.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static HttpURLConnection open(ValidationServer server, String path) throws Exception {
+    return (HttpURLConnection)new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+  }
+
+  private static Response post(ValidationServer server, String path, byte[] body) throws Exception {
+    HttpURLConnection connection = open(server, path);
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    connection.setFixedLengthStreamingMode(body.length);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(body);
+    } catch (IOException ex) {
+      // the server can answer before reading the whole body
+    }
+
+    Response response = new Response();
+    response.status = connection.getResponseCode();
+    response.contentType = connection.getContentType();
+    response.retryAfter = connection.getHeaderField("Retry-After");
+    InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    response.body = in == null ? "" : new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+    return response;
+  }
+
+  private static class Response {
+    private int status;
+    private String contentType;
+    private String retryAfter;
+    private String body;
+  }
+}
@@ -0,0 +1,121 @@
+package org.pharmgkb.account.columnar;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that rows written by a {@link ColumnarWriter} are read back the same by a
+ * {@link ColumnarTable}
+ */
+public class ColumnarTableTest {
+  private static final List<ColumnSchema> COLUMNS = ImmutableList.of(
+      new ColumnSchema("Subject ID", "The ID of the subject", ColumnType.TEXT),
+      new ColumnSchema("Project Site", "The site the subject was enrolled at", ColumnType.TEXT),
+      new ColumnSchema("Dose", "The daily dose in mg", ColumnType.NUMBER),
+      new ColumnSchema("Count", "A count that uses thousands separators", ColumnType.NUMBER)
+  );
+  private static final String[] SITES = {"Site A", "Site B", "Site ü"};
+  private static final String[] DOSES = {"0.05", "-12.50", "10", "MD", "0", "999999999999999999"};
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    // a row group size that leaves a short last group
+    ColumnarTable table = ColumnarTable.read(new ByteArrayInputStream(write(100, 7)));
+
+    assertEquals(100, table.size());
+    assertEquals(COLUMNS.size(), table.getColumns().size());
+    assertEquals("Dose", table.getColumns().get(2).getName());
+    assertEquals("The daily dose in mg", table.getColumns().get(2).getDescription());
+    assertEquals(ColumnType.NUMBER, table.getColumns().get(2).getType());
+    assertEquals(2, table.findColumn("Dose"));
+    assertEquals(-1, table.findColumn("Nothing"));
+
+    for (int i = 0; i < 100; i++) {
+      String[] row = makeRow(i);
+      for (int c = 0; c < COLUMNS.size(); c++) {
+        assertEquals("row " + i + " column " + c, row[c], table.getString(i, c));
+        assertEquals(row[c].equals("MD"), table.isMissing(i, c));
+      }
+    }
+    assertEquals(0.05, table.getDouble(0, 2), 0);
+    assertEquals(-12.5, table.getDouble(1, 2), 0);
+    assertEquals(10, table.getDouble(2, 2), 0);
+    assertTrue(Double.isNaN(table.getDouble(3, 2)));
+    assertEquals(999999999999999999d, table.getDouble(5, 2), 0);
+    assertTrue(Double.isNaN(table.getDouble(0, 0)));
+    // "1,500" isn't a plain decimal so its group is kept as text
+    assertEquals("1,500", table.getString(5, 3));
+    assertTrue(Double.isNaN(table.getDouble(5, 3)));
+    assertEquals(4, table.getDouble(4, 3), 0);
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    ColumnarTable table = ColumnarTable.read(new ByteArrayInputStream(write(0, 7)));
+    assertEquals(0, table.size());
+    assertEquals(COLUMNS.size(), table.getColumns().size());
+  }
+
+  @Test
+  public void testGzip() throws Exception {
+    byte[] bytes = write(50, ColumnarWriter.DEFAULT_ROW_GROUP_SIZE);
+    Path path = Files.createTempFile("account", ColumnarWriter.EXTENSION);
+    try {
+      try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+        out.write(bytes);
+      }
+      ColumnarTable table = ColumnarTable.read(path);
+      assertEquals(50, table.size());
+      assertEquals(makeRow(49)[1], table.getString(49, 1));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void testBadFiles() throws Exception {
+    assertBad("Subject ID,Project Site\n".getBytes("UTF-8"));
+    byte[] bytes = write(100, 7);
+    assertBad(Arrays.copyOf(bytes, bytes.length - 9));
+  }
+
+  private static void assertBad(byte[] bytes) {
+    try {
+      ColumnarTable.read(new ByteArrayInputStream(bytes));
+      fail("Should not read a bad file");
+    } catch (IOException ex) {
+      // expected
+    }
+  }
+
+  private static byte[] write(int rows, int rowGroupSize) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ColumnarWriter writer = new ColumnarWriter(bytes, COLUMNS, rowGroupSize)) {
+      for (int i = 0; i < rows; i++) {
+        writer.write(makeRow(i));
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static String[] makeRow(int i) {
+    return new String[] {
+        "PA" + (1000 + i),
+        SITES[i % SITES.length],
+        DOSES[i % DOSES.length],
+        i == 5 ? "1,500" : i % 9 == 0 ? "MD" : String.valueOf(i % 13)
+    };
+  }
+}
@@ -0,0 +1,31 @@
+package org.pharmgkb.account.csv;
+
+import org.apache.commons.csv.CSVRecord;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link CsvRow} for a record read by Commons CSV, so tests can make rows out of CSV text
+ */
+public class CsvRecordRow implements CsvRow {
+  private final CSVRecord record;
+
+  public CsvRecordRow(@Nonnull CSVRecord record) {
+    this.record = record;
+  }
+
+  @Override
+  public int size() {
+    return this.record.size();
+  }
+
+  @Override
+  public String get(int column) {
+    return this.record.get(column);
+  }
+
+  @Override
+  public CharSequence getChars(int column) {
+    return this.record.get(column);
+  }
+}
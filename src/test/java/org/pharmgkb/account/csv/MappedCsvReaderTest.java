@@ -0,0 +1,153 @@
+package org.pharmgkb.account.csv;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that {@link MappedCsvReader} splits records up the same way Commons CSV's default format
+ * does, including when records cross the edges of the mapped window
+ */
+public class MappedCsvReaderTest {
+  private Path file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = Files.createTempFile("account", ".csv");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void testRead() throws Exception {
+    String csv = "PA1,UofC,Checked,MD\r\n" +
+        "PA2,\"a, b\",\"say \"\"hi\"\"\",\r\n" +
+        "\n\r\n" +
+        "PA3,\"\",  x  ,\"line\nbreak\"  \r" +
+        "PA4,ab\"c\n" +
+        "PA5,last";
+    List<List<String>> expected = Arrays.asList(
+        Arrays.asList("PA1", "UofC", "Checked", "MD"),
+        Arrays.asList("PA2", "a, b", "say \"hi\"", ""),
+        Arrays.asList("PA3", "", "  x  ", "line\nbreak"),
+        Arrays.asList("PA4", "ab\"c"),
+        Arrays.asList("PA5", "last")
+    );
+    // every window size from one byte up so records start and end on both sides of every window edge
+    for (int windowSize = 1; windowSize <= csv.length() + 1; windowSize++) {
+      assertEquals("window of " + windowSize, expected, read(csv, windowSize));
+    }
+  }
+
+  @Test
+  public void testEdges() throws Exception {
+    assertEquals(Arrays.asList(), read("", 16));
+    assertEquals(Arrays.asList(), read("\r\n\n", 16));
+    assertEquals(Arrays.asList(Arrays.asList("a", "")), read("a,", 16));
+    assertEquals(Arrays.asList(Arrays.asList("", "")), read(",\n", 16));
+    assertEquals(Arrays.asList(Arrays.asList("a")), read("\"a\"", 16));
+  }
+
+  @Test
+  public void testBomAndCharset() throws Exception {
+    byte[] bom = {(byte)0xEF, (byte)0xBB, (byte)0xBF};
+    byte[] text = "Subject,Café\nPA1,\"naïve\"\n".getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = new byte[bom.length + text.length];
+    System.arraycopy(bom, 0, bytes, 0, bom.length);
+    System.arraycopy(text, 0, bytes, bom.length, text.length);
+    Files.write(file, bytes);
+
+    try (MappedCsvReader reader = new MappedCsvReader(file, StandardCharsets.UTF_8, 1024)) {
+      CsvRow row = reader.next();
+      assertNotNull(row);
+      assertEquals("Subject", row.get(0));
+      assertEquals("Café", row.get(1));
+      row = reader.next();
+      assertNotNull(row);
+      assertEquals("naïve", row.getChars(1).toString());
+      assertNull(reader.next());
+    }
+  }
+
+  @Test
+  public void testChars() throws Exception {
+    Files.write(file, "  MD ,Checked\n".getBytes(StandardCharsets.UTF_8));
+    try (MappedCsvReader reader = new MappedCsvReader(file, StandardCharsets.UTF_8, 1024)) {
+      CsvRow row = reader.next();
+      assertNotNull(row);
+      CharSequence chars = row.getChars(0);
+      assertEquals(5, chars.length());
+      assertEquals('M', chars.charAt(2));
+      assertEquals("MD", chars.subSequence(2, 4).toString());
+      assertTrue("Checked".contentEquals(row.getChars(1)));
+      assertSame(row.get(1), row.get(1));
+      try {
+        row.getChars(2);
+        fail("Only 2 columns");
+      } catch (ArrayIndexOutOfBoundsException ex) {
+        // expected
+      }
+    }
+  }
+
+  @Test
+  public void testBytesRead() throws Exception {
+    Files.write(file, "a,b\r\nccc\nlast".getBytes(StandardCharsets.UTF_8));
+    // a window smaller than the file so the count carries across windows
+    try (MappedCsvReader reader = new MappedCsvReader(file, StandardCharsets.UTF_8, 6)) {
+      assertEquals(0, reader.getBytesRead());
+      reader.next();
+      assertEquals(5, reader.getBytesRead());
+      reader.next();
+      assertEquals(9, reader.getBytesRead());
+      reader.next();
+      assertEquals(13, reader.getBytesRead());
+      assertNull(reader.next());
+      assertEquals(13, reader.getBytesRead());
+    }
+  }
+
+  @Test
+  public void testMalformed() throws Exception {
+    assertMalformed("a,\"unclosed\n");
+    assertMalformed("a,\"closed\"x,b\n");
+  }
+
+  private void assertMalformed(String csv) throws Exception {
+    try {
+      read(csv, 1024);
+      fail("Should not read " + csv);
+    } catch (IOException ex) {
+      // expected
+    }
+  }
+
+  private List<List<String>> read(String csv, int windowSize) throws IOException {
+    Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+    List<List<String>> records = new ArrayList<>();
+    try (MappedCsvReader reader = new MappedCsvReader(file, StandardCharsets.UTF_8, windowSize)) {
+      for (CsvRow row = reader.next(); row != null; row = reader.next()) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < row.size(); i++) {
+          assertEquals(row.get(i), row.getChars(i).toString());
+          values.add(row.get(i));
+        }
+        records.add(values);
+      }
+    }
+    return records;
+  }
+}
@@ -0,0 +1,48 @@
+package org.pharmgkb.account.data;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class verifies that date values are parsed the same way as the old SimpleDateFormat parsing
+ */
+public class DateParserTest {
+
+  @Test
+  public void testParse() {
+    DateParser parser = new DateParser(0);
+    assertEquals(LocalDate.of(2019, 10, 24), parser.parse("10-24-2019"));
+    assertEquals(LocalDate.of(2019, 10, 24), parser.parse("2019/10/24"));
+    assertEquals(LocalDate.of(17, 1, 2), parser.parse("1/2/17"));
+    assertEquals(LocalDate.of(12, 12, 1), parser.parse("12/01/12"));
+
+    assertNull(parser.parse("MD"));
+    assertNull(parser.parse(""));
+    assertNull(parser.parse(null));
+    assertNull(parser.parse("20191024"));
+    assertNull(parser.parse("201-10-24"));
+    assertNull(parser.parse(" 1/2/2017"));
+  }
+
+  @Test
+  public void testLenient() {
+    DateParser parser = new DateParser(0);
+    assertEquals(LocalDate.of(2020, 1, 5), parser.parse("13/5/2019"));
+    assertEquals(LocalDate.of(2019, 3, 3), parser.parse("2/31/2019"));
+    assertEquals(LocalDate.of(2018, 12, 5), parser.parse("0/5/2019"));
+    assertEquals(LocalDate.of(2019, 1, 31), parser.parse("2/0/2019"));
+  }
+
+  @Test
+  public void testCache() {
+    DateParser parser = new DateParser(2);
+    for (int i = 0; i < 3; i++) {
+      assertEquals(LocalDate.of(2019, 10, 24), parser.parse("10-24-2019"));
+      assertNull(parser.parse("MD"));
+      assertEquals(LocalDate.of(2019, 3, 14), parser.parse("3/14/2019"));
+    }
+  }
+}
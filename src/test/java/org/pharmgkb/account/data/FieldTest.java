@@ -44,6 +44,22 @@ public class FieldTest {
     assertFalse(Field.ENROLLMENT_DATE.validate("201-10-24"));
   }
   
+  @Test
+  public void testCheckRange() {
+    assertEquals(RangeResult.IN_RANGE, Field.AGE_AT_ENROLLMENT.checkRange("54"));
+    assertEquals(RangeResult.OUT_OF_RANGE, Field.AGE_AT_ENROLLMENT.checkRange("17"));
+    assertEquals(RangeResult.IN_RANGE, Field.ASPIRIN_DOSE_MG_DAY.checkRange("1,500"));
+    assertEquals(RangeResult.OUT_OF_RANGE, Field.ASPIRIN_DOSE_MG_DAY.checkRange("1,501"));
+    assertEquals(RangeResult.IN_RANGE, Field.CREATININE_LEVEL_MG_DL.checkRange(" 0.01 "));
+    assertEquals(RangeResult.NOT_NUMERIC, Field.CREATININE_LEVEL_MG_DL.checkRange(","));
+
+    assertEquals(RangeResult.IN_RANGE, Field.TARGET_INR.checkRange("2.0 - 3.0"));
+    assertEquals(RangeResult.OUT_OF_RANGE, Field.TARGET_INR.checkRange("1.0-3.0"));
+    assertEquals(RangeResult.NOT_NUMERIC, Field.TARGET_INR.checkRange("2-3-4"));
+
+    assertEquals(RangeResult.IN_RANGE, Field.GENDER.checkRange("F"));
+  }
+
   @Test
   public void testDateParse() {
     SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy");
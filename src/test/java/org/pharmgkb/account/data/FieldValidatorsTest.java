@@ -0,0 +1,58 @@
+package org.pharmgkb.account.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class verifies that the hand-written validators agree with the regexes they replace
+ */
+public class FieldValidatorsTest {
+  private static final String[] BUILT_IN_PATTERNS = new String[]{
+      FieldPattern.ANY, FieldPattern.YESNONA, FieldPattern.CHECKED, FieldPattern.DECIMAL, FieldPattern.DECIMAL_RANGE,
+      FieldPattern.INTEGER, FieldPattern.DATE, FieldPattern.TIME_OF_DAY, FieldPattern.DAYS
+  };
+  private static final String[] PIECES = new String[]{
+      "0", "1", "12", "2017", ",", ".", "-", "/", ":", " ", "\t", "\n", "\u2028", "am", "PM", "Pm", "M", "D", "MD",
+      "Y", "N", "NA", "Checked", "Unchecked", "x"
+  };
+
+  @Test
+  public void testAgreesWithRegex() {
+    Random random = new Random(1);
+    for (String regex : BUILT_IN_PATTERNS) {
+      Pattern pattern = Pattern.compile(regex);
+      FieldValidator validator = FieldValidators.forPattern(pattern);
+      for (int n = 0; n < 50000; n++) {
+        StringBuilder value = new StringBuilder();
+        int pieces = random.nextInt(7);
+        for (int i = 0; i < pieces; i++) {
+          value.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        assertEquals(regex + " on \"" + value + "\"", pattern.matcher(value).matches(), validator.isValid(value));
+      }
+    }
+  }
+
+  @Test
+  public void testKnownValues() {
+    FieldValidator date = FieldValidators.forPattern(Pattern.compile(FieldPattern.DATE));
+    assertTrue(date.isValid("1/2/17"));
+    assertTrue(date.isValid("2017-01-02"));
+    assertTrue(date.isValid("MD"));
+    assertFalse(date.isValid("1/2/201"));
+    assertFalse(date.isValid("1/2/17/"));
+
+    FieldValidator time = FieldValidators.forPattern(Pattern.compile(FieldPattern.TIME_OF_DAY));
+    assertTrue(time.isValid("9:30 am"));
+    assertTrue(time.isValid("21:30"));
+    assertFalse(time.isValid("9:30"));
+
+    FieldValidator custom = FieldValidators.forPattern(Pattern.compile("^([01234]|MD)$"));
+    assertTrue(custom.isValid("3"));
+    assertFalse(custom.isValid("5"));
+  }
+}
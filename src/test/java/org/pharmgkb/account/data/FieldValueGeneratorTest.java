@@ -0,0 +1,67 @@
+package org.pharmgkb.account.data;
+
+import org.junit.Test;
+import org.pharmgkb.account.file.ClopidogrelDataFile;
+import org.pharmgkb.account.file.NOACDataFile;
+import org.pharmgkb.account.file.WarfarinDataFile;
+
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that made up values pass or fail the validation and range check of every field of the
+ * data files the way they're meant to
+ */
+public class FieldValueGeneratorTest {
+  private static final int SAMPLES = 50;
+
+  @Test
+  public void testValues() {
+    FieldValueGenerator values = new FieldValueGenerator(new Random(7));
+    LocalDate enrollmentDate = LocalDate.of(2017, 3, 15);
+    for (Field[] fields : new Field[][]{ClopidogrelDataFile.FIELDS, NOACDataFile.FIELDS, WarfarinDataFile.FIELDS}) {
+      for (Field field : fields) {
+        for (int n = 0; n < SAMPLES; n++) {
+          String valid = values.makeValid(field, enrollmentDate);
+          assertTrue(String.format("%s should work for %s", valid, field.name()), field.validate(valid));
+          assertEquals(String.format("%s should be in range for %s", valid, field.name()),
+              RangeResult.IN_RANGE, field.checkRange(valid));
+
+          String outOfRange = values.makeOutOfRange(field);
+          if (outOfRange != null) {
+            assertTrue(String.format("%s should work for %s", outOfRange, field.name()), field.validate(outOfRange));
+            assertEquals(String.format("%s should be out of range for %s", outOfRange, field.name()),
+                RangeResult.OUT_OF_RANGE, field.checkRange(outOfRange));
+          }
+
+          String invalid = values.makeInvalid(field);
+          if (invalid != null) {
+            assertFalse(String.format("%s should not work for %s", invalid, field.name()), field.validate(invalid));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMissing() {
+    FieldValueGenerator values = new FieldValueGenerator(new Random(7));
+    for (int n = 0; n < SAMPLES; n++) {
+      String missing = values.makeMissing();
+      assertTrue(missing + " should be missing data", FieldPattern.isMissing(missing));
+    }
+  }
+
+  @Test
+  public void testFieldsWithRanges() {
+    // fields without a range or that take any value have no bad values to make
+    FieldValueGenerator values = new FieldValueGenerator(new Random(7));
+    assertNotNull(values.makeOutOfRange(Field.AGE_AT_ENROLLMENT));
+    assertNotNull(values.makeOutOfRange(Field.ASPIRIN_DOSE_MG_DAY));
+    assertNotNull(values.makeOutOfRange(Field.TARGET_INR));
+    assertNull(values.makeOutOfRange(Field.GENDER));
+    assertNull(values.makeInvalid(Field.NOTES));
+  }
+}
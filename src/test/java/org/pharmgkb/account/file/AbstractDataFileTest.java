@@ -0,0 +1,313 @@
+package org.pharmgkb.account.file;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pharmgkb.account.columnar.ColumnSchema;
+import org.pharmgkb.account.columnar.ColumnarTable;
+import org.pharmgkb.account.columnar.ColumnarWriter;
+import org.pharmgkb.account.data.Field;
+import org.pharmgkb.account.data.FieldValueGenerator;
+import org.pharmgkb.account.output.FileOutputSink;
+import org.pharmgkb.account.validation.ValidationFormat;
+import org.pharmgkb.account.validation.ValidationSink;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that each way of validating and processing a data file gives the same outputs
+ */
+public class AbstractDataFileTest {
+  private static final Map<String, String> SITE_KEYS = ImmutableMap.of("UofC", "1", "Stanford", "2", "UIC", "3");
+  private static final Map<String, String> GOLDEN_SITE_KEYS = ImmutableMap.of("UofC", "S1", "Stanford", "S2");
+  private Path directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("account");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testParallelMatchesSequential() throws Exception {
+    Path dataFile = directory.resolve("noac.csv");
+    writeSyntheticFile(dataFile, NOACDataFile.FIELDS, 250, false);
+
+    Path sequential = run(dataFile, "streaming");
+    // chunks of 80 records are split into pieces on the pool and the last chunk is a short one
+    Path parallel = run(dataFile, "parallel");
+    for (String output : new String[]{"noac.csv.validation.tsv", "account_noac_processed.csv"}) {
+      assertTrue(output + " is empty", readOutput(sequential, output).length() > 1000);
+    }
+    assertSameOutputs(sequential, parallel);
+  }
+
+  @Test
+  public void testIncrementalMatchesSequential() throws Exception {
+    Path dataFile = directory.resolve("noac.csv");
+    writeSyntheticFile(dataFile, NOACDataFile.FIELDS, 250, false);
+
+    Path sequential = run(dataFile, "streaming");
+    // the first run fills the row cache and the second one reuses every row from it
+    for (String mode : new String[]{"incremental", "reused"}) {
+      Path outputDir = run(dataFile, mode);
+      assertTrue(Files.exists(directory.resolve("noac.csv.rowcache")));
+      assertSameOutputs(sequential, outputDir);
+    }
+  }
+
+  @Test
+  public void testShortRows() throws Exception {
+    Path dataFile = directory.resolve("noac.csv");
+    writeSyntheticFile(dataFile, NOACDataFile.FIELDS, 250, true);
+
+    // the values a short record is missing are written as missing data by every mode, the record isn't dropped
+    Path inMemory = run(dataFile, "memory");
+    String report = readOutput(inMemory, "noac.csv.validation.tsv");
+    assertTrue(report, report.contains("unexpected length"));
+    assertTrue(readOutput(inMemory, "account_noac_processed.csv").contains("\r\nPA100039,"));
+    for (String mode : new String[]{"streaming", "parallel", "incremental", "reused"}) {
+      assertSameOutputs(inMemory, run(dataFile, mode));
+    }
+  }
+
+  @Test
+  public void testColumnarExport() throws Exception {
+    Path dataFile = directory.resolve("noac.csv");
+    writeSyntheticFile(dataFile, NOACDataFile.FIELDS, 250, true);
+
+    for (String mode : new String[]{"memory", "streaming", "parallel"}) {
+      Path outputDir = run(dataFile, mode);
+      ColumnarTable table = ColumnarTable.read(outputDir.resolve("account_noac_processed" + ColumnarWriter.EXTENSION));
+      List<CSVRecord> processed;
+      try (Reader reader = Files.newBufferedReader(outputDir.resolve("account_noac_processed.csv"),
+          Charset.defaultCharset())) {
+        processed = CSVFormat.EXCEL.parse(reader).getRecords();
+      }
+
+      // the processed file starts with the header and description rows the columns of the table are named with
+      assertEquals(mode, processed.size() - 2, table.size());
+      List<ColumnSchema> columns = table.getColumns();
+      assertEquals(mode, processed.get(0).size(), columns.size());
+      for (int c = 0; c < columns.size(); c++) {
+        assertEquals(mode, processed.get(0).get(c), inDefaultCharset(columns.get(c).getName()));
+        assertEquals(mode, processed.get(1).get(c), inDefaultCharset(columns.get(c).getDescription()));
+      }
+      for (int r = 0; r < table.size(); r++) {
+        CSVRecord record = processed.get(r + 2);
+        assertEquals(mode, record.size(), columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+          assertEquals(mode + " row " + r + " " + columns.get(c).getName(), record.get(c),
+              inDefaultCharset(table.getString(r, c)));
+        }
+      }
+    }
+  }
+
+  /**
+   * The files in <code>golden</code> are small data files with edge case ages, cardiac deaths, missing dates, checkbox
+   * lists and choice values, along with the reports and processed files the code made before the output rows were
+   * written straight from the parsed values, except that a missing age is only written as "MD". Every mode has to
+   * keep making exactly the same files.
+   */
+  @Test
+  public void testGoldenOutputs() throws Exception {
+    for (String type : new String[]{"clopidogrel", "noac", "warfarin"}) {
+      Path dataFile = Paths.get(getClass().getResource("golden/" + type + ".csv").toURI());
+      String report = type + ".csv.validation.tsv";
+      String processed = "account_" + type + "_processed.csv";
+
+      Path inMemory = Files.createDirectory(directory.resolve(type + "-memory"));
+      AbstractDataFile file = makeGoldenDataFile(type, dataFile, inMemory);
+      try (ValidationSink sink = makeTsvSink(inMemory.resolve(report))) {
+        sink.write(file.validate());
+      }
+      file.makeProcessedFile();
+      try {
+        file.makeProcessedFile();
+        fail("The records should be let go of once the processed file is written");
+      } catch (IllegalStateException ex) {
+        // expected
+      }
+      assertGolden(inMemory, report);
+      assertGolden(inMemory, processed);
+
+      Path streaming = Files.createDirectory(directory.resolve(type + "-streaming"));
+      file = makeGoldenDataFile(type, dataFile, streaming);
+      try (ValidationSink sink = makeTsvSink(streaming.resolve(report))) {
+        file.validateAndProcess(sink);
+      }
+      assertGolden(streaming, report);
+      assertGolden(streaming, processed);
+    }
+  }
+
+  /**
+   * Gives back a value the way the processed file holds it, since it's written in the platform charset and a
+   * character that charset can't encode is written as "?"
+   */
+  private static String inDefaultCharset(String value) {
+    return new String(value.getBytes(Charset.defaultCharset()), Charset.defaultCharset());
+  }
+
+  private static AbstractDataFile makeGoldenDataFile(String type, Path dataFile, Path outputDir) {
+    AbstractDataFile file;
+    switch (type) {
+      case "clopidogrel":
+        file = new ClopidogrelDataFile(dataFile, GOLDEN_SITE_KEYS);
+        break;
+      case "noac":
+        file = new NOACDataFile(dataFile, GOLDEN_SITE_KEYS);
+        break;
+      default:
+        file = new WarfarinDataFile(dataFile, GOLDEN_SITE_KEYS);
+    }
+    file.setOutputSink(new FileOutputSink(outputDir, FileOutputSink.DEFAULT_BUFFER_SIZE, false));
+    return file;
+  }
+
+  /**
+   * Checks an output against its golden file. The golden files are UTF-8 and the processed files are written in the
+   * platform charset, so the golden file is compared the way the platform charset would have written it.
+   */
+  private void assertGolden(Path outputDir, String output) throws Exception {
+    byte[] expected = Files.readAllBytes(Paths.get(getClass().getResource("golden/" + output).toURI()));
+    byte[] actual = Files.readAllBytes(outputDir.resolve(output));
+    assertEquals(outputDir.getFileName() + "/" + output,
+        inDefaultCharset(new String(expected, StandardCharsets.UTF_8)), new String(actual, Charset.defaultCharset()));
+  }
+
+  private static ValidationSink makeTsvSink(Path path) throws IOException {
+    return ValidationFormat.TSV.makeSink(new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Validates and processes a NOAC file into a directory named after the mode. The "incremental" and "reused" modes
+   * share a row cache next to the data file, the other modes make the columnar export too.
+   * @param mode one of "memory", "streaming", "parallel", "incremental" or "reused"
+   * @return the directory of the outputs
+   */
+  private Path run(Path dataFile, String mode) throws Exception {
+    Path outputDir = Files.createDirectory(directory.resolve(mode));
+    NOACDataFile noac = new NOACDataFile(dataFile, SITE_KEYS);
+    noac.setOutputSink(new FileOutputSink(outputDir, FileOutputSink.DEFAULT_BUFFER_SIZE, false));
+    // cached rows are only kept as CSV lines so the columnar export can't be made incrementally
+    noac.setColumnarExport(!mode.equals("incremental") && !mode.equals("reused"));
+    try (ValidationSink sink = makeTsvSink(outputDir.resolve("noac.csv.validation.tsv"))) {
+      switch (mode) {
+        case "memory":
+          sink.write(noac.validate());
+          noac.makeProcessedFile();
+          break;
+        case "streaming":
+          noac.validateAndProcess(sink);
+          break;
+        case "parallel":
+          ForkJoinPool pool = new ForkJoinPool(3);
+          try {
+            noac.validateAndProcess(sink, pool, 80);
+          } finally {
+            pool.shutdown();
+          }
+          break;
+        case "incremental":
+        case "reused":
+          noac.validateAndProcess(sink, directory.resolve("noac.csv.rowcache"));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown mode " + mode);
+      }
+    }
+    return outputDir;
+  }
+
+  private static void assertSameOutputs(Path expected, Path actual) throws IOException {
+    for (String output : new String[]{"noac.csv.validation.tsv", "account_noac_processed.csv"}) {
+      assertEquals(actual.getFileName() + "/" + output, readOutput(expected, output), readOutput(actual, output));
+    }
+  }
+
+  /**
+   * Reads an output as ISO-8859-1 so every byte is compared as it is
+   */
+  private static String readOutput(Path outputDir, String output) throws IOException {
+    return new String(Files.readAllBytes(outputDir.resolve(output)), StandardCharsets.ISO_8859_1);
+  }
+
+  /**
+   * Writes a data file of made-up subjects with some missing, invalid and out of range values, starting with a UTF-8
+   * byte order mark and with a quoted value and a value outside of ASCII here and there
+   * @param shortRows true to cut every 40th record short, keeping at least its subject and site
+   */
+  private static void writeSyntheticFile(Path path, Field[] fields, int rows, boolean shortRows) throws IOException {
+    Random random = new Random(7);
+    FieldValueGenerator values = new FieldValueGenerator(random);
+    String[] sites = SITE_KEYS.keySet().toArray(new String[0]);
+    try (OutputStream out = Files.newOutputStream(path)) {
+      out.write(new byte[]{(byte)0xEF, (byte)0xBB, (byte)0xBF});
+      Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+      CSVPrinter csv = new CSVPrinter(writer, CSVFormat.EXCEL);
+      for (Field field : fields) {
+        csv.print(field.getDisplayName());
+      }
+      csv.println();
+
+      for (int n = 0; n < rows; n++) {
+        LocalDate enrollmentDate = LocalDate.of(2015, 1, 1).plusDays(random.nextInt(1000));
+        String[] row = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+          double roll = random.nextDouble();
+          String value = null;
+          if (i == 0) {
+            value = "PA" + (100000 + n);
+          } else if (fields[i] == Field.PROJECT_SITE) {
+            value = sites[n % sites.length];
+          } else if (roll < 0.05) {
+            value = values.makeMissing();
+          } else if (roll < 0.06) {
+            value = values.makeInvalid(fields[i]);
+          } else if (roll < 0.07) {
+            value = values.makeOutOfRange(fields[i]);
+          } else if (roll < 0.075) {
+            value = n % 2 == 0 ? "a, \"quoted\" value" : "café";
+          }
+          row[i] = value == null ? values.makeValid(fields[i], enrollmentDate) : value;
+        }
+        if (shortRows && n % 40 == 39) {
+          row = Arrays.copyOf(row, 2 + n % 17);
+        }
+        csv.printRecord((Object[])row);
+      }
+      csv.flush();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package org.pharmgkb.account.file;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Test;
+import org.pharmgkb.account.csv.CsvRecordRow;
+import org.pharmgkb.account.csv.CsvRow;
+import org.pharmgkb.account.data.DateParser;
+import org.pharmgkb.account.data.Field;
+
+import java.io.StringReader;
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that a {@link ColumnarDataset} gives back the records that were added to it
+ */
+public class ColumnarDatasetTest {
+  private static final Field[] FIELDS = new Field[]{
+      Field.STUDY_ID_PHARMGKB_ID, Field.PROJECT_SITE, Field.ENROLLMENT_DATE, Field.AGE_AT_ENROLLMENT, Field.CURRENT_SMOKER
+  };
+
+  @Test
+  public void testDictionary() throws Exception {
+    ColumnarDataset dataset = new ColumnarDataset(FIELDS, new DateParser(0));
+    for (CSVRecord record : CSVFormat.DEFAULT.parse(new StringReader(
+        "PA1,UofC,10/24/2019,54,Y\n" +
+        "PA2,UofC,2019-10-25,\"1,500\",N\n" +
+        "PA3,UofC,MD,MD,Y,extra\n"))) {
+      dataset.add(new CsvRecordRow(record));
+    }
+
+    assertEquals(3, dataset.size());
+    // a value that repeats in a column is only held once
+    assertSame(dataset.get(0, 1), dataset.get(2, 1));
+    assertSame(dataset.get(0, 4), dataset.get(2, 4));
+    assertEquals("N", dataset.get(1, 4));
+    assertEquals("MD", dataset.get(2, 3));
+
+    CsvRow row = dataset.getRow(1);
+    assertEquals(FIELDS.length, row.size());
+    assertEquals("PA2", row.get(0));
+    assertEquals("1,500", row.getChars(3).toString());
+
+    assertTrue(dataset.isDate(2));
+    assertEquals(LocalDate.of(2019, 10, 24).toEpochDay(), dataset.getEpochDay(0, 2));
+    assertEquals(LocalDate.of(2019, 10, 25).toEpochDay(), dataset.getEpochDay(1, 2));
+    assertEquals(RecordContext.NO_VALUE, dataset.getEpochDay(2, 2));
+
+    RecordContext context = new RecordContext().reset(dataset, 0);
+    assertEquals(LocalDate.of(2019, 10, 24).toEpochDay(), context.getEpochDay(2, DateParser.DEFAULT));
+    assertTrue(new RecordContext().reset(dataset, 2).isMissing(3));
+  }
+
+  @Test
+  public void testLargeColumns() throws Exception {
+    ColumnarDataset dataset = new ColumnarDataset(FIELDS, new DateParser(0));
+    int rows = ColumnarDataset.MAX_DICTIONARY_SIZE * 2;
+    StringBuilder csv = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      csv.append("PA").append(i).append(",UofC,1/").append(i % 28 + 1).append("/2019,").append(i).append(",Y\n");
+    }
+    for (CSVRecord record : CSVFormat.DEFAULT.parse(new StringReader(csv.toString()))) {
+      dataset.add(new CsvRecordRow(record));
+    }
+
+    // subject IDs and ages are all different so they outgrow their dictionaries, the rest keep theirs
+    assertEquals(rows, dataset.size());
+    assertFalse(dataset.isDictionaryEncoded(0));
+    assertFalse(dataset.isDictionaryEncoded(3));
+    assertTrue(dataset.isDictionaryEncoded(1));
+    assertTrue(dataset.isDictionaryEncoded(2));
+    for (int i = 0; i < rows; i++) {
+      assertEquals("PA" + i, dataset.get(i, 0));
+      assertEquals(String.valueOf(i), dataset.get(i, 3));
+      assertEquals(LocalDate.of(2019, 1, i % 28 + 1).toEpochDay(), dataset.getEpochDay(i, 2));
+    }
+    assertSame(dataset.get(0, 2), dataset.get(28, 2));
+  }
+}
@@ -0,0 +1,116 @@
+package org.pharmgkb.account.file;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pharmgkb.account.ExcelUtils;
+import org.pharmgkb.account.csv.CsvRecordRow;
+import org.pharmgkb.account.data.Field;
+import org.pharmgkb.account.validation.ValidationErrorKind;
+import org.pharmgkb.account.validation.ValidationResults;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that the row cache only hands back results for records that haven't changed
+ */
+public class RowFingerprintCacheTest {
+  private Path cachePath;
+
+  @Before
+  public void setUp() throws Exception {
+    cachePath = Files.createTempFile("account", ".rowcache");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(cachePath);
+  }
+
+  @Test
+  public void testFingerprint() throws Exception {
+    List<CSVRecord> records = parse("PA1,UofC,a,bc\nPA1,UofC,ab,c\nPA1,UofC,a,bc\n");
+    assertNotEquals(fingerprint(records.get(0)), fingerprint(records.get(1)));
+    assertEquals(fingerprint(records.get(0)), fingerprint(records.get(2)));
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    CSVRecord record = parse("PA1,UofC,x\n").get(0);
+    long fingerprint = fingerprint(record);
+
+    ValidationResults results = new ValidationResults("test.csv", 3);
+    results.add(ValidationErrorKind.INVALID, Field.GENDER, ExcelUtils.cellLocation(2, 7), "UofC", "PA1", "x");
+    try (RowFingerprintCache.Output output = RowFingerprintCache.create(cachePath, 42)) {
+      output.add("PA1", RowFingerprintCache.Entry.of(fingerprint, results, 0, "PA1,,MD\r\n"));
+      output.commit();
+    }
+
+    try (RowFingerprintCache cache = RowFingerprintCache.load(cachePath, 42)) {
+      assertEquals(1, cache.size());
+      RowFingerprintCache.Entry entry = cache.get("PA1", fingerprint);
+      assertNotNull(entry);
+      assertEquals("PA1,,MD\r\n", entry.getOutputLine());
+      assertNull(cache.get("PA1", fingerprint + 1));
+      assertNull(cache.get("PA2", fingerprint));
+    }
+
+    // a cache made under other rules isn't used
+    assertEquals(0, RowFingerprintCache.load(cachePath, 43).size());
+  }
+
+  @Test
+  public void testReadsEntriesFromFile() throws Exception {
+    // enough entries to pass through the read window a few times, and one line longer than the window
+    int count = 3000;
+    try (RowFingerprintCache.Output output = RowFingerprintCache.create(cachePath, 42)) {
+      for (int i = 0; i < count; i++) {
+        output.add("PA" + i, RowFingerprintCache.Entry.of(i, new ValidationResults("test.csv", 3), 0, makeLine(i)));
+      }
+      output.commit();
+    }
+
+    try (RowFingerprintCache cache = RowFingerprintCache.load(cachePath, 42)) {
+      assertEquals(count, cache.size());
+      for (int i = 0; i < count; i++) {
+        assertEquals(makeLine(i), cache.get("PA" + i, i).getOutputLine());
+      }
+      // going back to the start of the file
+      assertEquals(makeLine(1), cache.get("PA1", 1).getOutputLine());
+      assertEquals(makeLine(2000), cache.get("PA2000", 2000).getOutputLine());
+    }
+  }
+
+  private static String makeLine(int i) {
+    StringBuilder line = new StringBuilder("PA").append(i).append(",café");
+    for (int n = i == 2000 ? 20000 : i % 7; n > 0; n--) {
+      line.append(",value ").append(n);
+    }
+    return line.append("\r\n").toString();
+  }
+
+  @Test
+  public void testUncommitted() throws Exception {
+    Files.delete(cachePath);
+    try (RowFingerprintCache.Output output = RowFingerprintCache.create(cachePath, 42)) {
+      output.add("PA1", RowFingerprintCache.Entry.of(1, new ValidationResults("test.csv", 3), 0, "\r\n"));
+    }
+    assertFalse(Files.exists(cachePath));
+    assertEquals(0, RowFingerprintCache.load(cachePath, 42).size());
+  }
+
+  private static long fingerprint(CSVRecord record) {
+    return RowFingerprintCache.fingerprint(new CsvRecordRow(record));
+  }
+
+  private static List<CSVRecord> parse(String text) throws Exception {
+    return CSVFormat.DEFAULT.parse(new StringReader(text)).getRecords();
+  }
+}
@@ -0,0 +1,85 @@
+package org.pharmgkb.account.output;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that files written through a {@link FileOutputSink} come back the same way they went in
+ */
+public class FileOutputSinkTest {
+  private Path tempDir;
+
+  @Before
+  public void setUp() throws Exception {
+    tempDir = Files.createTempDirectory("account-output");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (Stream<Path> paths = Files.walk(tempDir)) {
+      paths.sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+    }
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    // a tiny buffer so writes land on both sides of the buffer boundary
+    FileOutputSink sink = new FileOutputSink(tempDir, 16, false);
+    String text = makeText();
+    try (Writer writer = sink.open("test.csv")) {
+      writer.write(text);
+    }
+    Path path = sink.getPath("test.csv");
+    assertEquals("test.csv", path.getFileName().toString());
+    assertEquals(text, new String(Files.readAllBytes(path), Charset.defaultCharset()));
+
+    // opening again replaces the old contents
+    try (Writer writer = sink.open("test.csv")) {
+      writer.write("short");
+    }
+    assertEquals("short", new String(Files.readAllBytes(path), Charset.defaultCharset()));
+  }
+
+  @Test
+  public void testGzip() throws Exception {
+    FileOutputSink sink = new FileOutputSink(tempDir, 1024, true);
+    String text = makeText();
+    try (Writer writer = sink.open("test.csv")) {
+      writer.write(text);
+    }
+    Path path = sink.getPath("test.csv");
+    assertEquals("test.csv.gz", path.getFileName().toString());
+    assertTrue(Files.size(path) < text.length());
+
+    ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(path))) {
+      byte[] bytes = new byte[4096];
+      int count;
+      while ((count = in.read(bytes)) != -1) {
+        unzipped.write(bytes, 0, count);
+      }
+    }
+    assertEquals(text, new String(unzipped.toByteArray(), Charset.defaultCharset()));
+  }
+
+  private static String makeText() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      text.append("PA").append(i).append(",UofC,").append(i % 7 == 0 ? "MD" : "Y").append('\n');
+    }
+    return text.toString();
+  }
+}
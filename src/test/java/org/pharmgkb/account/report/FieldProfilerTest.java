@@ -0,0 +1,82 @@
+package org.pharmgkb.account.report;
+
+import org.junit.Test;
+import org.pharmgkb.account.data.Field;
+import org.pharmgkb.account.validation.ValidationErrorKind;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks the counts, percentiles and ranking kept by the {@link FieldProfiler}
+ */
+public class FieldProfilerTest {
+
+  @Test
+  public void testBuckets() {
+    assertEquals(0, FieldProfiler.bucketOf(0));
+    assertEquals(1, FieldProfiler.bucketOf(1));
+    assertEquals(2, FieldProfiler.bucketOf(2));
+    assertEquals(2, FieldProfiler.bucketOf(3));
+    assertEquals(11, FieldProfiler.bucketOf(1024));
+    assertEquals(FieldProfiler.BUCKETS - 1, FieldProfiler.bucketOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testRecord() throws Exception {
+    FieldProfiler profiler = new FieldProfiler();
+    for (int i = 0; i < 99; i++) {
+      profiler.record(Field.AGE_AT_ENROLLMENT, 100, null);
+    }
+    profiler.record(Field.AGE_AT_ENROLLMENT, 5000, ValidationErrorKind.OUT_OF_RANGE);
+    profiler.record(Field.ACS_DURING_FOLLOW_UP, 50, ValidationErrorKind.INVALID);
+    profiler.record(Field.ACS_DURING_FOLLOW_UP, 50, ValidationErrorKind.BAD_NUMBER);
+
+    assertEquals(100, profiler.getChecked(Field.AGE_AT_ENROLLMENT));
+    assertEquals(1, profiler.getFailures(Field.AGE_AT_ENROLLMENT, ValidationErrorKind.OUT_OF_RANGE));
+    assertEquals(0, profiler.getFailures(Field.AGE_AT_ENROLLMENT, ValidationErrorKind.INVALID));
+    assertEquals(1, profiler.getFailures(Field.ACS_DURING_FOLLOW_UP, ValidationErrorKind.INVALID));
+    assertEquals(1, profiler.getFailures(Field.ACS_DURING_FOLLOW_UP, ValidationErrorKind.BAD_NUMBER));
+    assertEquals(99 * 100 + 5000, profiler.getTotalNanos(Field.AGE_AT_ENROLLMENT));
+    // percentiles are the upper end of their power-of-two bucket
+    assertEquals(128, profiler.getPercentileNanos(Field.AGE_AT_ENROLLMENT, 0.5));
+    assertEquals(128, profiler.getPercentileNanos(Field.AGE_AT_ENROLLMENT, 0.99));
+    assertEquals(8192, profiler.getPercentileNanos(Field.AGE_AT_ENROLLMENT, 1));
+    assertEquals(0, profiler.getPercentileNanos(Field.WEIGHT_KG, 0.5));
+
+    List<Field> ranking = profiler.getRanking();
+    assertEquals(2, ranking.size());
+    assertEquals(Field.AGE_AT_ENROLLMENT, ranking.get(0));
+    assertEquals(Field.ACS_DURING_FOLLOW_UP, ranking.get(1));
+
+    StringWriter writer = new StringWriter();
+    profiler.write(writer);
+    String[] lines = writer.toString().split("\n");
+    assertEquals(3, lines.length);
+    assertEquals(FieldProfiler.HEADER.trim(), lines[0]);
+    assertTrue(lines[1], lines[1].startsWith("1\tAGE_AT_ENROLLMENT\t100\t0\t1\t0\t0.015\t149\t128\t128\t"));
+    assertTrue(lines[2], lines[2].startsWith("2\tACS_DURING_FOLLOW_UP\t2\t1\t0\t1\t"));
+  }
+
+  @Test
+  public void testConcurrentRecords() throws Exception {
+    FieldProfiler profiler = new FieldProfiler();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          profiler.record(Field.AGE_AT_ENROLLMENT, 10, i % 10 == 0 ? ValidationErrorKind.INVALID : null);
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(40000, profiler.getChecked(Field.AGE_AT_ENROLLMENT));
+    assertEquals(4000, profiler.getFailures(Field.AGE_AT_ENROLLMENT, ValidationErrorKind.INVALID));
+    assertEquals(400000, profiler.getTotalNanos(Field.AGE_AT_ENROLLMENT));
+  }
+}
@@ -0,0 +1,36 @@
+package org.pharmgkb.account.report;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks the progress lines and ETAs worked out by the {@link ProgressReporter}
+ */
+public class ProgressReporterTest {
+  private static final long SECOND = 1000000000L;
+
+  @Test
+  public void testEta() {
+    assertEquals("unknown", ProgressReporter.formatEta(0, 1000, 10 * SECOND));
+    assertEquals("0:00:30", ProgressReporter.formatEta(250, 1000, 10 * SECOND));
+    assertEquals("1:01:01", ProgressReporter.formatEta(1, 3662, SECOND));
+    assertEquals("0:00:00", ProgressReporter.formatEta(1000, 1000, SECOND));
+  }
+
+  @Test
+  public void testDescribe() {
+    FileProgress progress = new FileProgress();
+    assertFalse(progress.isReading());
+    progress.start(4 << 20, 0);
+    assertTrue(progress.isReading());
+    progress.update(1 << 20, 5000);
+    assertEquals("a.csv: 25.0% of 4.0 MB, 5000 rows at 1000 rows/s, ETA 0:00:15",
+        ProgressReporter.describe("a.csv", progress, 5 * SECOND));
+
+    progress.finish();
+    assertFalse(progress.isReading());
+    assertTrue(progress.isDone());
+    assertEquals(4 << 20, progress.getBytesRead());
+  }
+}
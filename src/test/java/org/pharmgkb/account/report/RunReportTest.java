@@ -0,0 +1,117 @@
+package org.pharmgkb.account.report;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class checks that phase times are added up and written into the run report
+ */
+public class RunReportTest {
+
+  @Test
+  public void testPhaseTimer() throws Exception {
+    PhaseTimer timer = new PhaseTimer();
+    long sum = 0;
+    // phases longer than a CPU time window so each one gets its own CPU time
+    for (int i = 0; i < 20; i++) {
+      timer.start(Phase.VALIDATE);
+      sum += spinFor(2000000);
+      timer.start(Phase.WRITE);
+      Thread.sleep(2);
+    }
+    timer.stop();
+    // stopping twice does nothing
+    timer.stop();
+    assertTrue(sum != 0);
+
+    assertTrue(timer.getWallNanos(Phase.VALIDATE) > 0);
+    assertTrue(timer.getWallNanos(Phase.WRITE) > 0);
+    assertEquals(0, timer.getWallNanos(Phase.PARSE));
+    assertEquals(0, timer.getCpuNanos(Phase.PARSE));
+    if (PhaseTimer.isCpuTimeSupported()) {
+      // spinning is all CPU, sleeping hardly any
+      assertTrue(timer.getCpuNanos(Phase.VALIDATE) > timer.getWallNanos(Phase.VALIDATE) / 4);
+      assertTrue(timer.getCpuNanos(Phase.VALIDATE) <= timer.getWallNanos(Phase.VALIDATE) * 11 / 10);
+      assertTrue(timer.getCpuNanos(Phase.WRITE) < timer.getWallNanos(Phase.WRITE) / 2);
+    }
+
+    PhaseTimer total = new PhaseTimer();
+    total.add(timer);
+    total.add(timer);
+    assertEquals(timer.getWallNanos(Phase.VALIDATE) * 2, total.getWallNanos(Phase.VALIDATE));
+  }
+
+  @Test
+  public void testWrite() throws Exception {
+    PhaseTimer timer = new PhaseTimer();
+    timer.start(Phase.PARSE);
+    spin(1000);
+    timer.start(Phase.TRANSFORM);
+    spin(1000);
+    timer.stop();
+
+    FileReport fileReport = new FileReport();
+    fileReport.addPhases(timer);
+    fileReport.addRows(10, 7);
+    fileReport.addRows(5, 5);
+    fileReport.setBytesRead(1000);
+    fileReport.setWallNanos(2000000);
+    fileReport.addOutput("a_processed.csv", 300);
+    fileReport.addOutput("a.csv.validation.tsv", 200);
+    assertEquals(15, fileReport.getRows());
+    assertEquals(500, fileReport.getBytesWritten());
+
+    RunReport report = new RunReport();
+    report.setOption("mode", "streaming");
+    report.setOption("threads", 2);
+    report.setOption("gzip", false);
+    report.addFile("a \"quoted\".csv", fileReport);
+    StringWriter writer = new StringWriter();
+    report.write(writer);
+    String json = writer.toString();
+
+    assertTrue(json, json.startsWith("{\"started\":\""));
+    assertTrue(json, json.endsWith("}\n"));
+    assertTrue(json, json.contains("\"options\":{\"mode\":\"streaming\",\"threads\":2,\"gzip\":false}"));
+    assertTrue(json, json.contains("\"rows\":15,"));
+    assertTrue(json, json.contains("\"file\":\"a \\\"quoted\\\".csv\",\"rows\":15,\"validRows\":12,\"wallMillis\":2.000,"));
+    assertTrue(json, json.contains("\"rowsPerSecond\":7500.0,"));
+    assertTrue(json, json.contains("\"bytesRead\":1000,\"bytesWritten\":500,\"peakHeapBytes\":null,"));
+    assertTrue(json, json.contains("\"outputs\":{\"a_processed.csv\":300,\"a.csv.validation.tsv\":200}"));
+    assertTrue(json, json.contains("\"parse\":{\"wallMillis\":"));
+    assertTrue(json, json.contains("\"validate\":{\"wallMillis\":0.000,"));
+    assertTrue(json, json.contains(",\"bytesWritten\":500}}"));
+    assertEquals(count(json, '{'), count(json, '}'));
+    assertEquals(count(json, '['), count(json, ']'));
+  }
+
+  private static long spinFor(long nanos) {
+    long end = System.nanoTime() + nanos;
+    long x = 0;
+    while (System.nanoTime() < end) {
+      x += spin(100);
+    }
+    return x;
+  }
+
+  private static long spin(int iterations) {
+    long x = 17;
+    for (int i = 0; i < iterations; i++) {
+      x = x * 6364136223846793005L + 1442695040888963407L;
+    }
+    return x;
+  }
+
+  private static int count(String text, char c) {
+    int count = 0;
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) == c) {
+        count += 1;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,53 @@
+package org.pharmgkb.account.validation;
+
+import org.junit.Test;
+import org.pharmgkb.account.ExcelUtils;
+import org.pharmgkb.account.data.Field;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * This JUnit test class verifies that validation results are rendered the same way the validation report always has
+ * been
+ */
+public class ValidationSinkTest {
+
+  @Test
+  public void testTsv() throws Exception {
+    ValidationResults results = new ValidationResults("test.csv", 10);
+    results.add(ValidationErrorKind.INVALID, Field.GENDER, ExcelUtils.cellLocation(78, 12), "UofC", "PA1", "OOOOO");
+    results.add(ValidationErrorKind.OUT_OF_RANGE, Field.TARGET_INR, ExcelUtils.cellLocation(0, 13), "UofC", "PA2", "9");
+    results.add(ValidationErrorKind.BAD_NUMBER, Field.TARGET_INR, ExcelUtils.cellLocation(1, 14), "UofC", "PA3", "2-3-4");
+    results.addSubject(false);
+    assertEquals(3, results.size());
+    assertEquals(1, results.getSubjectCount());
+
+    StringWriter writer = new StringWriter();
+    try (ValidationSink sink = new TsvValidationSink(writer)) {
+      sink.write(results);
+    }
+    assertEquals(TsvValidationSink.HEADER +
+        "UofC\tPA1\tCA12\tinvalid GENDER\tOOOOO\n" +
+        "UofC\tPA2\tA13\tout of range TARGET_INR [1.50-3.50]\t9\n" +
+        "UofC\tPA3\tB14\tbad numerical value for TARGET_INR\t2-3-4\n" +
+        "\n", writer.toString());
+  }
+
+  @Test
+  public void testJsonLines() throws Exception {
+    ValidationResults results = new ValidationResults("test.csv", 10);
+    results.add(ValidationErrorKind.INVALID, Field.NOTES, ExcelUtils.cellLocation(2, 5), "UofC", "PA1", "line\n\"two\"");
+    results.addUnexpectedLength(6, 9);
+
+    StringWriter writer = new StringWriter();
+    try (ValidationSink sink = new JsonLinesValidationSink(writer)) {
+      sink.write(results);
+    }
+    assertEquals(
+        "{\"file\":\"test.csv\",\"kind\":\"INVALID\",\"line\":5,\"column\":\"C\",\"field\":\"NOTES\",\"site\":\"UofC\",\"subject\":\"PA1\",\"value\":\"line\\n\\\"two\\\"\"}\n" +
+        "{\"file\":\"test.csv\",\"kind\":\"UNEXPECTED_LENGTH\",\"line\":6,\"expected\":10,\"actual\":9}\n",
+        writer.toString());
+  }
+}